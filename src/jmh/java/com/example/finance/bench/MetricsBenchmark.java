@@ -0,0 +1,40 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.services.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена одного замера: {@code Metrics.start()} + {@code stop()} и увеличение счётчика, из многих потоков
+ * сразу. Сравнивается с {@code baseline} — тем же вызовом {@code System.nanoTime()} без записи.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Histogram timer = metrics.timer("bench.timer");
+    private final Metrics.Counter counter = metrics.counter("bench.counter");
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long baseline() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void timer() {
+        timer.stop(Metrics.start());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void counter() {
+        counter.increment();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.services.PasswordHasher;
+import com.example.finance.core.services.Passwords;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверки пароля при входе в секунду для каждого алгоритма; {@code cache=true} — повторный
+ * вход с тем же паролем, который берётся из кэша проверок без KDF.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordsBenchmark {
+
+    @Param({"sha256", "pbkdf2-100000", "pbkdf2-600000"})
+    public String algorithm;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private Passwords passwords;
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PasswordHasher hasher = algorithm.equals("sha256")
+                ? Passwords.SHA256
+                : Passwords.pbkdf2(Integer.parseInt(algorithm.substring("pbkdf2-".length())));
+        int threads = Runtime.getRuntime().availableProcessors();
+        passwords = new Passwords(hasher, List.of(), threads, threads * 64, cache ? 1024 : 0);
+        stored = passwords.hash("correct horse battery staple");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Passwords.Check login() {
+        return passwords.verify("correct horse battery staple", stored);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.infra.ColumnarWalletStorage;
+import com.example.finance.infra.JournalWalletStorage;
+import com.example.finance.infra.JsonWalletStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Загрузка и сохранение кошелька разными хранилищами во временном каталоге.
+ * saveAfterAppend — типичный сценарий CLI/переводов: одна новая операция и сохранение.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int operations;
+
+    @Param({"json", "journal", "columnar"})
+    public String storage;
+
+    private Path dir;
+    private WalletStorage walletStorage;
+    private Wallet wallet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("finance-bench");
+        walletStorage = switch (storage) {
+            case "json" -> new JsonWalletStorage(dir);
+            case "journal" -> new JournalWalletStorage(dir);
+            case "columnar" -> new ColumnarWalletStorage(dir);
+            default -> throw new IllegalArgumentException(storage);
+        };
+        walletStorage.saveWallet("bench", new WalletGenerator(operations, 20, 5).generate());
+        wallet = walletStorage.loadWallet("bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (walletStorage instanceof JournalWalletStorage journal) journal.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Wallet load() {
+        return walletStorage.loadWallet("bench");
+    }
+
+    @Benchmark
+    public void saveAfterAppend() {
+        wallet.getOperations().add(new Operation(OperationType.EXPENSE, WalletGenerator.category(0), 10, "bench"));
+        walletStorage.saveWallet("bench", wallet);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.core.services.TransferService;
+import com.example.finance.core.services.WalletService;
+import com.example.finance.infra.InMemoryUserRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Перевод между двумя пользователями с хранилищем в памяти: стоимость самого сервиса без диска. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int operations;
+
+    @Param({"10"})
+    public int categories;
+
+    private User from;
+    private TransferService transferService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        MemoryWalletStorage storage = new MemoryWalletStorage();
+
+        from = new User("sender", "hash");
+        from.setWallet(new WalletGenerator(operations, categories, 0, 365, 1).generate());
+        User to = new User("receiver", "hash");
+        users.save(from);
+        users.save(to);
+        storage.saveWallet("sender", from.getWallet());
+        storage.saveWallet("receiver", new WalletGenerator(operations, categories, 0, 365, 2).generate());
+
+        transferService = new TransferService(users, storage, new WalletService());
+    }
+
+    @Benchmark
+    public void transfer() {
+        transferService.transfer(from, "receiver", 1, "bench");
+    }
+
+    static final class MemoryWalletStorage implements WalletStorage {
+        private final Map<String, Wallet> wallets = new HashMap<>();
+
+        @Override
+        public Wallet loadWallet(String login) {
+            return wallets.getOrDefault(login, new Wallet());
+        }
+
+        @Override
+        public void saveWallet(String login, Wallet wallet) {
+            wallets.put(login, wallet);
+        }
+    }
+}
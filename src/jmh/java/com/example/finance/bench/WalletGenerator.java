@@ -0,0 +1,77 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетические кошельки для бенчмарков: заданное число операций, категорий и бюджетов,
+ * операции равномерно распределены по {@code days} дням до {@link #END}, доходов ~20%.
+ * Одинаковый seed даёт одинаковый кошелёк.
+ */
+public final class WalletGenerator {
+    public static final LocalDateTime END = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private final int operations;
+    private final int categories;
+    private final int budgets;
+    private final int days;
+    private final long seed;
+
+    public WalletGenerator(int operations, int categories, int budgets, int days, long seed) {
+        if (categories < 1) throw new IllegalArgumentException("Нужна хотя бы одна категория.");
+        this.operations = operations;
+        this.categories = categories;
+        this.budgets = Math.min(budgets, categories);
+        this.days = Math.max(days, 1);
+        this.seed = seed;
+    }
+
+    public WalletGenerator(int operations, int categories, int budgets) {
+        this(operations, categories, budgets, 3 * 365, 42);
+    }
+
+    public static String category(int i) {
+        return "cat-" + i;
+    }
+
+    public List<String> categoryNames() {
+        List<String> res = new ArrayList<>(categories);
+        for (int i = 0; i < categories; i++) res.add(category(i));
+        return res;
+    }
+
+    public Wallet generate() {
+        return fill(new Wallet());
+    }
+
+    public Wallet generatePacked() {
+        return fill(Wallet.packed());
+    }
+
+    private Wallet fill(Wallet w) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < categories; i++) w.getCategories().add(category(i));
+        for (int i = 0; i < budgets; i++) w.getBudgetsByCategory().put(category(i), 1_000.0 + rnd.nextInt(100_000));
+
+        LocalDateTime start = END.minusDays(days);
+        long spanSeconds = days * 86_400L;
+        // операции идут по времени, как при обычном вводе
+        for (int i = 0; i < operations; i++) {
+            boolean income = rnd.nextInt(5) == 0;
+            Operation o = new Operation(
+                    income ? OperationType.INCOME : OperationType.EXPENSE,
+                    category(rnd.nextInt(categories)),
+                    1 + rnd.nextInt(500_000) / 100.0,
+                    "note " + (i & 1023));
+            o.setCreatedAt(start.plusSeconds(spanSeconds * i / Math.max(operations, 1)));
+            w.getOperations().add(o);
+        }
+        return w;
+    }
+}
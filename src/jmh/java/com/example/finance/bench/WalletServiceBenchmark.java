@@ -0,0 +1,70 @@
+package com.example.finance.bench;
+
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.WalletService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int operations;
+
+    @Param({"10", "100"})
+    public int categories;
+
+    @Param({"0", "10"})
+    public int budgets;
+
+    private final WalletService service = new WalletService();
+    private Wallet wallet;
+    private List<String> sumCategories;
+    private LocalDate monthFrom;
+    private LocalDate monthTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WalletGenerator generator = new WalletGenerator(operations, categories, budgets);
+        wallet = generator.generate();
+        sumCategories = generator.categoryNames().subList(0, Math.max(1, categories / 2));
+        monthTo = WalletGenerator.END.toLocalDate().minusDays(1);
+        monthFrom = monthTo.withDayOfMonth(1);
+    }
+
+    @Benchmark
+    public List<String> addExpense() {
+        return service.addExpense(wallet, WalletGenerator.category(0), 10, "bench");
+    }
+
+    @Benchmark
+    public String buildStatsReport() {
+        return service.buildStatsReport(wallet);
+    }
+
+    @Benchmark
+    public void writeStatsReport() throws IOException {
+        service.writeStatsReport(wallet, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String buildStatsReportForMonth() {
+        return service.buildStatsReport(wallet, monthFrom, monthTo);
+    }
+
+    @Benchmark
+    public double sumByCategories() {
+        return service.sumByCategories(wallet, OperationType.EXPENSE, sumCategories);
+    }
+}
@@ -1,31 +1,151 @@
 package com.example.finance;
 
 import com.example.finance.cli.CommandLoop;
+import com.example.finance.core.ports.UserRepository;
 import com.example.finance.core.ports.UserStorage;
 import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.core.services.AnalyticsService;
 import com.example.finance.core.services.AuthService;
+import com.example.finance.core.services.LoginLocks;
+import com.example.finance.core.services.Metrics;
+import com.example.finance.core.services.Passwords;
 import com.example.finance.core.services.TransferService;
 import com.example.finance.core.services.WalletService;
-import com.example.finance.infra.InMemoryUserRepository;
+import com.example.finance.http.HttpApiServer;
+import com.example.finance.infra.CachingWalletStorage;
+import com.example.finance.infra.ColumnarWalletStorage;
+import com.example.finance.infra.ConcurrentUserRepository;
+import com.example.finance.infra.JmxMetrics;
+import com.example.finance.infra.JournalWalletStorage;
 import com.example.finance.infra.JsonUserStorage;
 import com.example.finance.infra.JsonWalletStorage;
+import com.example.finance.infra.LazyUserRepository;
+import com.example.finance.infra.MeteredUserStorage;
+import com.example.finance.infra.MeteredWalletStorage;
+import com.example.finance.infra.ShardedUserStorage;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 
 public class Main {
     public static void main(String[] args) {
         Path dataDir = Path.of("data");
 
-        InMemoryUserRepository repo = new InMemoryUserRepository();
-        UserStorage userStorage = new JsonUserStorage(dataDir.resolve("users.json"));
-        WalletStorage walletStorage = new JsonWalletStorage(dataDir);
+        // -Dfinance.compactJson=true пишет JSON без отступов
+        boolean compactJson = Boolean.getBoolean("finance.compactJson");
+        UserStorage userStorage = userStorage(dataDir, compactJson);
+        UserRepository repo = userRepository(userStorage);
 
+        // метрики видны в JMX (com.example.finance:type=Metrics), командой metrics и в файле
+        // -Dfinance.metricsDump=<файл> при выходе; -Dfinance.metrics=false их отключает
+        JmxMetrics.register(Metrics.global());
+        String metricsDump = System.getProperty("finance.metricsDump");
+        if (metricsDump != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.global().dump(Path.of(metricsDump)),
+                    "metrics-dump"));
+        }
+
+        LoginLocks locks = new LoginLocks();
+        // замеряется обращение к диску, под кэшем
+        WalletStorage walletStorage = new MeteredWalletStorage(walletStorage(dataDir, compactJson), "storage.wallet");
+        // -Dfinance.walletCache=false отключает кэш и фоновое сохранение кошельков
+        if (Boolean.parseBoolean(System.getProperty("finance.walletCache", "true"))) {
+            walletStorage = new CachingWalletStorage(walletStorage, locks::lockFor);
+        }
+        boolean serving = false;
+        try {
+            AuthService authService = new AuthService(repo, new MeteredUserStorage(userStorage), walletStorage, locks, Passwords.fromSystemProperties());
+            WalletService walletService = new WalletService();
+            TransferService transferService = new TransferService(repo, walletStorage, walletService, locks);
+
+            // --server [port] [host]: HTTP/JSON API вместо консоли; работает до остановки процесса.
+            // Без host слушает только loopback; -Dfinance.sessionIdleMinutes (30) — тайм-аут простоя сессии
+            if (args.length >= 1 && args[0].equals("--server")) {
+                int port = args.length >= 2 ? Integer.parseInt(args[1]) : 8080;
+                String host = args.length >= 3 ? args[2] : null;
+                Duration idle = Duration.ofMinutes(Long.getLong("finance.sessionIdleMinutes", 30));
+                serve(new HttpApiServer(authService, walletService, transferService, idle), host, port,
+                        walletStorage, userStorage);
+                serving = true;
+                return;
+            }
+
+            // --analytics [top]: сводка по кошелькам всех пользователей, без входа в консоль
+            if (args.length >= 1 && args[0].equals("--analytics")) {
+                int top = args.length >= 2 ? Integer.parseInt(args[1]) : 10;
+                AnalyticsService analytics = new AnalyticsService(repo, walletStorage, locks);
+                System.out.print(analytics.buildReport(analytics.analyze(top)));
+                return;
+            }
+
+            CommandLoop loop = new CommandLoop(authService, walletService, transferService);
+            // --batch <file>: выполнить скрипт команд без интерактивного ввода
+            if (args.length >= 2 && args[0].equals("--batch")) loop.runBatch(Path.of(args[1]));
+            else loop.run();
+        } finally {
+            if (!serving) {
+                close(walletStorage);
+                close(userStorage);
+            }
+        }
+    }
+
+    private static void serve(HttpApiServer server, String host, int port, WalletStorage walletStorage,
+                              UserStorage userStorage) {
+        try {
+            System.out.println("HTTP API слушает порт " + server.start(host, port));
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось запустить HTTP-сервер: " + e.getMessage(), e);
+        }
+        // сессии и кошельки сохраняются при штатной остановке (Ctrl+C, SIGTERM)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            close(walletStorage);
+            close(userStorage);
+        }, "http-shutdown"));
+    }
+
+    private static void close(WalletStorage walletStorage) {
+        if (walletStorage instanceof CachingWalletStorage cache) cache.close();
+        else if (walletStorage instanceof MeteredWalletStorage metered) metered.close();
+    }
+
+    private static void close(UserStorage userStorage) {
+        if (userStorage instanceof ShardedUserStorage sharded) sharded.close();
+    }
+
+    // шардированные пользователи читаются по одному при входе, в кэше -Dfinance.userCache (10000) последних;
+    // из JSON все пользователи загружаются при старте
+    private static UserRepository userRepository(UserStorage userStorage) {
+        if (userStorage instanceof ShardedUserStorage sharded) {
+            return new LazyUserRepository(sharded, Integer.getInteger("finance.userCache", 10_000));
+        }
+        ConcurrentUserRepository repo = new ConcurrentUserRepository();
         repo.replaceAll(userStorage.loadAll());
+        return repo;
+    }
 
-        AuthService authService = new AuthService(repo, userStorage, walletStorage);
-        WalletService walletService = new WalletService();
-        TransferService transferService = new TransferService(repo, walletStorage, walletService);
+    // формат пользователей: -Dfinance.userStorage=sharded (по умолчанию, data/users/users-<n>.log) | json (data/users.json);
+    // шарды при первом запуске заполняются из users.json
+    private static UserStorage userStorage(Path dataDir, boolean compactJson) {
+        String kind = System.getProperty("finance.userStorage", "sharded");
+        return switch (kind) {
+            case "sharded" -> new ShardedUserStorage(dataDir.resolve("users"), dataDir.resolve("users.json"));
+            case "json" -> new JsonUserStorage(dataDir.resolve("users.json"), compactJson);
+            default -> throw new IllegalArgumentException("Неизвестный формат хранилища пользователей: " + kind);
+        };
+    }
 
-        new CommandLoop(authService, walletService, transferService).run();
+    // формат кошельков: -Dfinance.storage=journal (по умолчанию) | columnar | json;
+    // -Dfinance.packedWallets=true держит операции журнальных и JSON-кошельков в упакованных столбцах
+    private static WalletStorage walletStorage(Path dataDir, boolean compactJson) {
+        String kind = System.getProperty("finance.storage", "journal");
+        return switch (kind) {
+            case "journal" -> new JournalWalletStorage(dataDir, Boolean.getBoolean("finance.packedWallets"));
+            case "columnar" -> new ColumnarWalletStorage(dataDir);
+            case "json" -> new JsonWalletStorage(dataDir, compactJson, Boolean.getBoolean("finance.packedWallets"));
+            default -> throw new IllegalArgumentException("Неизвестный формат хранилища: " + kind);
+        };
     }
 }
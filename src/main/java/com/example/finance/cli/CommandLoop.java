@@ -1,209 +1,403 @@
 package com.example.finance.cli;
 
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.Operation;
 import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
 import com.example.finance.core.services.AuthService;
+import com.example.finance.core.services.ImportService;
+import com.example.finance.core.services.Metrics;
 import com.example.finance.core.services.TransferService;
 import com.example.finance.core.services.WalletService;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class CommandLoop {
     private final AuthService auth;
     private final WalletService wallet;
     private final TransferService transfer;
+    private final ImportService importer;
+    private PrintStream out = System.out;
 
     public CommandLoop(AuthService auth, WalletService wallet, TransferService transfer) {
+        this(auth, wallet, transfer, new ImportService(wallet));
+    }
+
+    public CommandLoop(AuthService auth, WalletService wallet, TransferService transfer, ImportService importer) {
         this.auth = auth;
         this.wallet = wallet;
         this.transfer = transfer;
+        this.importer = importer;
     }
 
     public void run() {
-        System.out.println("Finance CLI запущен. Введите 'help' для списка команд.");
+        out.println("Finance CLI запущен. Введите 'help' для списка команд.");
         Scanner sc = new Scanner(System.in);
 
         while (true) {
-            System.out.print("> ");
-            String line = sc.nextLine();
-            if (line == null) break;
-
-            line = line.trim();
+            out.print("> ");
+            if (!sc.hasNextLine()) break;
+            String line = sc.nextLine().trim();
             if (line.isEmpty()) continue;
 
-            try {
-                String[] parts = line.split("\\s+");
-                String cmd = parts[0].toLowerCase();
-                String[] args = Arrays.copyOfRange(parts, 1, parts.length);
+            String[] parts = line.split("\\s+");
+            if (!executeSafely(parts[0].toLowerCase(), Arrays.copyOfRange(parts, 1, parts.length))) return;
+        }
+    }
 
-                switch (cmd) {
-                    case "help" -> printHelp();
+    /**
+     * Пакетный режим: скрипт читается и разбирается целиком до выполнения, вывод буферизуется
+     * и сбрасывается в конце. Подряд идущие add-income/add-expense применяются одной группой:
+     * под одной блокировкой кошелька, с одним уведомлением хранилища и одним расчётом оповещений.
+     * Конец скрипта работает как exit.
+     */
+    public void runBatch(Path script) {
+        List<String[]> commands = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(script)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                commands.add(line.split("\\s+"));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось прочитать скрипт: " + e.getMessage(), e);
+        }
 
-                    case "register" -> {
-                        requireArgs(args, 2, "register <login> <password>");
-                        auth.register(args[0], args[1]);
-                        System.out.println("Пользователь зарегистрирован: " + args[0]);
-                    }
+        PrintStream console = out;
+        out = new PrintStream(new ConsoleBuffer(console), false, StandardCharsets.UTF_8);
+        try {
+            int i = 0;
+            while (i < commands.size()) {
+                String cmd = commands.get(i)[0].toLowerCase();
+                if (isAddOp(cmd)) {
+                    int j = i;
+                    while (j < commands.size() && isAddOp(commands.get(j)[0].toLowerCase())) j++;
+                    addOps(commands.subList(i, j));
+                    i = j;
+                    continue;
+                }
+                String[] parts = commands.get(i++);
+                if (!executeSafely(cmd, Arrays.copyOfRange(parts, 1, parts.length))) return;
+            }
+            executeSafely("exit", new String[0]);
+        } finally {
+            out.flush();
+            out = console;
+        }
+    }
 
-                    case "login" -> {
-                        requireArgs(args, 2, "login <login> <password>");
-                        auth.login(args[0], args[1]);
-                        System.out.println("Вход выполнен: " + args[0]);
-                    }
+    // копит вывод и отдаёт его консоли кусками по 64 КБ; печать строкой сохраняет кодировку консоли
+    private static final class ConsoleBuffer extends OutputStream {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(64 * 1024);
+        private final PrintStream console;
 
-                    case "logout" -> {
-                        auth.logoutAndSave();
-                        System.out.println("Вы вышли из аккаунта. Данные сохранены.");
-                    }
+        ConsoleBuffer(PrintStream console) {
+            this.console = console;
+        }
 
-                    case "whoami" -> {
-                        var u = auth.getCurrentUserOrNull();
-                        System.out.println(u == null ? "(не авторизован)" : ("Вы: " + u.getLogin()));
-                    }
+        @Override
+        public void write(int b) {
+            buf.write(b);
+        }
 
-                    case "add-category" -> {
-                        requireArgs(args, 1, "add-category <name>");
-                        var u = auth.requireUser();
-                        wallet.addCategory(u.getWallet(), joinFrom(args, 0));
-                        System.out.println("Категория добавлена.");
-                    }
+        // PrintStream пишет сюда целые символы, поэтому кусок не режет UTF-8 посередине
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buf.write(b, off, len);
+            if (buf.size() >= 64 * 1024) flush();
+        }
 
-                    case "set-budget" -> {
-                        requireArgs(args, 2, "set-budget <category> <limit>");
-                        var u = auth.requireUser();
-                        wallet.setBudget(u.getWallet(), args[0], parseDouble(args[1], "limit"));
-                        System.out.println("Бюджет установлен.");
-                    }
+        @Override
+        public void flush() {
+            console.print(buf.toString(StandardCharsets.UTF_8));
+            console.flush();
+            buf.reset();
+        }
+    }
 
-                    case "add-income" -> addOp(OperationType.INCOME, args);
-                    case "add-expense" -> addOp(OperationType.EXPENSE, args);
+    private static boolean isAddOp(String cmd) {
+        return cmd.equals("add-income") || cmd.equals("add-expense");
+    }
 
-                    case "sum-income" -> {
-                        requireArgs(args, 1, "sum-income <cat1,cat2,...>");
-                        var u = auth.requireUser();
-                        var cats = wallet.parseCategoriesCsv(args[0]);
-                        double sum = wallet.sumByCategories(u.getWallet(), OperationType.INCOME, cats);
-                        System.out.println("Сумма доходов по категориям " + cats + ": " + sum);
+    // подтверждения печатаются только после appendAll: до этого операция ещё не добавлена
+    private void addOps(List<String[]> group) {
+        String[] errors = new String[group.size()];
+        List<String> alerts;
+        try {
+            alerts = auth.requireSession().withWallet(w -> {
+                List<Operation> ops = new ArrayList<>(group.size());
+                for (int i = 0; i < group.size(); i++) {
+                    String[] parts = group.get(i);
+                    try {
+                        ops.add(parseOp(w, parts[0].toLowerCase(), Arrays.copyOfRange(parts, 1, parts.length)));
+                    } catch (IllegalArgumentException e) {
+                        errors[i] = e.getMessage();
                     }
+                }
+                return wallet.appendAll(w, ops);
+            });
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            for (String error : errors) out.println("Ошибка: " + (error != null ? error : e.getMessage()));
+            return;
+        }
+        for (String error : errors) out.println(error == null ? "Операция добавлена." : "Ошибка: " + error);
+        for (String a : alerts) out.println(a);
+    }
 
-                    case "sum-expense" -> {
-                        requireArgs(args, 1, "sum-expense <cat1,cat2,...>");
-                        var u = auth.requireUser();
-                        var cats = wallet.parseCategoriesCsv(args[0]);
-                        double sum = wallet.sumByCategories(u.getWallet(), OperationType.EXPENSE, cats);
-                        System.out.println("Сумма расходов по категориям " + cats + ": " + sum);
-                    }
+    private Operation parseOp(Wallet w, String cmd, String[] args) {
+        requireArgs(args, 2, cmd + " <category> <amount> [note...]");
+        OperationType type = cmd.equals("add-income") ? OperationType.INCOME : OperationType.EXPENSE;
+        String note = args.length >= 3 ? joinFrom(args, 2) : "";
+        return wallet.newOperationMinor(w, type, args[0], parseAmount(args[1], "amount"), note);
+    }
 
-                    case "transfer" -> {
-                        requireArgs(args, 2, "transfer <toLogin> <amount> [note...]");
-                        var from = auth.requireUser();
-                        String toLogin = args[0];
-                        double amount = parseDouble(args[1], "amount");
-                        String note = args.length >= 3 ? joinFrom(args, 2) : "";
-                        transfer.transfer(from, toLogin, amount, note);
-                        System.out.println("Перевод выполнен.");
-                    }
+    // false — команда exit
+    private boolean executeSafely(String cmd, String[] args) {
+        try {
+            return execute(cmd, args);
+        } catch (Exception e) {
+            out.println("Ошибка: " + e.getMessage());
+            return true;
+        }
+    }
 
-                    case "list-categories" -> {
-                        var u = auth.requireUser();
-                        var cats = new java.util.ArrayList<>(u.getWallet().getCategories());
-                        cats.sort(String::compareTo);
-
-                        if (cats.isEmpty()) {
-                            System.out.println("(категорий нет)");
-                        } else {
-                            System.out.println("Категории:");
-                            for (String c : cats) System.out.println("  - " + c);
-                        }
-                    }
+    private boolean execute(String cmd, String[] args) throws Exception {
+        switch (cmd) {
+            case "help" -> printHelp();
 
-                    case "list-budgets" -> {
-                        var u = auth.requireUser();
-                        var budgets = u.getWallet().getBudgetsByCategory();
-
-                        if (budgets.isEmpty()) {
-                            System.out.println("(бюджетов нет)");
-                        } else {
-                            var remaining = wallet.remainingBudgetByCategory(u.getWallet());
-                            var keys = new java.util.ArrayList<>(budgets.keySet());
-                            keys.sort(String::compareTo);
-
-                            System.out.println("Бюджеты:");
-                            for (String cat : keys) {
-                                double limit = budgets.get(cat);
-                                double rem = remaining.getOrDefault(cat, limit);
-                                System.out.println("  " + cat + ": " + limit + ", остаток: " + rem);
-                            }
-                        }
-                    }
+            case "register" -> {
+                requireArgs(args, 2, "register <login> <password>");
+                auth.register(args[0], args[1]);
+                out.println("Пользователь зарегистрирован: " + args[0]);
+            }
 
-                    case "stats" -> {
-                        var u = auth.requireUser();
-                        System.out.println(wallet.buildStatsReport(u.getWallet()));
-                    }
+            case "login" -> {
+                requireArgs(args, 2, "login <login> <password>");
+                auth.login(args[0], args[1]);
+                out.println("Вход выполнен: " + args[0]);
+            }
 
-                    case "stats-period" -> {
-                        requireArgs(args, 2, "stats-period <from:YYYY-MM-DD> <to:YYYY-MM-DD>");
-                        var u = auth.requireUser();
-                        LocalDate from = parseIsoDate(args[0]);
-                        LocalDate to = parseIsoDate(args[1]);
-                        System.out.println(wallet.buildStatsReport(u.getWallet(), from, to));
-                    }
+            case "logout" -> {
+                auth.logoutAndSave();
+                out.println("Вы вышли из аккаунта. Данные сохранены.");
+            }
+
+            case "whoami" -> {
+                var u = auth.getCurrentUserOrNull();
+                out.println(u == null ? "(не авторизован)" : ("Вы: " + u.getLogin()));
+            }
+
+            case "add-category" -> {
+                requireArgs(args, 1, "add-category <name>");
+                String name = joinFrom(args, 0);
+                auth.requireSession().withWallet(w -> {
+                    wallet.addCategory(w, name);
+                    return null;
+                });
+                out.println("Категория добавлена.");
+            }
+
+            case "set-budget" -> {
+                requireArgs(args, 2, "set-budget <category> <limit>");
+                long limit = parseAmount(args[1], "limit");
+                auth.requireSession().withWallet(w -> {
+                    wallet.setBudgetMinor(w, args[0], limit);
+                    return null;
+                });
+                out.println("Бюджет установлен.");
+            }
+
+            case "set-period-budget" -> {
+                requireArgs(args, 3, "set-period-budget <category> <month|week> <limit> [rollover]");
+                BudgetPeriod period = BudgetPeriod.parse(args[1]);
+                long limit = parseAmount(args[2], "limit");
+                boolean rollover = args.length >= 4 && args[3].equalsIgnoreCase("rollover");
+                auth.requireSession().withWallet(w -> {
+                    wallet.setPeriodicBudgetMinor(w, args[0], period, limit, rollover);
+                    return null;
+                });
+                out.println("Бюджет на период установлен.");
+            }
+
+            case "add-income" -> addOp(OperationType.INCOME, args);
+            case "add-expense" -> addOp(OperationType.EXPENSE, args);
+
+            case "sum-income" -> {
+                requireArgs(args, 1, "sum-income <cat1,cat2,...>");
+                var cats = wallet.parseCategoriesCsv(args[0]);
+                long sum = auth.requireSession().readWallet(w -> wallet.sumByCategoriesMinor(w, OperationType.INCOME, cats));
+                out.println("Сумма доходов по категориям " + cats + ": " + Money.format(sum));
+            }
+
+            case "sum-expense" -> {
+                requireArgs(args, 1, "sum-expense <cat1,cat2,...>");
+                var cats = wallet.parseCategoriesCsv(args[0]);
+                long sum = auth.requireSession().readWallet(w -> wallet.sumByCategoriesMinor(w, OperationType.EXPENSE, cats));
+                out.println("Сумма расходов по категориям " + cats + ": " + Money.format(sum));
+            }
 
-                    case "export-stats" -> {
-                        requireArgs(args, 1, "export-stats <filepath>");
-                        var u = auth.requireUser();
+            case "transfer" -> {
+                requireArgs(args, 2, "transfer <toLogin> <amount> [note...]");
+                var from = auth.requireUser();
+                String toLogin = args[0];
+                long amount = parseAmount(args[1], "amount");
+                String note = args.length >= 3 ? joinFrom(args, 2) : "";
+                transfer.transferMinor(from, toLogin, amount, note);
+                out.println("Перевод выполнен.");
+            }
 
-                        String pathStr = joinFrom(args, 0);
-                        Path path = Path.of(pathStr);
+            case "import" -> {
+                requireArgs(args, 1, "import <file.csv|file.ofx>");
+                var result = importer.importFile(auth.requireSession(), Path.of(joinFrom(args, 0)));
+                out.println("Импортировано операций: " + result.operations()
+                        + " (новых категорий: " + result.newCategories() + ")");
+                for (String a : result.alerts()) out.println(a);
+            }
 
-                        Path parent = path.getParent();
-                        if (parent != null) Files.createDirectories(parent);
+            case "list-categories" -> {
+                var cats = auth.requireSession().readWallet(w -> new java.util.ArrayList<>(w.getCategories()));
+                cats.sort(String::compareTo);
 
-                        String report = wallet.buildStatsReport(u.getWallet());
-                        Files.writeString(path, report);
+                if (cats.isEmpty()) {
+                    out.println("(категорий нет)");
+                } else {
+                    out.println("Категории:");
+                    for (String c : cats) out.println("  - " + c);
+                }
+            }
 
-                        System.out.println("Отчёт сохранён в файл: " + pathStr);
+            case "list-budgets" -> {
+                // лимиты и остатки читаются одним заходом, чтобы строки были согласованы между собой
+                var lines = auth.requireSession().readWallet(w -> {
+                    var keys = new ArrayList<>(w.budgets().limitsMinor().entrySet());
+                    keys.sort(Map.Entry.comparingByKey());
+                    List<String> res = new ArrayList<>();
+                    for (var e : keys) {
+                        res.add("  " + e.getKey() + ": " + Money.format(e.getValue())
+                                + ", остаток: " + Money.format(w.budgets().remainingMinor(e.getKey())));
                     }
+                    return res;
+                });
+
+                if (lines.isEmpty()) {
+                    out.println("(бюджетов нет)");
+                } else {
+                    out.println("Бюджеты:");
+                    for (String line : lines) out.println(line);
+                }
+            }
+
+            case "list-period-budgets" -> {
+                String report = auth.requireSession().readWallet(w -> wallet.buildPeriodicBudgetsReport(w, LocalDate.now()));
+                out.println(report);
+            }
+
+            case "stats-series" -> {
+                requireArgs(args, 3, "stats-series <day|month|year> <from:YYYY-MM-DD> <to:YYYY-MM-DD>");
+                ChronoUnit unit = switch (args[0].toLowerCase()) {
+                    case "day" -> ChronoUnit.DAYS;
+                    case "month" -> ChronoUnit.MONTHS;
+                    case "year" -> ChronoUnit.YEARS;
+                    default -> throw new IllegalArgumentException("Шаг ряда должен быть day, month или year.");
+                };
+                LocalDate from = parseIsoDate(args[1]);
+                LocalDate to = parseIsoDate(args[2]);
+                String report = auth.requireSession().readWallet(w -> wallet.buildSeriesReport(w, unit, from, to));
+                out.println(report);
+            }
+
+            case "stats" -> {
+                String report = auth.requireSession().readWallet(w -> wallet.buildStatsReport(w));
+                out.println(report);
+            }
+
+            case "stats-period" -> {
+                requireArgs(args, 2, "stats-period <from:YYYY-MM-DD> <to:YYYY-MM-DD>");
+                LocalDate from = parseIsoDate(args[0]);
+                LocalDate to = parseIsoDate(args[1]);
+                String report = auth.requireSession().readWallet(w -> wallet.buildStatsReport(w, from, to));
+                out.println(report);
+            }
 
-                    case "exit" -> {
-                        auth.logoutAndSave();
-                        System.out.println("Данные сохранены. Выход.");
-                        return;
+            case "export-stats" -> {
+                requireArgs(args, 1, "export-stats <filepath>");
+                var session = auth.requireSession();
+
+                String pathStr = joinFrom(args, 0);
+                Path path = Path.of(pathStr);
+
+                Path parent = path.getParent();
+                if (parent != null) Files.createDirectories(parent);
+
+                // отчёт пишется в файл по мере сборки, без промежуточной строки
+                session.readWallet(w -> {
+                    try (Writer writer = Files.newBufferedWriter(path)) {
+                        wallet.writeStatsReport(w, writer);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Не удалось записать отчёт: " + e.getMessage(), e);
                     }
+                    return null;
+                });
+
+                out.println("Отчёт сохранён в файл: " + pathStr);
+            }
 
-                    default -> System.out.println("Неизвестная команда. Введите 'help'.");
+            // metrics [file]: задержки и счётчики процесса; с файлом — записать отчёт туда
+            case "metrics" -> {
+                if (args.length == 0) {
+                    out.print(Metrics.global().report());
+                } else {
+                    String pathStr = joinFrom(args, 0);
+                    Metrics.global().dump(Path.of(pathStr));
+                    out.println("Метрики сохранены в файл: " + pathStr);
                 }
+            }
 
-            } catch (Exception e) {
-                System.out.println("Ошибка: " + e.getMessage());
+            case "exit" -> {
+                auth.logoutAndSave();
+                out.println("Данные сохранены. Выход.");
+                return false;
             }
+
+            default -> out.println("Неизвестная команда. Введите 'help'.");
         }
+        return true;
     }
 
     private void addOp(OperationType type, String[] args) {
         requireArgs(args, 2,
                 (type == OperationType.INCOME ? "add-income" : "add-expense") + " <category> <amount> [note...]");
 
-        var u = auth.requireUser();
+        var session = auth.requireSession();
         String category = args[0];
-        double amount = parseDouble(args[1], "amount");
+        long amount = parseAmount(args[1], "amount");
         String note = args.length >= 3 ? joinFrom(args, 2) : "";
 
-        List<String> alerts = (type == OperationType.INCOME)
-                ? wallet.addIncome(u.getWallet(), category, amount, note)
-                : wallet.addExpense(u.getWallet(), category, amount, note);
+        List<String> alerts = session.withWallet(w -> (type == OperationType.INCOME)
+                ? wallet.addIncomeMinor(w, category, amount, note)
+                : wallet.addExpenseMinor(w, category, amount, note));
 
-        System.out.println("Операция добавлена.");
-        for (String a : alerts) System.out.println(a);
+        out.println("Операция добавлена.");
+        for (String a : alerts) out.println(a);
     }
 
     private void printHelp() {
-        System.out.println("""
+        out.println("""
 Команды:
   help
   register <login> <password>
@@ -213,6 +407,7 @@ public class CommandLoop {
 
   add-category <name>
   set-budget <category> <limit>
+  set-period-budget <category> <month|week> <limit> [rollover]
 
   add-income <category> <amount> [note...]
   add-expense <category> <amount> [note...]
@@ -222,12 +417,18 @@ public class CommandLoop {
 
   transfer <toLogin> <amount> [note...]
 
+  import <file.csv|file.ofx>
+
   list-categories
   list-budgets
+  list-period-budgets
 
   stats
   stats-period <from:YYYY-MM-DD> <to:YYYY-MM-DD>
+  stats-series <day|month|year> <from:YYYY-MM-DD> <to:YYYY-MM-DD>
   export-stats <filepath>
+
+  metrics [filepath]
   exit
 """);
     }
@@ -236,13 +437,12 @@ public class CommandLoop {
         if (args.length < min) throw new IllegalArgumentException("Использование: " + usage);
     }
 
-    private static double parseDouble(String s, String field) {
+    // сумма разбирается как десятичная дробь сразу в копейки; больше двух знаков после запятой — ошибка
+    private static long parseAmount(String s, String field) {
         try {
-            double v = Double.parseDouble(s.replace(",", "."));
-            if (Double.isNaN(v) || Double.isInfinite(v)) throw new NumberFormatException();
-            return v;
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Некорректное число для " + field + ": " + s);
+            return Money.parse(s);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(field + ": " + e.getMessage());
         }
     }
 
@@ -0,0 +1,17 @@
+package com.example.finance.core.model;
+
+/**
+ * Пересечение порога бюджета категории: {@code thresholdPercent} — наивысший порог,
+ * пройденный операцией (80, 100, 110, 120, ...); 100 означает, что расходы стали больше лимита.
+ * Лимит и расходы — в минимальных единицах ({@link Money}).
+ */
+public record BudgetEvent(String category, int thresholdPercent, long limitMinor, long spentMinor) {
+
+    public long remainingMinor() {
+        return limitMinor - spentMinor;
+    }
+
+    public boolean exceeded() {
+        return thresholdPercent >= 100;
+    }
+}
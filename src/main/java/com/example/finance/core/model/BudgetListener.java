@@ -0,0 +1,7 @@
+package com.example.finance.core.model;
+
+/** Получает события {@link BudgetTracker} о пересечении порогов бюджета. */
+@FunctionalInterface
+public interface BudgetListener {
+    void onThreshold(BudgetEvent event);
+}
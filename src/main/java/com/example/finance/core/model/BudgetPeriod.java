@@ -0,0 +1,52 @@
+package com.example.finance.core.model;
+
+import java.time.LocalDate;
+
+/**
+ * Период повторяющегося бюджета. Периоды нумеруются подряд от эпохи, чтобы номер
+ * операции считался из секунд createdAt без календарных объектов на каждую операцию:
+ * неделя начинается в понедельник, месяц — первого числа.
+ */
+public enum BudgetPeriod {
+    MONTH(12),
+    WEEK(8);
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    // сколько последних периодов держит кольцевой буфер сумм
+    final int window;
+
+    BudgetPeriod(int window) {
+        this.window = window;
+    }
+
+    public long index(LocalDate day) {
+        return switch (this) {
+            case MONTH -> day.getYear() * 12L + day.getMonthValue() - 1;
+            // 1970-01-01 — четверг, понедельник той недели — день -3
+            case WEEK -> Math.floorDiv(day.toEpochDay() + 3, 7);
+        };
+    }
+
+    long index(long epochSecond) {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        return this == WEEK ? Math.floorDiv(epochDay + 3, 7) : index(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /** Первый день периода с номером {@code index}. */
+    public LocalDate start(long index) {
+        return switch (this) {
+            case MONTH -> LocalDate.of((int) Math.floorDiv(index, 12), Math.floorMod(index, 12) + 1, 1);
+            case WEEK -> LocalDate.ofEpochDay(index * 7 - 3);
+        };
+    }
+
+    public static BudgetPeriod parse(String s) {
+        if (s == null) throw new IllegalArgumentException("Период бюджета не задан.");
+        return switch (s.trim().toLowerCase()) {
+            case "month", "monthly", "месяц" -> MONTH;
+            case "week", "weekly", "неделя" -> WEEK;
+            default -> throw new IllegalArgumentException("Период бюджета должен быть month или week: " + s);
+        };
+    }
+}
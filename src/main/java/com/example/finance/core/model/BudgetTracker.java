@@ -0,0 +1,250 @@
+package com.example.finance.core.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Материализованное состояние бюджетов кошелька: по каждой категории с лимитом хранятся
+ * лимит, текущие расходы (в минимальных единицах, {@link Money}) и наивысший пройденный порог. Кошелёк сообщает трекеру новую сумму
+ * расходов категории при каждом изменении операций, поэтому проверка порогов стоит O(1)
+ * и ничего не создаёт, пока порог не пересечён.
+ *
+ * Пороги: 80%, 100% (расходы больше лимита) и далее каждые 10% сверх лимита.
+ * Событие {@link BudgetEvent} получает каждый {@link BudgetListener}, только когда операция
+ * поднимает категорию на новый порог; если операция перешагнула несколько порогов, событие одно —
+ * с наивысшим. Снижение расходов (удаление, правка) или смена лимита пересчитывают порог молча,
+ * так что следующее пересечение снова даст событие.
+ */
+public final class BudgetTracker {
+    private final Map<String, State> states = new HashMap<>();
+    private final List<BudgetListener> listeners = new ArrayList<>();
+    private final Limits limits = new Limits();
+    private final Wallet wallet;
+    // категории, затронутые правкой операции: порог сравнивается только после правки целиком
+    private final List<State> updating = new ArrayList<>(2);
+    private boolean inUpdate;
+
+    BudgetTracker(Wallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public void addListener(BudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BudgetListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Наивысший пройденный порог категории в процентах (0 — ниже 80% или бюджета нет). */
+    public int threshold(String category) {
+        State s = states.get(category);
+        return s == null ? 0 : s.threshold;
+    }
+
+    public double spent(String category) {
+        return Money.toMajor(spentMinor(category));
+    }
+
+    public long spentMinor(String category) {
+        State s = states.get(category);
+        return s == null ? 0 : s.spent;
+    }
+
+    /** Остаток бюджета категории; для категории без бюджета — {@code NaN}. */
+    public double remaining(String category) {
+        State s = states.get(category);
+        return s == null ? Double.NaN : Money.toMajor(s.limit - s.spent);
+    }
+
+    /** Остаток бюджета категории в минимальных единицах; для категории без бюджета — 0. */
+    public long remainingMinor(String category) {
+        State s = states.get(category);
+        return s == null ? 0 : s.limit - s.spent;
+    }
+
+    /** Лимит категории в минимальных единицах; лимит больше нуля (см. {@code WalletService}) задаёт бюджет. */
+    public void setLimitMinor(String category, long limit) {
+        put(category, limit);
+    }
+
+    /** Копия лимитов в минимальных единицах — для хранилищ и отчётов, без перевода в {@code double}. */
+    public Map<String, Long> limitsMinor() {
+        Map<String, Long> res = new HashMap<>();
+        for (var e : states.entrySet()) res.put(e.getKey(), e.getValue().limit);
+        return res;
+    }
+
+    public Map<String, Double> remainingByCategory() {
+        Map<String, Double> res = new HashMap<>();
+        for (var e : states.entrySet()) res.put(e.getKey(), Money.toMajor(e.getValue().limit - e.getValue().spent));
+        return res;
+    }
+
+    /** Лимиты как изменяемая карта: запись в неё сразу обновляет состояние трекера. */
+    Map<String, Double> limits() {
+        return limits;
+    }
+
+    void expenseChanged(String category, long spent) {
+        State s = states.get(category);
+        if (s == null) return;
+        s.spent = spent;
+        if (inUpdate) {
+            if (!updating.contains(s)) updating.add(s);
+            return;
+        }
+        recheck(s);
+    }
+
+    /**
+     * Правка операции на месте (замена, смена суммы или категории) снимает её со старых
+     * сумм и учитывает заново; между {@code beginUpdate} и {@code endUpdate} пороги не
+     * пересчитываются, чтобы временное снижение расходов не давало повторного события.
+     */
+    void beginUpdate() {
+        inUpdate = true;
+    }
+
+    void endUpdate() {
+        inUpdate = false;
+        for (int i = 0; i < updating.size(); i++) recheck(updating.get(i));
+        updating.clear();
+    }
+
+    private void recheck(State s) {
+        int t = threshold(s.limit, s.spent);
+        int previous = s.threshold;
+        s.threshold = t;
+        if (t > previous && !listeners.isEmpty()) {
+            BudgetEvent event = new BudgetEvent(s.category, t, s.limit, s.spent);
+            for (int i = 0; i < listeners.size(); i++) listeners.get(i).onThreshold(event);
+        }
+    }
+
+    void expensesCleared() {
+        for (State s : states.values()) {
+            s.spent = 0;
+            s.threshold = 0;
+        }
+    }
+
+    // в целых минимальных единицах: граница порога считается точно, без поправки на погрешность
+    static int threshold(long limit, long spent) {
+        if (limit <= 0) return 0;
+        if (spent > limit) {
+            long over = spent - limit;
+            long steps = over / limit * 10 + over % limit * 10 / limit; // полных десятков процентов сверх лимита
+            return 100 + 10 * (int) Math.min(steps, 100_000_000);
+        }
+        return spent * 5 >= limit * 4 ? 80 : 0;
+    }
+
+    private Double put(String category, Double limit) {
+        if (limit == null) throw new IllegalArgumentException("Категория и лимит бюджета обязательны.");
+        return put(category, Money.toMinor(limit));
+    }
+
+    private Double put(String category, long limit) {
+        if (category == null) throw new IllegalArgumentException("Категория и лимит бюджета обязательны.");
+        State s = states.get(category);
+        Double previous = s == null ? null : Money.toMajor(s.limit);
+        if (s == null) {
+            s = new State(category);
+            s.spent = wallet.expenseMinor(category);
+            states.put(category, s);
+        }
+        s.limit = limit;
+        s.threshold = threshold(s.limit, s.spent);
+        return previous;
+    }
+
+    private static final class State {
+        final String category;
+        long limit;
+        long spent;
+        int threshold;
+
+        State(String category) {
+            this.category = category;
+        }
+    }
+
+    private final class Limits extends AbstractMap<String, Double> {
+        @Override
+        public Double put(String key, Double value) {
+            return BudgetTracker.this.put(key, value);
+        }
+
+        @Override
+        public Double get(Object key) {
+            State s = states.get(key);
+            return s == null ? null : Money.toMajor(s.limit);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return states.containsKey(key);
+        }
+
+        @Override
+        public Double remove(Object key) {
+            State s = states.remove(key);
+            return s == null ? null : Money.toMajor(s.limit);
+        }
+
+        @Override
+        public int size() {
+            return states.size();
+        }
+
+        @Override
+        public void clear() {
+            states.clear();
+        }
+
+        @Override
+        public Set<Entry<String, Double>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Double>> iterator() {
+                    Iterator<Entry<String, State>> it = states.entrySet().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Double> next() {
+                            Entry<String, State> e = it.next();
+                            return new SimpleEntry<>(e.getKey(), Money.toMajor(e.getValue().limit)) {
+                                @Override
+                                public Double setValue(Double value) {
+                                    super.setValue(value);
+                                    return BudgetTracker.this.put(e.getKey(), value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return states.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.finance.core.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Словарь категорий кошелька: имя -> плотный номер {@code 0..size()-1}. Кошелёк пропускает через
+ * него категории всех операций при загрузке и добавлении, поэтому у операций одной категории
+ * одна общая строка, а суммы по категориям лежат в массивах по номеру. Набор категорий
+ * задаётся {@link BitSet} номеров, и проверка «входит ли категория» стоит O(1).
+ *
+ * Номера не переиспользуются: имя, у которого не осталось операций, сохраняет свой номер.
+ * Не потокобезопасен, как и сам кошелёк.
+ */
+public final class CategoryDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int size;
+
+    /** Номер имени; новое имя получает следующий номер. */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        if (size == names.length) names = Arrays.copyOf(names, size * 2);
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /** Номер имени или -1, если такого имени в словаре нет. */
+    public int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+        return names[id];
+    }
+
+    /** Общий для кошелька экземпляр строки с этим именем. */
+    public String intern(String name) {
+        return names[id(name)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Номера известных словарю имён; неизвестные пропускаются. */
+    public BitSet idsOf(Collection<String> names) {
+        BitSet set = new BitSet(size);
+        for (String name : names) {
+            int id = find(name);
+            if (id >= 0) set.set(id);
+        }
+        return set;
+    }
+}
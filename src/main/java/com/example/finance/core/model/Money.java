@@ -0,0 +1,60 @@
+package com.example.finance.core.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежные суммы в минимальных единицах валюты (копейках): {@code long} с масштабом
+ * {@link #SCALE}. Операции, агрегаты кошелька и бюджеты хранят и складывают суммы так,
+ * поэтому итоги по любому числу операций точны. {@code double} остаётся только на границе
+ * API: при вводе значение округляется до копейки, при выводе минимальные единицы
+ * переводятся обратно ({@code 0.1 + 0.2} печатается как {@code 0.3}).
+ */
+public final class Money {
+    /** Знаков после запятой. */
+    public static final int SCALE = 2;
+    /** Минимальных единиц в одной основной. */
+    public static final long UNIT = 100;
+
+    private Money() {
+    }
+
+    /** Сумма в минимальных единицах; округление до ближайшей, половина — от нуля. */
+    public static long toMinor(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new IllegalArgumentException("Некорректная сумма: " + value);
+        return toMinor(BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_UP));
+    }
+
+    /** Точный перевод десятичной суммы; больше {@link #SCALE} знаков после запятой — ошибка. */
+    public static long toMinor(BigDecimal value) {
+        try {
+            return value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма должна быть с точностью до 0.01: " + value.toPlainString());
+        }
+    }
+
+    /** Разбор суммы из текста ({@code 12.5}, {@code 12,50}) без промежуточного {@code double}. */
+    public static long parse(String s) {
+        if (s == null) throw new IllegalArgumentException("Сумма не задана.");
+        try {
+            return toMinor(new BigDecimal(s.trim().replace(",", ".")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректная сумма: " + s);
+        }
+    }
+
+    public static double toMajor(long minor) {
+        return minor / (double) UNIT;
+    }
+
+    /**
+     * Сумма для вывода пользователю: всегда без экспоненты ({@code 10000000.0}, а не {@code 1.0E7}),
+     * нули в конце дробной части отбрасываются, но один знак после точки остаётся.
+     */
+    public static String format(long minor) {
+        BigDecimal value = BigDecimal.valueOf(minor, SCALE).stripTrailingZeros();
+        return (value.scale() < 1 ? value.setScale(1) : value).toPlainString();
+    }
+}
@@ -1,40 +1,106 @@
 package com.example.finance.core.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * Операция кошелька. Сумма хранится в минимальных единицах ({@link Money});
+ * {@link #getAmount()} и {@link #setAmount(double)} переводят её в основные единицы и обратно.
+ */
 public class Operation {
     private String id = UUID.randomUUID().toString();
     private OperationType type;
     private String category;
-    private double amount;
+    private long amount;
     private LocalDateTime createdAt = LocalDateTime.now();
     private String note;
 
+    // кошелёк, в агрегатах которого учтена операция
+    @JsonIgnore
+    Wallet owner;
+
     public Operation() {}
 
     public Operation(OperationType type, String category, double amount, String note) {
+        this.type = type;
+        this.category = category;
+        this.amount = Money.toMinor(amount);
+        this.note = note;
+    }
+
+    public Operation(String id, OperationType type, String category, double amount, LocalDateTime createdAt, String note) {
+        this(id, type, category, Money.toMinor(amount), createdAt, note);
+    }
+
+    private Operation(String id, OperationType type, String category, long amount, LocalDateTime createdAt, String note) {
+        this.id = id;
         this.type = type;
         this.category = category;
         this.amount = amount;
+        this.createdAt = createdAt;
         this.note = note;
     }
 
+    /** Операция с суммой, уже заданной в минимальных единицах (например, прочитанной из файла). */
+    public static Operation ofMinor(String id, OperationType type, String category, long amount,
+                                    LocalDateTime createdAt, String note) {
+        return new Operation(id, type, category, amount, createdAt, note);
+    }
+
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public void setId(String id) {
+        this.id = id;
+        if (owner != null) owner.edited();
+    }
 
     public OperationType getType() { return type; }
-    public void setType(OperationType type) { this.type = type; }
+    public void setType(OperationType type) {
+        if (owner != null) owner.beforeUpdate(this);
+        this.type = type;
+        if (owner != null) owner.afterUpdate(this);
+    }
 
     public String getCategory() { return category; }
-    public void setCategory(String category) { this.category = category; }
+    public void setCategory(String category) {
+        if (owner != null) owner.beforeUpdate(this);
+        this.category = category;
+        if (owner != null) owner.afterUpdate(this);
+    }
+
+    // та же категория, но общий для кошелька экземпляр строки: агрегаты не меняются
+    void internCategory(String canonical) {
+        this.category = canonical;
+    }
+
+    public double getAmount() { return Money.toMajor(amount); }
+    public void setAmount(double amount) {
+        setAmountMinor(Money.toMinor(amount));
+    }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    @JsonIgnore
+    public long getAmountMinor() { return amount; }
+    @JsonIgnore
+    public void setAmountMinor(long amount) {
+        if (owner != null) owner.beforeUpdate(this);
+        this.amount = amount;
+        if (owner != null) owner.afterUpdate(this);
+    }
 
     public LocalDateTime getCreatedAt() { return createdAt; }
-    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) {
+        if (owner != null) owner.beforeUpdate(this);
+        this.createdAt = createdAt;
+        if (owner != null) {
+            owner.afterUpdate(this);
+            owner.timeChanged();
+        }
+    }
 
     public String getNote() { return note; }
-    public void setNote(String note) { this.note = note; }
+    public void setNote(String note) {
+        this.note = note;
+        if (owner != null) owner.edited();
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.finance.core.model;
+
+/**
+ * Столбцовое представление операций: значения строки читаются по индексу без создания
+ * {@link Operation}. Через него кошелёк работает с операциями, лежащими вне кучи
+ * (например, в отображённом в память файле), а агрегаты, индекс по времени и отчёты
+ * считаются одинаково для любых источников строк.
+ */
+public interface OperationColumns {
+    int size();
+
+    String id(int row);
+
+    OperationType type(int row);
+
+    String category(int row);
+
+    /** Сумма в минимальных единицах ({@link Money}). */
+    long amountMinor(int row);
+
+    /** Секунды createdAt в UTC или {@link #NO_TIME}, если время не задано. */
+    long createdAtEpochSecond(int row);
+
+    int createdAtNano(int row);
+
+    String note(int row);
+
+    long NO_TIME = Long.MIN_VALUE;
+}
@@ -0,0 +1,135 @@
+package com.example.finance.core.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Упорядоченный по времени индекс операций кошелька: отсортированные по createdAt
+ * массивы секунд (UTC), наносекунд и номеров строк. Поиск границ периода — бинарный.
+ * Индекс строится при первом запросе периода; после этого операции, добавленные
+ * в хронологическом порядке, дописываются в конец без перестроения, а любое другое
+ * изменение помечает индекс устаревшим до следующего запроса.
+ */
+final class OperationTimeIndex {
+    private long[] seconds = new long[0];
+    private int[] nanos = new int[0];
+    private int[] rows = new int[0];
+    private int size;
+    private boolean valid;
+
+    void appended(OperationColumns source, int row) {
+        if (!valid) return;
+        long sec = source.createdAtEpochSecond(row);
+        if (sec == OperationColumns.NO_TIME) return;
+        int nano = source.createdAtNano(row);
+        if (size > 0 && compare(sec, nano, seconds[size - 1], nanos[size - 1]) < 0) {
+            valid = false;
+            return;
+        }
+        ensureCapacity(size + 1);
+        seconds[size] = sec;
+        nanos[size] = nano;
+        rows[size] = row;
+        size++;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    void reset() {
+        size = 0;
+        valid = false;
+    }
+
+    void forEachBetween(OperationColumns source, LocalDateTime startInclusive, LocalDateTime endExclusive,
+                        RowAction action) {
+        if (!valid) rebuild(source);
+
+        long startSec = startInclusive.toEpochSecond(ZoneOffset.UTC);
+        int startNano = startInclusive.getNano();
+        long endSec = endExclusive.toEpochSecond(ZoneOffset.UTC);
+        int endNano = endExclusive.getNano();
+
+        for (int i = lowerBound(startSec, startNano); i < size && compare(seconds[i], nanos[i], endSec, endNano) < 0; i++) {
+            action.accept(rows[i]);
+        }
+    }
+
+    /** Секунды самой поздней операции или {@link OperationColumns#NO_TIME}, если операций со временем нет. */
+    long latest(OperationColumns source) {
+        if (!valid) rebuild(source);
+        return size == 0 ? OperationColumns.NO_TIME : seconds[size - 1];
+    }
+
+    @FunctionalInterface
+    interface RowAction {
+        void accept(int row);
+    }
+
+    private void rebuild(OperationColumns source) {
+        int n = source.size();
+        size = 0;
+        ensureCapacity(n);
+        boolean sorted = true;
+        for (int row = 0; row < n; row++) {
+            long sec = source.createdAtEpochSecond(row);
+            if (sec == OperationColumns.NO_TIME) continue;
+            int nano = source.createdAtNano(row);
+            if (size > 0 && compare(sec, nano, seconds[size - 1], nanos[size - 1]) < 0) sorted = false;
+            seconds[size] = sec;
+            nanos[size] = nano;
+            rows[size] = row;
+            size++;
+        }
+        // операции обычно добавляются по времени, и сортировка не нужна
+        if (!sorted) mergeSort(new long[size], new int[size], new int[size], 0, size);
+        valid = true;
+    }
+
+    // устойчивая сортировка параллельных массивов без упаковки в объекты
+    private void mergeSort(long[] tmpSec, int[] tmpNano, int[] tmpRow, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(tmpSec, tmpNano, tmpRow, from, mid);
+        mergeSort(tmpSec, tmpNano, tmpRow, mid, to);
+        if (compare(seconds[mid - 1], nanos[mid - 1], seconds[mid], nanos[mid]) <= 0) return;
+
+        int i = from, j = mid, k = from;
+        while (i < mid || j < to) {
+            boolean left = j >= to || (i < mid && compare(seconds[i], nanos[i], seconds[j], nanos[j]) <= 0);
+            int src = left ? i++ : j++;
+            tmpSec[k] = seconds[src];
+            tmpNano[k] = nanos[src];
+            tmpRow[k] = rows[src];
+            k++;
+        }
+        System.arraycopy(tmpSec, from, seconds, from, to - from);
+        System.arraycopy(tmpNano, from, nanos, from, to - from);
+        System.arraycopy(tmpRow, from, rows, from, to - from);
+    }
+
+    private int lowerBound(long sec, int nano) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(seconds[mid], nanos[mid], sec, nano) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= seconds.length) return;
+        int newCapacity = Math.max(capacity, seconds.length + (seconds.length >> 1) + 16);
+        seconds = Arrays.copyOf(seconds, newCapacity);
+        nanos = Arrays.copyOf(nanos, newCapacity);
+        rows = Arrays.copyOf(rows, newCapacity);
+    }
+
+    private static int compare(long sec1, int nano1, long sec2, int nano2) {
+        int c = Long.compare(sec1, sec2);
+        return c != 0 ? c : Integer.compare(nano1, nano2);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.finance.core.model;
+
+/**
+ * Получает значения операции при обходе кошелька без создания {@link Operation}.
+ * Сумма — в минимальных единицах ({@link Money}).
+ */
+@FunctionalInterface
+public interface OperationVisitor {
+    void visit(OperationType type, String category, long amount);
+}
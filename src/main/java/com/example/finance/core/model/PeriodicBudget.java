@@ -0,0 +1,26 @@
+package com.example.finance.core.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+
+/**
+ * Повторяющийся бюджет категории: {@code limitMinor} (в минимальных единицах, {@link Money}) на каждый
+ * период, начиная с периода, в который попадает {@code start}. С {@code rollover} остаток прошлого периода
+ * (или перерасход — со знаком минус) переносится в текущий. В JSON лимит — поле {@code limit} в основных единицах.
+ */
+public record PeriodicBudget(BudgetPeriod period, @JsonIgnore long limitMinor, boolean rollover, LocalDate start) {
+
+    @JsonCreator
+    public PeriodicBudget(@JsonProperty("period") BudgetPeriod period, @JsonProperty("limit") double limit,
+                          @JsonProperty("rollover") boolean rollover, @JsonProperty("start") LocalDate start) {
+        this(period, Money.toMinor(limit), rollover, start);
+    }
+
+    @JsonProperty("limit")
+    public double limit() {
+        return Money.toMajor(limitMinor);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.finance.core.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Повторяющиеся (месячные и недельные) бюджеты кошелька и индекс расходов по периодам.
+ *
+ * Для каждой категории с таким бюджетом держится кольцевой буфер сумм расходов последних
+ * периодов ({@link BudgetPeriod#MONTH} — 12, {@link BudgetPeriod#WEEK} — 8): ячейка хранит
+ * номер периода и сумму в минимальных единицах ({@link Money}). Кошелёк сообщает сюда каждое изменение расходов, поэтому остаток
+ * текущего периода и перенос из прошлого считаются за O(1), без просмотра истории.
+ *
+ * Новый бюджет помечает индекс устаревшим; при следующем запросе он перестраивается
+ * одним проходом по операциям окна через временной индекс кошелька.
+ */
+public final class PeriodicBudgets {
+    private final Map<String, Ring> rings = new HashMap<>();
+    private final Wallet wallet;
+    private boolean stale;
+
+    PeriodicBudgets(Wallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public PeriodicBudget get(String category) {
+        Ring r = rings.get(category);
+        return r == null ? null : r.budget;
+    }
+
+    public Map<String, PeriodicBudget> all() {
+        Map<String, PeriodicBudget> res = new HashMap<>();
+        for (var e : rings.entrySet()) res.put(e.getKey(), e.getValue().budget);
+        return Collections.unmodifiableMap(res);
+    }
+
+    public boolean isEmpty() {
+        return rings.isEmpty();
+    }
+
+    public void put(String category, PeriodicBudget budget) {
+        if (category == null || budget == null || budget.period() == null || budget.start() == null)
+            throw new IllegalArgumentException("Категория, период, лимит и начало бюджета обязательны.");
+        Ring r = rings.get(category);
+        if (r != null && r.budget.period() == budget.period()) {
+            r.setBudget(budget);
+            return;
+        }
+        rings.put(category, new Ring(budget));
+        stale = true;
+    }
+
+    public PeriodicBudget remove(String category) {
+        Ring r = rings.remove(category);
+        return r == null ? null : r.budget;
+    }
+
+    public void clear() {
+        rings.clear();
+        stale = false;
+    }
+
+    /** Расходы категории за период, в который попадает {@code day}; 0 — если период вне окна. */
+    public double spent(String category, LocalDate day) {
+        return Money.toMajor(spentMinor(category, day));
+    }
+
+    public long spentMinor(String category, LocalDate day) {
+        Ring r = fresh(category);
+        return r == null ? 0 : r.sum(r.budget.period().index(day));
+    }
+
+    /** Перенос в период дня {@code day} из прошлого периода: его остаток, только если у бюджета есть rollover. */
+    public double carried(String category, LocalDate day) {
+        return Money.toMajor(carriedMinor(category, day));
+    }
+
+    public long carriedMinor(String category, LocalDate day) {
+        Ring r = fresh(category);
+        return r == null ? 0 : carried(r, day);
+    }
+
+    /** Остаток бюджета в периоде дня {@code day} с учётом переноса; для категории без бюджета — {@code NaN}. */
+    public double remaining(String category, LocalDate day) {
+        return get(category) == null ? Double.NaN : Money.toMajor(remainingMinor(category, day));
+    }
+
+    /** Остаток в минимальных единицах; для категории без бюджета — 0. */
+    public long remainingMinor(String category, LocalDate day) {
+        Ring r = fresh(category);
+        return r == null ? 0 : r.limit + carried(r, day) - r.sum(r.budget.period().index(day));
+    }
+
+    void expenseChanged(String category, long epochSecond, long delta) {
+        if (stale || epochSecond == OperationColumns.NO_TIME) return;
+        Ring r = rings.get(category);
+        if (r != null) r.add(r.budget.period().index(epochSecond), delta);
+    }
+
+    void expensesCleared() {
+        for (Ring r : rings.values()) r.reset();
+        stale = false;
+    }
+
+    private static long carried(Ring r, LocalDate day) {
+        if (!r.budget.rollover()) return 0;
+        BudgetPeriod period = r.budget.period();
+        long previous = period.index(day) - 1;
+        if (previous < period.index(r.budget.start())) return 0;
+        return r.limit - r.sum(previous);
+    }
+
+    private Ring fresh(String category) {
+        if (stale) rebuild();
+        return rings.get(category);
+    }
+
+    // окно отсчитывается от самой поздней операции, как и при пошаговом учёте;
+    // операции обходятся по времени, поэтому в кольце остаются последние периоды окна
+    private void rebuild() {
+        stale = false;
+        for (Ring r : rings.values()) r.reset();
+        long latest = wallet.latestEpochSecond();
+        if (rings.isEmpty() || latest == OperationColumns.NO_TIME) return;
+        LocalDate newest = LocalDate.ofEpochDay(Math.floorDiv(latest, 86_400));
+        LocalDate from = newest;
+        for (Ring r : rings.values()) {
+            BudgetPeriod period = r.budget.period();
+            LocalDate start = period.start(period.index(newest) - period.window + 1);
+            if (start.isBefore(from)) from = start;
+        }
+        wallet.forEachBetween(from.atStartOfDay(), LocalDateTime.MAX, o -> {
+            if (o.getType() != OperationType.EXPENSE) return;
+            Ring r = rings.get(o.getCategory());
+            if (r != null) r.add(r.budget.period().index(o.getCreatedAt().toLocalDate()), o.getAmountMinor());
+        });
+    }
+
+    private static final class Ring {
+        PeriodicBudget budget;
+        long limit;
+        final long[] periods;
+        final long[] sums;
+
+        Ring(PeriodicBudget budget) {
+            setBudget(budget);
+            periods = new long[budget.period().window];
+            sums = new long[budget.period().window];
+            reset();
+        }
+
+        void setBudget(PeriodicBudget budget) {
+            this.budget = budget;
+            this.limit = budget.limitMinor();
+        }
+
+        void reset() {
+            Arrays.fill(periods, Long.MIN_VALUE);
+            Arrays.fill(sums, 0);
+        }
+
+        void add(long period, long delta) {
+            int slot = (int) Math.floorMod(period, (long) periods.length);
+            long held = periods[slot];
+            if (held != period) {
+                // период старше окна или снимается то, что в окно не попало
+                if (held > period || delta < 0) return;
+                periods[slot] = period;
+                sums[slot] = 0;
+            }
+            sums[slot] += delta;
+        }
+
+        long sum(long period) {
+            int slot = (int) Math.floorMod(period, (long) periods.length);
+            return periods[slot] == period ? sums[slot] : 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.finance.core.model;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сводки доходов и расходов по дням, месяцам и годам — по каждой категории и типу.
+ * Кошелёк обновляет их при каждом изменении операций вместе с остальными агрегатами,
+ * в том числе при загрузке: сводки собираются тем же проходом по операциям, что и итоги
+ * с бюджетами, поэтому первый отчёт после загрузки (или после вытеснения кошелька из кэша)
+ * не обходит историю. На диск они не пишутся: это производные данные, и каждый формат
+ * хранения получает их без изменения формата.
+ *
+ * Диапазон дат собирается из самых крупных целиком покрытых корзин: годы внутри
+ * диапазона, по краям — месяцы, затем дни. Поэтому отчёт за период стоит
+ * O(лет + ~80 корзин) независимо от длины истории. Операции без времени в сводки не входят.
+ */
+public final class TimeRollups {
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final Level days = new Level();
+    private final Level months = new Level();
+    private final Level years = new Level();
+
+    // день последней учтённой операции и его месяц и год: операции обычно идут подряд по дням,
+    // и LocalDate для них не создаётся
+    private long lastDay = Long.MIN_VALUE;
+    private long lastMonth;
+    private int lastYear;
+
+    /** Передаёт в {@code visitor} суммы по категориям и типам за дни [from, toInclusive]. */
+    public void visit(LocalDate from, LocalDate toInclusive, OperationVisitor visitor) {
+        long end = toInclusive.toEpochDay() + 1;
+        LocalDate date = from;
+        while (date.toEpochDay() < end) {
+            LocalDate next;
+            if (date.getDayOfYear() == 1 && (next = date.plusYears(1)).toEpochDay() <= end) {
+                years.visit(date.getYear(), visitor);
+            } else if (date.getDayOfMonth() == 1 && (next = date.plusMonths(1)).toEpochDay() <= end) {
+                months.visit(monthIndex(date), visitor);
+            } else {
+                days.visit(date.toEpochDay(), visitor);
+                next = date.plusDays(1);
+            }
+            date = next;
+        }
+    }
+
+    /**
+     * Суммы одной корзины: {@code unit} — {@link ChronoUnit#DAYS}, {@link ChronoUnit#MONTHS}
+     * или {@link ChronoUnit#YEARS}, {@code day} — любой день внутри неё.
+     */
+    public void visitBucket(ChronoUnit unit, LocalDate day, OperationVisitor visitor) {
+        switch (unit) {
+            case DAYS -> days.visit(day.toEpochDay(), visitor);
+            case MONTHS -> months.visit(monthIndex(day), visitor);
+            case YEARS -> years.visit(day.getYear(), visitor);
+            default -> throw new IllegalArgumentException("Сводки есть только по дням, месяцам и годам: " + unit);
+        }
+    }
+
+    void add(OperationType type, String category, long amount, long epochSecond) {
+        update(type, category, amount, epochSecond, 1);
+    }
+
+    void remove(OperationType type, String category, long amount, long epochSecond) {
+        update(type, category, -amount, epochSecond, -1);
+    }
+
+    void clear() {
+        days.buckets.clear();
+        months.buckets.clear();
+        years.buckets.clear();
+    }
+
+    private void update(OperationType type, String category, long amount, long epochSecond, int count) {
+        if (type == null || epochSecond == OperationColumns.NO_TIME) return;
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        if (epochDay != lastDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            lastDay = epochDay;
+            lastMonth = monthIndex(date);
+            lastYear = date.getYear();
+        }
+        boolean income = type == OperationType.INCOME;
+        days.update(epochDay, category, income, amount, count);
+        months.update(lastMonth, category, income, amount, count);
+        years.update(lastYear, category, income, amount, count);
+    }
+
+    private static long monthIndex(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static final class Level {
+        final Map<Long, Map<String, Cell>> buckets = new HashMap<>();
+
+        void update(long key, String category, boolean income, long amount, int count) {
+            Map<String, Cell> bucket = buckets.computeIfAbsent(key, k -> new HashMap<>());
+            Cell c = bucket.computeIfAbsent(category, k -> new Cell());
+            if (income) {
+                c.income += amount;
+                c.incomeCount += count;
+            } else {
+                c.expense += amount;
+                c.expenseCount += count;
+            }
+            if (c.incomeCount == 0 && c.expenseCount == 0) {
+                bucket.remove(category);
+                if (bucket.isEmpty()) buckets.remove(key);
+            }
+        }
+
+        void visit(long key, OperationVisitor visitor) {
+            Map<String, Cell> bucket = buckets.get(key);
+            if (bucket == null) return;
+            for (var e : bucket.entrySet()) {
+                Cell c = e.getValue();
+                if (c.incomeCount > 0) visitor.visit(OperationType.INCOME, e.getKey(), c.income);
+                if (c.expenseCount > 0) visitor.visit(OperationType.EXPENSE, e.getKey(), c.expense);
+            }
+        }
+    }
+
+    private static final class Cell {
+        long income;
+        long expense;
+        int incomeCount;
+        int expenseCount;
+    }
+}
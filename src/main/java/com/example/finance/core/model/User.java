@@ -9,6 +9,15 @@ public class User {
     @JsonIgnore
     private Wallet wallet = new Wallet();
 
+    // кошелёк загружен из хранилища (или задан явно) и является актуальной копией в памяти;
+    // меняется под блокировкой логина, а читается и без неё (вытеснение из кэша пользователей)
+    @JsonIgnore
+    private volatile boolean walletLoaded;
+
+    // хеш пароля, который последним записан в хранилище или прочитан из него
+    @JsonIgnore
+    private volatile String storedHash;
+
     public User() {}
 
     public User(String login, String passwordHash) {
@@ -23,5 +32,23 @@ public class User {
     public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
 
     public Wallet getWallet() { return wallet; }
-    public void setWallet(Wallet wallet) { this.wallet = wallet; }
+    public void setWallet(Wallet wallet) {
+        this.wallet = wallet;
+        this.walletLoaded = true;
+    }
+
+    public boolean isWalletLoaded() { return walletLoaded; }
+
+    /** Отмечает, что текущий хеш пароля совпадает с записанным в хранилище. */
+    public void markStored() { this.storedHash = passwordHash; }
+
+    /** Хранилище знает пользователя с текущим хешем пароля: объект можно отпустить и прочитать заново. */
+    @JsonIgnore
+    public boolean isStored() { return storedHash != null && storedHash.equals(passwordHash); }
+
+    /** Отпускает копию кошелька в памяти: следующий вход снова возьмёт его из хранилища. */
+    public void releaseWallet() {
+        this.wallet = new Wallet();
+        this.walletLoaded = false;
+    }
 }
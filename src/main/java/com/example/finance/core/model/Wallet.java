@@ -1,18 +1,483 @@
 package com.example.finance.core.model;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class Wallet {
-    private List<Operation> operations = new ArrayList<>();
+    private final CategoryDictionary dictionary = new CategoryDictionary();
+    private final Operations operations = new Operations();
     private Set<String> categories = new HashSet<>();
-    private Map<String, Double> budgetsByCategory = new HashMap<>();
+    private final BudgetTracker budgets = new BudgetTracker(this);
+    private final PeriodicBudgets periodicBudgets = new PeriodicBudgets(this);
+    private final TimeRollups rollups = new TimeRollups();
+
+    // агрегаты поддерживаются при каждом изменении операций и не сериализуются:
+    // после загрузки из JSON они пересчитываются в setOperations; суммы — в минимальных единицах,
+    // по категориям — по номеру из словаря
+    private long totalIncome;
+    private long totalExpense;
+    private final CategorySums incomeSums = new CategorySums();
+    private final CategorySums expenseSums = new CategorySums();
+    private final OperationTimeIndex timeIndex = new OperationTimeIndex();
+    private long historyVersion;
+
+    /**
+     * Кошелёк поверх готовых столбцов операций (например, отображённого в память файла).
+     * Агрегаты считаются одним проходом по столбцам, объекты {@link Operation} создаются
+     * только при чтении через {@link #getOperations()} и являются копиями строк:
+     * изменить такую строку можно заменой через {@code getOperations().set(...)}.
+     * Новые операции дописываются в кучу после строк из столбцов.
+     */
+    public static Wallet over(OperationColumns columns) {
+        Wallet w = new Wallet();
+        w.operations.useBase(columns);
+        return w;
+    }
+
+    /**
+     * Кошелёк, хранящий операции в упакованных примитивных столбцах ({@link PackedOperations})
+     * вместо списка объектов: в несколько раз меньше памяти на операцию при том же API.
+     * Добавленная операция копируется в столбцы, а {@code getOperations().get(i)} возвращает
+     * новую копию строки; изменить строку можно через {@code getOperations().set(...)}.
+     */
+    public static Wallet packed() {
+        Wallet w = new Wallet();
+        w.operations.usePacked();
+        return w;
+    }
 
     public List<Operation> getOperations() { return operations; }
-    public void setOperations(List<Operation> operations) { this.operations = operations; }
+    public void setOperations(List<Operation> operations) {
+        if (operations == this.operations) return;
+        this.operations.clear();
+        if (operations != null) this.operations.addAll(operations);
+    }
 
     public Set<String> getCategories() { return categories; }
     public void setCategories(Set<String> categories) { this.categories = categories; }
 
-    public Map<String, Double> getBudgetsByCategory() { return budgetsByCategory; }
-    public void setBudgetsByCategory(Map<String, Double> budgetsByCategory) { this.budgetsByCategory = budgetsByCategory; }
+    /** Лимиты по категориям; карта живая — изменения сразу видны {@link #budgets()}. */
+    public Map<String, Double> getBudgetsByCategory() { return budgets.limits(); }
+    public void setBudgetsByCategory(Map<String, Double> budgetsByCategory) {
+        Map<String, Double> limits = budgets.limits();
+        if (budgetsByCategory == limits) return;
+        limits.clear();
+        if (budgetsByCategory != null) limits.putAll(budgetsByCategory);
+    }
+
+    /** Состояние бюджетов: расходы, остатки и пороги по категориям, события о пересечении порогов. */
+    public BudgetTracker budgets() { return budgets; }
+
+    /** Месячные и недельные бюджеты по категориям (для сериализации; работа с ними — через {@link #periodicBudgets()}). */
+    public Map<String, PeriodicBudget> getPeriodicBudgets() { return periodicBudgets.all(); }
+    public void setPeriodicBudgets(Map<String, PeriodicBudget> budgets) {
+        periodicBudgets.clear();
+        if (budgets != null) budgets.forEach(periodicBudgets::put);
+    }
+
+    /** Повторяющиеся бюджеты и расходы по их периодам. */
+    public PeriodicBudgets periodicBudgets() { return periodicBudgets; }
+
+    /** Суммы по дням, месяцам и годам для отчётов за период без обхода операций. */
+    public TimeRollups rollups() { return rollups; }
+
+    public double totalIncome() { return Money.toMajor(totalIncome); }
+
+    public double totalExpense() { return Money.toMajor(totalExpense); }
+
+    /** Итоги в минимальных единицах ({@link Money}). */
+    public long totalIncomeMinor() { return totalIncome; }
+
+    public long totalExpenseMinor() { return totalExpense; }
+
+    public double incomeOf(String category) {
+        return Money.toMajor(incomeSums.get(dictionary.find(category)));
+    }
+
+    public double expenseOf(String category) {
+        return Money.toMajor(expenseMinor(category));
+    }
+
+    long expenseMinor(String category) {
+        return expenseSums.get(dictionary.find(category));
+    }
+
+    public Map<String, Double> incomeByCategory() { return snapshot(incomeSums); }
+
+    public Map<String, Double> expenseByCategory() { return snapshot(expenseSums); }
+
+    /** Передаёт суммы доходов и расходов по категориям, по одному вызову на пару тип/категория, без копирования. */
+    public void visitTotals(OperationVisitor visitor) {
+        incomeSums.forEach((id, amount) -> visitor.visit(OperationType.INCOME, dictionary.name(id), amount));
+        expenseSums.forEach((id, amount) -> visitor.visit(OperationType.EXPENSE, dictionary.name(id), amount));
+    }
+
+    /** Словарь категорий операций кошелька: имя -> номер. */
+    public CategoryDictionary dictionary() { return dictionary; }
+
+    /**
+     * Сумма доходов или расходов по набору категорий, заданному номерами из {@link #dictionary()}:
+     * складываются готовые суммы по категориям, операции не обходятся.
+     */
+    public long sumMinor(OperationType type, BitSet categoryIds) {
+        if (type == OperationType.INCOME) return incomeSums.sum(categoryIds);
+        if (type == OperationType.EXPENSE) return expenseSums.sum(categoryIds);
+        return 0;
+    }
+
+    /**
+     * Обходит операции с createdAt в [startInclusive, endExclusive) в хронологическом порядке,
+     * не просматривая операции вне периода.
+     */
+    public void forEachBetween(LocalDateTime startInclusive, LocalDateTime endExclusive, Consumer<Operation> action) {
+        timeIndex.forEachBetween(operations, startInclusive, endExclusive, row -> action.accept(operations.get(row)));
+    }
+
+    /** То же, что {@link #forEachBetween}, но передаёт значения строк без создания {@link Operation}. */
+    public void visitBetween(LocalDateTime startInclusive, LocalDateTime endExclusive, OperationVisitor visitor) {
+        Operations rows = operations;
+        timeIndex.forEachBetween(rows, startInclusive, endExclusive,
+                row -> visitor.visit(rows.type(row), rows.category(row), rows.amountMinor(row)));
+    }
+
+    long latestEpochSecond() { return timeIndex.latest(operations); }
+
+    /** Обходит все операции кошелька без создания {@link Operation}. */
+    public void visitAll(OperationVisitor visitor) {
+        Operations rows = operations;
+        for (int row = 0, n = rows.size(); row < n; row++) visitor.visit(rows.type(row), rows.category(row), rows.amountMinor(row));
+    }
+
+    /** Построчный доступ к операциям кошелька, например для столбцовой записи на диск. */
+    public OperationColumns columns() { return operations; }
+
+    /**
+     * Счётчик изменений истории операций, кроме дописывания в конец: вставки, замены,
+     * удаления и правки полей уже добавленных операций. Хранилища по нему понимают,
+     * что накопленную дельту нельзя выразить одними новыми операциями.
+     */
+    public long historyVersion() { return historyVersion; }
+
+    void beforeUpdate(Operation o) {
+        historyVersion++;
+        budgets.beginUpdate();
+        unaccount(o);
+    }
+
+    void afterUpdate(Operation o) {
+        account(o);
+        budgets.endUpdate();
+    }
+
+    void timeChanged() {
+        historyVersion++;
+        timeIndex.invalidate();
+    }
+
+    void edited() { historyVersion++; }
+
+    private void account(Operation o) {
+        account(o.getType(), o.getCategory(), o.getAmountMinor(), epochSecond(o));
+    }
+
+    private void account(OperationType type, String category, long amount, long epochSecond) {
+        rollups.add(type, category, amount, epochSecond);
+        if (type == OperationType.INCOME) {
+            totalIncome += amount;
+            incomeSums.add(dictionary.id(category), amount);
+        } else if (type == OperationType.EXPENSE) {
+            totalExpense += amount;
+            budgets.expenseChanged(category, expenseSums.add(dictionary.id(category), amount));
+            periodicBudgets.expenseChanged(category, epochSecond, amount);
+        }
+    }
+
+    private void unaccount(Operation o) {
+        unaccount(o.getType(), o.getCategory(), o.getAmountMinor(), epochSecond(o));
+    }
+
+    private void unaccount(OperationType type, String category, long amount, long epochSecond) {
+        rollups.remove(type, category, amount, epochSecond);
+        if (type == OperationType.INCOME) {
+            totalIncome -= amount;
+            incomeSums.subtract(dictionary.find(category), amount);
+            if (incomeSums.isEmpty()) totalIncome = 0;
+        } else if (type == OperationType.EXPENSE) {
+            totalExpense -= amount;
+            expenseSums.subtract(dictionary.find(category), amount);
+            if (expenseSums.isEmpty()) totalExpense = 0;
+            budgets.expenseChanged(category, expenseMinor(category));
+            periodicBudgets.expenseChanged(category, epochSecond, -amount);
+        }
+    }
+
+    private void resetAggregates() {
+        totalIncome = 0;
+        totalExpense = 0;
+        incomeSums.clear();
+        expenseSums.clear();
+        budgets.expensesCleared();
+        periodicBudgets.expensesCleared();
+        rollups.clear();
+    }
+
+    private static long epochSecond(Operation o) {
+        LocalDateTime t = o.getCreatedAt();
+        return t == null ? OperationColumns.NO_TIME : t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private Map<String, Double> snapshot(CategorySums sums) {
+        Map<String, Double> map = new HashMap<>();
+        sums.forEach((id, amount) -> map.put(dictionary.name(id), Money.toMajor(amount)));
+        return map;
+    }
+
+    // суммы и число операций по номеру категории; категория без операций — count == 0 и сумма 0
+    private static final class CategorySums {
+        private long[] amount = new long[16];
+        private int[] count = new int[16];
+        private int present;
+
+        long add(int id, long value) {
+            if (id >= count.length) {
+                int n = Math.max(id + 1, count.length * 2);
+                amount = Arrays.copyOf(amount, n);
+                count = Arrays.copyOf(count, n);
+            }
+            if (count[id]++ == 0) present++;
+            return amount[id] += value;
+        }
+
+        void subtract(int id, long value) {
+            if (id < 0 || id >= count.length || count[id] == 0) return;
+            amount[id] -= value;
+            if (--count[id] == 0) {
+                amount[id] = 0;
+                present--;
+            }
+        }
+
+        long get(int id) {
+            return id < 0 || id >= count.length ? 0 : amount[id];
+        }
+
+        long sum(BitSet ids) {
+            long s = 0;
+            for (int id = ids.nextSetBit(0); id >= 0 && id < count.length; id = ids.nextSetBit(id + 1)) s += amount[id];
+            return s;
+        }
+
+        boolean isEmpty() {
+            return present == 0;
+        }
+
+        void forEach(IdAmount action) {
+            for (int id = 0; id < count.length; id++) if (count[id] > 0) action.accept(id, amount[id]);
+        }
+
+        void clear() {
+            Arrays.fill(amount, 0);
+            Arrays.fill(count, 0);
+            present = 0;
+        }
+    }
+
+    private interface IdAmount {
+        void accept(int id, long amount);
+    }
+
+    /**
+     * Список операций, который обновляет агрегаты кошелька при добавлении, замене и удалении.
+     * Изменения полей уже добавленной операции приходят через её сеттеры.
+     * Первые baseSize строк могут лежать во внешних столбцах (см. {@link #over}); такие операции
+     * создаются при чтении, а при изменении этих строк список переносит их в кучу.
+     * В упакованном режиме (см. {@link #packed}) все строки живут в {@link PackedOperations}.
+     */
+    private final class Operations extends AbstractList<Operation> implements RandomAccess, OperationColumns {
+        private OperationColumns base;
+        private PackedOperations packed;
+        private int baseSize;
+        private final ArrayList<Operation> items = new ArrayList<>();
+
+        @Override
+        public Operation get(int index) {
+            if (index < baseSize) {
+                if (index < 0) throw new IndexOutOfBoundsException(index);
+                return materialize(base, index);
+            }
+            return items.get(index - baseSize);
+        }
+
+        @Override
+        public int size() { return baseSize + items.size(); }
+
+        @Override
+        public void add(int index, Operation o) {
+            Objects.requireNonNull(o, "operation");
+            if (packed != null) {
+                packed.add(index, o);
+                baseSize++;
+                account(o);
+                if (index == baseSize - 1) timeIndex.appended(this, index);
+                else {
+                    timeIndex.invalidate();
+                    historyVersion++;
+                }
+                modCount++;
+                return;
+            }
+            if (index < baseSize) inlineBase();
+            boolean append = index == size();
+            items.add(index - baseSize, o);
+            attach(o);
+            if (append) timeIndex.appended(this, index);
+            else {
+                timeIndex.invalidate();
+                historyVersion++;
+            }
+            modCount++;
+        }
+
+        @Override
+        public Operation set(int index, Operation o) {
+            Objects.requireNonNull(o, "operation");
+            if (packed != null) {
+                Operation old = materialize(packed, index);
+                packed.set(index, o);
+                budgets.beginUpdate();
+                unaccount(old);
+                account(o);
+                budgets.endUpdate();
+                timeIndex.invalidate();
+                historyVersion++;
+                return old;
+            }
+            if (index < baseSize) inlineBase();
+            Operation old = items.set(index - baseSize, o);
+            budgets.beginUpdate();
+            detach(old);
+            attach(o);
+            budgets.endUpdate();
+            timeIndex.invalidate();
+            historyVersion++;
+            return old;
+        }
+
+        @Override
+        public Operation remove(int index) {
+            if (packed != null) {
+                Operation old = materialize(packed, index);
+                packed.remove(index);
+                baseSize--;
+                unaccount(old);
+                timeIndex.invalidate();
+                historyVersion++;
+                modCount++;
+                return old;
+            }
+            if (index < baseSize) inlineBase();
+            Operation old = items.remove(index - baseSize);
+            detach(old);
+            timeIndex.invalidate();
+            historyVersion++;
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            if (size() > 0) historyVersion++;
+            for (Operation o : items) o.owner = null;
+            items.clear();
+            base = null;
+            baseSize = 0;
+            if (packed != null) usePacked();
+            resetAggregates();
+            timeIndex.reset();
+            modCount++;
+        }
+
+        @Override
+        public String id(int row) {
+            return row < baseSize ? base.id(row) : items.get(row - baseSize).getId();
+        }
+
+        @Override
+        public OperationType type(int row) {
+            return row < baseSize ? base.type(row) : items.get(row - baseSize).getType();
+        }
+
+        @Override
+        public String category(int row) {
+            return row < baseSize ? base.category(row) : items.get(row - baseSize).getCategory();
+        }
+
+        @Override
+        public long amountMinor(int row) {
+            return row < baseSize ? base.amountMinor(row) : items.get(row - baseSize).getAmountMinor();
+        }
+
+        @Override
+        public long createdAtEpochSecond(int row) {
+            if (row < baseSize) return base.createdAtEpochSecond(row);
+            LocalDateTime t = items.get(row - baseSize).getCreatedAt();
+            return t == null ? NO_TIME : t.toEpochSecond(ZoneOffset.UTC);
+        }
+
+        @Override
+        public int createdAtNano(int row) {
+            if (row < baseSize) return base.createdAtNano(row);
+            LocalDateTime t = items.get(row - baseSize).getCreatedAt();
+            return t == null ? 0 : t.getNano();
+        }
+
+        @Override
+        public String note(int row) {
+            return row < baseSize ? base.note(row) : items.get(row - baseSize).getNote();
+        }
+
+        private void usePacked() {
+            packed = new PackedOperations(dictionary);
+            base = packed;
+        }
+
+        private void useBase(OperationColumns columns) {
+            base = columns;
+            baseSize = columns.size();
+            for (int row = 0; row < baseSize; row++) account(columns.type(row), columns.category(row), columns.amountMinor(row), columns.createdAtEpochSecond(row));
+        }
+
+        // строки уже учтены в агрегатах и индексе, номера строк не меняются
+        private void inlineBase() {
+            List<Operation> inlined = new ArrayList<>(baseSize);
+            for (int row = 0; row < baseSize; row++) {
+                Operation o = materialize(base, row);
+                o.internCategory(dictionary.intern(o.getCategory()));
+                o.owner = Wallet.this;
+                inlined.add(o);
+            }
+            items.addAll(0, inlined);
+            base = null;
+            baseSize = 0;
+        }
+
+        private void attach(Operation o) {
+            o.owner = Wallet.this;
+            o.internCategory(dictionary.intern(o.getCategory()));
+            account(o);
+        }
+
+        private void detach(Operation o) {
+            unaccount(o);
+            o.owner = null;
+        }
+    }
+
+    private static Operation materialize(OperationColumns c, int row) {
+        long sec = c.createdAtEpochSecond(row);
+        LocalDateTime createdAt = sec == OperationColumns.NO_TIME ? null : LocalDateTime.ofEpochSecond(sec, c.createdAtNano(row), ZoneOffset.UTC);
+        return Operation.ofMinor(c.id(row), c.type(row), c.category(row), c.amountMinor(row), createdAt, c.note(row));
+    }
 }
@@ -10,4 +10,11 @@ public interface UserRepository {
     boolean exists(String login);
     void save(User user);
     List<User> findAll();
-}
\ No newline at end of file
+
+    /** Сохраняет пользователя, только если логин свободен; false — логин уже занят. */
+    default boolean saveIfAbsent(User user) {
+        if (exists(user.getLogin())) return false;
+        save(user);
+        return true;
+    }
+}
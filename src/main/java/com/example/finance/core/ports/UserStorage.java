@@ -3,8 +3,20 @@ package com.example.finance.core.ports;
 import com.example.finance.core.model.User;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 public interface UserStorage {
     List<User> loadAll();
     void saveAll(List<User> users);
+
+    /**
+     * Сохраняет нового или изменённого пользователя. По умолчанию хранилище переписывается
+     * целиком списком {@code all} (по очереди, чтобы параллельные записи не смешивались);
+     * хранилища с раздельными записями пишут только этого пользователя и {@code all} не вызывают.
+     */
+    default void saveUser(User user, Supplier<List<User>> all) {
+        synchronized (this) {
+            saveAll(all.get());
+        }
+    }
 }
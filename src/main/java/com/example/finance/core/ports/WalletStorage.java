@@ -2,7 +2,30 @@ package com.example.finance.core.ports;
 
 import com.example.finance.core.model.Wallet;
 
+import java.util.Map;
+
 public interface WalletStorage {
     Wallet loadWallet(String login);
     void saveWallet(String login, Wallet wallet);
+
+    /**
+     * Сообщает, что кошелёк изменён в памяти. По умолчанию ничего не делает: изменения
+     * сохранит {@link #saveWallet} при выходе. Кэширующие хранилища отмечают кошелёк
+     * грязным и сохраняют его в фоне.
+     */
+    default void walletChanged(String login, Wallet wallet) {
+    }
+
+    /**
+     * Сохраняет несколько кошельков одной единицей: после сбоя на диске либо все изменения,
+     * либо ни одного. Реализация по умолчанию сохраняет кошельки по очереди и атомарности не даёт.
+     */
+    default void saveWallets(Map<String, Wallet> wallets) {
+        wallets.forEach(this::saveWallet);
+    }
+
+    /** Сколько байт кошелёк занимает на диске (для метрик); -1 — хранилище этого не знает. */
+    default long storedBytes(String login) {
+        return -1;
+    }
 }
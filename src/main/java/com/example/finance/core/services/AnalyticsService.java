@@ -0,0 +1,189 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.UserRepository;
+import com.example.finance.core.ports.WalletStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Сводная аналитика по кошелькам всех пользователей: расходы и доходы по категориям
+ * в целом по системе, самые большие траты, число превышенных бюджетов.
+ *
+ * Логины делятся на куски, каждый кусок обрабатывается отдельной задачей на
+ * {@link ForkJoinPool} со своим накопителем; накопители сливаются в конце, поэтому
+ * общих изменяемых структур между потоками нет. Кошелёк читается под блокировкой
+ * логина: у вошедших пользователей берётся кошелёк в памяти (с несохранёнными
+ * изменениями), у остальных — из хранилища. Из кошелька берутся только готовые
+ * агрегаты, операции не обходятся.
+ */
+public class AnalyticsService {
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final UserRepository users;
+    private final WalletStorage walletStorage;
+    private final LoginLocks locks;
+    private final ForkJoinPool pool;
+
+    public record Spender(String login, double expense) {
+    }
+
+    public record Report(int users, int failed, long operations, double totalIncome, double totalExpense,
+                         Map<String, Double> incomeByCategory, Map<String, Double> expenseByCategory,
+                         List<Spender> topSpenders, int budgetBreaches, int usersOverBudget) {
+    }
+
+    public AnalyticsService(UserRepository users, WalletStorage walletStorage, LoginLocks locks) {
+        this(users, walletStorage, locks, ForkJoinPool.commonPool());
+    }
+
+    public AnalyticsService(UserRepository users, WalletStorage walletStorage, LoginLocks locks, ForkJoinPool pool) {
+        this.users = users;
+        this.walletStorage = walletStorage;
+        this.locks = locks;
+        this.pool = pool;
+    }
+
+    public Report analyze(int top) {
+        if (top < 0) throw new IllegalArgumentException("Размер топа должен быть >= 0.");
+        List<User> all = users.findAll();
+        int chunk = Math.max(1, all.size() / (pool.getParallelism() * TASKS_PER_THREAD) + 1);
+
+        List<ForkJoinTask<Accumulator>> tasks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += chunk) {
+            List<User> part = all.subList(from, Math.min(all.size(), from + chunk));
+            tasks.add(pool.submit(() -> {
+                Accumulator acc = new Accumulator(top);
+                for (User u : part) acc.add(u.getLogin(), read(u));
+                return acc;
+            }));
+        }
+
+        Accumulator total = new Accumulator(top);
+        for (ForkJoinTask<Accumulator> t : tasks) total.merge(t.join());
+        return total.report();
+    }
+
+    public String buildReport(Report r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Пользователей: ").append(r.users());
+        if (r.failed() > 0) sb.append(" (не удалось прочитать: ").append(r.failed()).append(")");
+        sb.append("\n");
+        sb.append("Операций: ").append(r.operations()).append("\n");
+        sb.append("Общий доход: ").append(format(r.totalIncome())).append("\n");
+        sb.append("Общие расходы: ").append(format(r.totalExpense())).append("\n");
+        sb.append("Расходы по категориям:\n");
+        if (r.expenseByCategory().isEmpty()) sb.append("  (нет)\n");
+        else r.expenseByCategory().entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .forEach(e -> sb.append("  ").append(e.getKey()).append(": ").append(format(e.getValue())).append("\n"));
+        sb.append("Больше всего тратят:\n");
+        if (r.topSpenders().isEmpty()) sb.append("  (нет)\n");
+        else for (Spender s : r.topSpenders()) sb.append("  ").append(s.login()).append(": ").append(format(s.expense())).append("\n");
+        sb.append("Превышено бюджетов: ").append(r.budgetBreaches())
+                .append(" у ").append(r.usersOverBudget()).append(" пользователей\n");
+        return sb.toString();
+    }
+
+    // суммы отчёта получены из минимальных единиц, поэтому обратный перевод точен
+    private static String format(double amount) {
+        return Money.format(Money.toMinor(amount));
+    }
+
+    private Wallet read(User u) {
+        String login = u.getLogin();
+        return locks.withLock(login, () -> {
+            try {
+                return u.isWalletLoaded() ? u.getWallet() : walletStorage.loadWallet(login);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        });
+    }
+
+    // накопитель одной задачи; суммы — в минимальных единицах, по категориям — в long[1],
+    // чтобы не упаковывать на каждое слагаемое
+    private static final class Accumulator {
+        final int top;
+        int users;
+        int failed;
+        long operations;
+        long income;
+        long expense;
+        final Map<String, long[]> incomeByCategory = new HashMap<>();
+        final Map<String, long[]> expenseByCategory = new HashMap<>();
+        final PriorityQueue<Spender> spenders = new PriorityQueue<>(Comparator.comparingDouble(Spender::expense));
+        int breaches;
+        int usersOverBudget;
+
+        Accumulator(int top) {
+            this.top = top;
+        }
+
+        void add(String login, Wallet w) {
+            users++;
+            if (w == null) {
+                failed++;
+                return;
+            }
+            operations += w.getOperations().size();
+            income += w.totalIncomeMinor();
+            expense += w.totalExpenseMinor();
+            w.visitTotals((type, c, amount) -> (type == OperationType.INCOME ? incomeByCategory : expenseByCategory)
+                    .computeIfAbsent(c, k -> new long[1])[0] += amount);
+            offer(new Spender(login, w.totalExpense()));
+
+            int over = 0;
+            for (String c : w.getBudgetsByCategory().keySet()) {
+                if (w.budgets().remainingMinor(c) < 0) over++;
+            }
+            breaches += over;
+            if (over > 0) usersOverBudget++;
+        }
+
+        void merge(Accumulator o) {
+            users += o.users;
+            failed += o.failed;
+            operations += o.operations;
+            income += o.income;
+            expense += o.expense;
+            o.incomeByCategory.forEach((c, v) -> incomeByCategory.computeIfAbsent(c, k -> new long[1])[0] += v[0]);
+            o.expenseByCategory.forEach((c, v) -> expenseByCategory.computeIfAbsent(c, k -> new long[1])[0] += v[0]);
+            for (Spender s : o.spenders) offer(s);
+            breaches += o.breaches;
+            usersOverBudget += o.usersOverBudget;
+        }
+
+        void offer(Spender s) {
+            if (top == 0 || s.expense() <= 0) return;
+            if (spenders.size() < top) spenders.add(s);
+            else if (spenders.peek().expense() < s.expense()) {
+                spenders.poll();
+                spenders.add(s);
+            }
+        }
+
+        Report report() {
+            List<Spender> topList = new ArrayList<>(spenders);
+            topList.sort(Comparator.comparingDouble(Spender::expense).reversed().thenComparing(Spender::login));
+            return new Report(users, failed, operations, Money.toMajor(income), Money.toMajor(expense),
+                    unbox(incomeByCategory), unbox(expenseByCategory), topList, breaches, usersOverBudget);
+        }
+
+        private static Map<String, Double> unbox(Map<String, long[]> sums) {
+            Map<String, Double> res = new HashMap<>();
+            sums.forEach((c, v) -> res.put(c, Money.toMajor(v[0])));
+            return res;
+        }
+    }
+}
@@ -1,65 +1,165 @@
 package com.example.finance.core.services;
 
 import com.example.finance.core.model.User;
-import com.example.finance.core.model.Wallet;
 import com.example.finance.core.ports.UserRepository;
 import com.example.finance.core.ports.UserStorage;
 import com.example.finance.core.ports.WalletStorage;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class AuthService {
     private final UserRepository users;
     private final UserStorage storage;
     private final WalletStorage walletStorage;
+    private final LoginLocks locks;
+    private final Passwords passwords;
+
+    private static final Metrics.Histogram REGISTER = Metrics.global().timer("auth.register");
+    private static final Metrics.Histogram LOGIN = Metrics.global().timer("auth.openSession");
+    private static final Metrics.Histogram LOGOUT = Metrics.global().timer("auth.closeSession");
+    private static final Metrics.Counter LOGIN_FAILURES = Metrics.global().counter("auth.loginFailures");
+    // число открытых сессий по логину; меняется под блокировкой логина
+    private final Map<String, Integer> openSessions = new ConcurrentHashMap<>();
 
-    private User currentUser;
+    // сессия консоли (CommandLoop); остальные клиенты работают через openSession/closeSession
+    private volatile Session current;
 
     public AuthService(UserRepository users, UserStorage storage, WalletStorage walletStorage) {
+        this(users, storage, walletStorage, new LoginLocks());
+    }
+
+    public AuthService(UserRepository users, UserStorage storage, WalletStorage walletStorage, LoginLocks locks) {
+        this(users, storage, walletStorage, locks, Passwords.fromSystemProperties());
+    }
+
+    public AuthService(UserRepository users, UserStorage storage, WalletStorage walletStorage, LoginLocks locks,
+                       Passwords passwords) {
         this.users = users;
         this.storage = storage;
         this.walletStorage = walletStorage;
+        this.locks = locks;
+        this.passwords = passwords;
     }
 
     public void register(String login, String password) {
-        validateLogin(login);
-        validatePassword(password);
-        if (users.exists(login)) throw new IllegalArgumentException("Логин уже занят.");
-
-        users.save(new User(login, Passwords.sha256(password)));
-        storage.saveAll(users.findAll());
+        long start = Metrics.start();
+        try {
+            validateLogin(login);
+            validatePassword(password);
+
+            // занятый логин отклоняется до дорогого хеширования; окончательно решает saveIfAbsent
+            if (users.exists(login)) throw new IllegalArgumentException("Логин уже занят.");
+            User u = new User(login, passwords.hash(password));
+            if (!users.saveIfAbsent(u))
+                throw new IllegalArgumentException("Логин уже занят.");
+
+            storage.saveUser(u, users::findAll);
+        } finally {
+            REGISTER.stop(start);
+        }
     }
 
-    public void login(String login, String password) {
-        validateLogin(login);
-        validatePassword(password);
+    /**
+     * Открывает новую сессию. Сессии одного логина разделяют кошелёк: он читается
+     * из хранилища только при первом входе, дальше используется копия в памяти.
+     * Когда закрывается последняя сессия логина, копия отпускается ({@link User#releaseWallet}).
+     * Хеш пароля устаревшего формата при успешном входе заменяется новым и сохраняется.
+     */
+    public Session openSession(String login, String password) {
+        long start = Metrics.start();
+        try {
+            validateLogin(login);
+            validatePassword(password);
+
+            User u = users.findByLogin(login).orElse(null);
+            if (u == null) {
+                LOGIN_FAILURES.increment();
+                throw new IllegalArgumentException("Пользователь не найден.");
+            }
+
+            String stored = u.getPasswordHash();
+            Passwords.Check check = passwords.verify(password, stored);
+            if (!check.ok()) {
+                LOGIN_FAILURES.increment();
+                throw new IllegalArgumentException("Неверный пароль.");
+            }
+            if (check == Passwords.Check.OK_REHASH) upgradeHash(u, stored, passwords.hash(password));
+
+            locks.withLock(login, () -> {
+                if (!u.isWalletLoaded()) u.setWallet(walletStorage.loadWallet(login));
+                openSessions.merge(login, 1, Integer::sum);
+            });
+            return new Session(u, locks, walletStorage);
+        } finally {
+            LOGIN.stop(start);
+        }
+    }
 
-        User u = users.findByLogin(login)
-                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден."));
+    private void upgradeHash(User u, String old, String hash) {
+        locks.withLock(u.getLogin(), () -> {
+            // параллельный вход мог уже заменить хеш
+            if (!old.equals(u.getPasswordHash())) return;
+            u.setPasswordHash(hash);
+            storage.saveUser(u, users::findAll);
+        });
+    }
 
-        if (!u.getPasswordHash().equals(Passwords.sha256(password))) {
-            throw new IllegalArgumentException("Неверный пароль.");
+    /** Сохраняет кошелёк сессии и закрывает её; повторный вызов ничего не делает. */
+    public void closeSession(Session session) {
+        long start = Metrics.start();
+        try {
+            if (session == null) return;
+
+            User u = session.getUser();
+            locks.withLock(u.getLogin(), () -> {
+                // повторное закрытие (например, выход и истечение простоя одновременно) ничего не делает
+                if (!session.isOpen()) return;
+                walletStorage.saveWallet(u.getLogin(), u.getWallet());
+                session.close();
+                if (openSessions.merge(u.getLogin(), -1, Integer::sum) <= 0) {
+                    openSessions.remove(u.getLogin());
+                    u.releaseWallet();
+                }
+            });
+        } finally {
+            LOGOUT.stop(start);
         }
+    }
 
-        Wallet w = walletStorage.loadWallet(login);
-        u.setWallet(w);
-
-        currentUser = u;
+    /** Входит в консольную сессию; прежняя сессия сохраняется и закрывается, если вход удался. */
+    public void login(String login, String password) {
+        Session previous = current;
+        current = openSession(login, password);
+        if (previous != null) closeSession(previous);
     }
 
     public void logoutAndSave() {
-        if (currentUser == null) return;
+        Session s = current;
+        if (s == null) return;
 
-        walletStorage.saveWallet(currentUser.getLogin(), currentUser.getWallet());
+        closeSession(s);
 
-        currentUser = null;
+        current = null;
+    }
+
+    public Session requireSession() {
+        Session s = current;
+        if (s == null) throw new IllegalStateException("Сначала выполните login.");
+        return s;
     }
 
     public User requireUser() {
-        if (currentUser == null) throw new IllegalStateException("Сначала выполните login.");
-        return currentUser;
+        return requireSession().getUser();
     }
 
     public User getCurrentUserOrNull() {
-        return currentUser;
+        Session s = current;
+        return s == null ? null : s.getUser();
+    }
+
+    public LoginLocks locks() {
+        return locks;
     }
 
     private static void validateLogin(String login) {
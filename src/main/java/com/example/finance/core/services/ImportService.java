@@ -0,0 +1,366 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Импорт банковских выписок (CSV или OFX) в кошелёк.
+ *
+ * Файл делится на куски по границам записей (строка CSV, блок {@code <STMTTRN>} в OFX),
+ * каждый кусок отображается в память и разбирается отдельной задачей на {@link ForkJoinPool}.
+ * Разбор идёт без блокировки кошелька; затем все операции дописываются одной пачкой
+ * ({@link WalletService#appendAll}): категории создаются, оповещения считаются один раз.
+ * Ошибка в любой строке отменяет импорт целиком.
+ *
+ * CSV: {@code date,type,category,amount[,note]}, разделитель {@code ,} или {@code ;}, первая строка
+ * может быть заголовком; поле в кавычках может содержать разделитель, {@code ""} и перевод строки.
+ * Сумма — с точкой или запятой перед копейками и, по желанию, с разделителями тысяч
+ * ({@code 1,234.56}, {@code 1.234,56}, {@code 1 234,56}). date — {@code YYYY-MM-DD} или {@code YYYY-MM-DDTHH:MM[:SS]};
+ * type — income/expense (или доход/расход), пустой тип берётся из знака суммы; расход может быть
+ * со знаком минус, доход с минусом (возврат) отклоняется. В ошибке указывается физическая строка файла.
+ * OFX: операции из {@code <STMTTRN>} (дата DTPOSTED, знак TRNAMT) попадают в категорию "Импорт";
+ * DEBIT с положительной суммой или CREDIT с отрицательной — ошибка.
+ */
+public class ImportService {
+    public static final String OFX_CATEGORY = "Импорт";
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final byte[] OFX_RECORD = "<STMTTRN>".getBytes(StandardCharsets.US_ASCII);
+
+    private final WalletService walletService;
+    private final ForkJoinPool pool;
+
+    public record Result(int operations, int newCategories, List<String> alerts) {
+    }
+
+    public ImportService(WalletService walletService) {
+        this(walletService, ForkJoinPool.commonPool());
+    }
+
+    public ImportService(WalletService walletService, ForkJoinPool pool) {
+        this.walletService = walletService;
+        this.pool = pool;
+    }
+
+    public Result importFile(Session session, Path file) {
+        List<Operation> ops = parse(file);
+        return session.withWallet(w -> {
+            int before = w.getCategories().size();
+            List<String> alerts = walletService.appendAll(w, ops);
+            return new Result(ops.size(), w.getCategories().size() - before, alerts);
+        });
+    }
+
+    /** Разбирает выписку в операции (в порядке строк файла), не трогая кошелёк. */
+    public List<Operation> parse(Path file) {
+        boolean ofx = isOfx(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            char delimiter = ofx ? 0 : detectDelimiter(ch);
+
+            long chunk = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4L) + 1);
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for (long pos = chunk; pos < size; pos += chunk) {
+                long last = bounds.get(bounds.size() - 1);
+                long b = ofx ? find(ch, pos, OFX_RECORD) : csvRecordStart(ch, last, Math.max(pos, last));
+                if (b > last && b < size) bounds.add(b);
+            }
+            bounds.add(size);
+
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.size(); i++) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, bounds.get(i), bounds.get(i + 1) - bounds.get(i));
+                boolean first = i == 0;
+                tasks.add(pool.submit(() -> ofx ? parseOfx(buf) : parseCsv(buf, delimiter, first)));
+            }
+
+            // номер в сообщении: для CSV — физическая строка файла (запись с заметкой в кавычках
+            // может занимать несколько строк), для OFX — номер записи
+            List<Operation> ops = new ArrayList<>();
+            int line = 0;
+            for (ForkJoinTask<Chunk> t : tasks) {
+                Chunk c = t.join();
+                if (c.error != null) throw new IllegalArgumentException(
+                        (ofx ? "Запись " : "Строка ") + (line + c.errorAt) + ": " + c.error);
+                ops.addAll(c.ops);
+                line += ofx ? c.records : c.lines;
+            }
+            return ops;
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось прочитать выписку: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isOfx(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".ofx") || name.endsWith(".qfx");
+    }
+
+    // разделитель — тот, которого в первой строке больше
+    private static char detectDelimiter(FileChannel ch) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4096);
+        ch.read(head, 0);
+        int commas = 0, semicolons = 0;
+        for (int i = 0; i < head.position() && head.get(i) != '\n'; i++) {
+            if (head.get(i) == ',') commas++;
+            else if (head.get(i) == ';') semicolons++;
+        }
+        return semicolons > commas ? ';' : ',';
+    }
+
+    // позиция первого вхождения marker начиная с from (или конец файла)
+    private static long find(FileChannel ch, long from, byte[] marker) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long pos = from;
+        int matched = 0;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) return ch.size();
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                matched = b == marker[matched] ? matched + 1 : (b == marker[0] ? 1 : 0);
+                if (matched == marker.length) return pos + i - marker.length + 1;
+            }
+            pos += n;
+        }
+    }
+
+    // начало первой записи CSV после from: перевод строки вне кавычек. Чётность кавычек считается
+    // от начала предыдущего куска (записи), поэтому перевод строки внутри поля в кавычках кусок не режет
+    private static long csvRecordStart(FileChannel ch, long recordStart, long from) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long pos = recordStart;
+        boolean quoted = false;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) return ch.size();
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '"') quoted = !quoted;
+                else if (b == '\n' && !quoted && pos + i >= from) return pos + i + 1;
+            }
+            pos += n;
+        }
+    }
+
+    private static final class Chunk {
+        final List<Operation> ops = new ArrayList<>();
+        int records;
+        // физических строк CSV в куске
+        int lines;
+        int errorAt;
+        String error;
+    }
+
+    private static Chunk parseCsv(MappedByteBuffer buf, char delimiter, boolean first) {
+        Chunk c = new Chunk();
+        int start = 0, limit = buf.limit();
+        while (start < limit) {
+            int end = start;
+            int firstLine = c.lines + 1;
+            boolean quoted = false;
+            for (byte b; end < limit && ((b = buf.get(end)) != '\n' || quoted); end++) {
+                if (b == '"') quoted = !quoted;
+                else if (b == '\n') c.lines++;
+            }
+            c.lines++;
+            int len = end - start;
+            if (len > 0 && buf.get(end - 1) == '\r') len--;
+
+            byte[] bytes = new byte[len];
+            buf.get(start, bytes, 0, len);
+            String line = new String(bytes, StandardCharsets.UTF_8);
+            c.records++;
+            start = end + 1;
+
+            if (line.isBlank()) continue;
+            if (first && c.records == 1 && isHeader(line)) continue;
+            try {
+                c.ops.add(csvOperation(split(line, delimiter)));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                c.errorAt = firstLine;
+                c.error = e.getMessage();
+                return c;
+            }
+        }
+        return c;
+    }
+
+    private static boolean isHeader(String line) {
+        String l = line.trim().toLowerCase(Locale.ROOT);
+        return l.startsWith("date") || l.startsWith("дата") || l.startsWith("\"date");
+    }
+
+    private static Operation csvOperation(List<String> f) {
+        if (f.size() < 4) throw new IllegalArgumentException("ожидалось date,type,category,amount[,note]");
+
+        String date = f.get(0).trim();
+        LocalDateTime createdAt = date.length() <= 10 ? LocalDate.parse(date).atStartOfDay() : LocalDateTime.parse(date.replace(' ', 'T'));
+
+        // расход в выписках часто записан со знаком минус; отрицательный доход — это возврат или отмена,
+        // и молча превращать его в доход нельзя
+        long amount = parseAmount(f.get(3));
+        OperationType type = switch (f.get(1).trim().toLowerCase(Locale.ROOT)) {
+            case "income", "доход" -> OperationType.INCOME;
+            case "expense", "расход" -> OperationType.EXPENSE;
+            case "" -> amount < 0 ? OperationType.EXPENSE : OperationType.INCOME;
+            default -> throw new IllegalArgumentException("неизвестный тип операции: " + f.get(1));
+        };
+        if (type == OperationType.INCOME && amount < 0)
+            throw new IllegalArgumentException("отрицательная сумма дохода: " + f.get(3).trim()
+                    + " (для возврата укажите тип expense или оставьте тип пустым)");
+
+        String category = f.get(2).trim();
+        if (category.isEmpty()) throw new IllegalArgumentException("категория пустая");
+
+        String note = f.size() > 4 ? f.get(4).trim() : "";
+        return operation(type, category, Math.abs(amount), createdAt, note);
+    }
+
+    // поля через delimiter; значение в двойных кавычках может содержать разделитель и "" как кавычку
+    private static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    sb.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == delimiter) {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    // "1 234,56", "1,234.56", "1.234,56" и "-300.00": пробелы и апострофы отбрасываются; если есть и точка,
+    // и запятая, дробную часть отделяет последний знак, а другой разделяет тысячи; несколько одинаковых
+    // знаков — тоже разделители тысяч, один — десятичный. Сумма разбирается сразу в копейки, без double
+    static long parseAmount(String s) {
+        String v = s.replace(" ", "").replace("\u00a0", "").replace("'", "").trim();
+        int dot = v.lastIndexOf('.'), comma = v.lastIndexOf(',');
+        if (dot >= 0 && comma >= 0) {
+            v = dot > comma ? v.replace(",", "") : v.replace(".", "").replace(',', '.');
+        } else if (comma >= 0) {
+            v = v.indexOf(',') != comma ? v.replace(",", "") : v.replace(',', '.');
+        } else if (dot >= 0 && v.indexOf('.') != dot) {
+            v = v.replace(".", "");
+        }
+        long amount;
+        try {
+            amount = Money.toMinor(new BigDecimal(v));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректная сумма: " + s);
+        }
+        if (amount == 0) throw new IllegalArgumentException("сумма должна быть ненулевым числом: " + s);
+        return amount;
+    }
+
+    private static Chunk parseOfx(MappedByteBuffer buf) {
+        byte[] bytes = new byte[buf.limit()];
+        buf.get(0, bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+
+        Chunk c = new Chunk();
+        int from = 0;
+        while (true) {
+            int start = text.indexOf("<STMTTRN>", from);
+            if (start < 0) break;
+            int end = text.indexOf("</STMTTRN>", start);
+            if (end < 0) end = text.length();
+            String block = text.substring(start, end);
+            from = end;
+            c.records++;
+            try {
+                c.ops.add(ofxOperation(block));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                c.errorAt = c.records;
+                c.error = e.getMessage();
+                return c;
+            }
+        }
+        return c;
+    }
+
+    private static Operation ofxOperation(String block) {
+        String amountText = tag(block, "TRNAMT");
+        String posted = tag(block, "DTPOSTED");
+        if (amountText == null || posted == null) throw new IllegalArgumentException("нет TRNAMT или DTPOSTED");
+
+        // направление задаёт знак TRNAMT; DEBIT или CREDIT с противоположным знаком — ошибка, а не догадка
+        long amount = parseAmount(amountText);
+        OperationType type = amount < 0 ? OperationType.EXPENSE : OperationType.INCOME;
+        String trnType = tag(block, "TRNTYPE");
+        if ("DEBIT".equalsIgnoreCase(trnType) && amount > 0 || "CREDIT".equalsIgnoreCase(trnType) && amount < 0)
+            throw new IllegalArgumentException("знак TRNAMT " + amountText + " не совпадает с TRNTYPE " + trnType);
+
+        // YYYYMMDD[HHMMSS[.XXX]][[tz]]
+        String d = posted.replaceAll("[^0-9].*$", "");
+        if (d.length() < 8) throw new IllegalArgumentException("некорректная дата: " + posted);
+        LocalDateTime createdAt = LocalDateTime.of(
+                Integer.parseInt(d.substring(0, 4)), Integer.parseInt(d.substring(4, 6)), Integer.parseInt(d.substring(6, 8)),
+                d.length() >= 10 ? Integer.parseInt(d.substring(8, 10)) : 0,
+                d.length() >= 12 ? Integer.parseInt(d.substring(10, 12)) : 0,
+                d.length() >= 14 ? Integer.parseInt(d.substring(12, 14)) : 0);
+
+        String name = tag(block, "NAME");
+        String memo = tag(block, "MEMO");
+        String note = name == null ? (memo == null ? "" : memo) : (memo == null ? name : name + ": " + memo);
+        return operation(type, OFX_CATEGORY, Math.abs(amount), createdAt, note);
+    }
+
+    // значение SGML/XML-тега: текст после <TAG> до следующего '<' или конца строки
+    private static String tag(String block, String name) {
+        int i = block.indexOf("<" + name + ">");
+        if (i < 0) return null;
+        int from = i + name.length() + 2;
+        int to = from;
+        while (to < block.length() && block.charAt(to) != '<' && block.charAt(to) != '\n' && block.charAt(to) != '\r') to++;
+        String v = block.substring(from, to).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    // UUID v4 из ThreadLocalRandom: UUID.randomUUID() упирается в общий SecureRandom при параллельном разборе
+    private static Operation operation(OperationType type, String category, long amount, LocalDateTime createdAt, String note) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        long msb = (r.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (r.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return Operation.ofMinor(new UUID(msb, lsb).toString(), type, category, amount, createdAt, note);
+    }
+}
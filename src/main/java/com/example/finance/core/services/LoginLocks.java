@@ -0,0 +1,72 @@
+package com.example.finance.core.services;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые (striped) блокировки по логину: фиксированный массив {@link ReentrantLock},
+ * логин отображается на полосу по хешу. Изменения кошельков разных пользователей почти
+ * всегда идут под разными блокировками и масштабируются по ядрам без общего замка.
+ */
+public class LoginLocks {
+    private final ReentrantLock[] stripes;
+
+    public LoginLocks() {
+        this(256);
+    }
+
+    public LoginLocks(int stripes) {
+        if (stripes < 1) throw new IllegalArgumentException("Число полос должно быть >= 1.");
+        int n = 1;
+        while (n < stripes) n <<= 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) this.stripes[i] = new ReentrantLock();
+    }
+
+    /** Номер полосы логина; по нему же задаётся порядок захвата нескольких блокировок. */
+    public int stripe(String login) {
+        int h = login.hashCode();
+        h ^= h >>> 16;
+        return h & (stripes.length - 1);
+    }
+
+    public ReentrantLock lockFor(String login) {
+        return stripes[stripe(login)];
+    }
+
+    public <T> T withLock(String login, Supplier<T> action) {
+        ReentrantLock lock = lockFor(login);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(String login, Runnable action) {
+        withLock(login, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет действие под блокировками всех логинов. Полосы захватываются по возрастанию
+     * номера, поэтому встречные вызовы (A→B и B→A) не могут взаимно заблокироваться.
+     */
+    public <T> T withLocks(Collection<String> logins, Supplier<T> action) {
+        int[] order = logins.stream().mapToInt(this::stripe).sorted().distinct().toArray();
+        int locked = 0;
+        try {
+            for (int s : order) {
+                stripes[s].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) stripes[order[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.finance.core.services;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики и гистограммы задержек горячих путей: сервисов кошелька, переводов, входа и хранилищ.
+ * Метрики создаются по имени один раз (обычно в статическом поле) и дальше пишутся без блокировок:
+ * счётчик — {@link LongAdder}, гистограмма — массив атомарных корзин.
+ *
+ * Гистограмма устроена как HDR: значения до 32 хранятся точно, дальше каждая степень двойки
+ * делится на 32 корзины, так что перцентили точны до ~3% при любом разбросе значений
+ * (от наносекунд до минут) и фиксированных ~15 КБ на гистограмму. Запись — индекс по старшим битам
+ * и одно атомарное увеличение, без выделения памяти.
+ *
+ * {@code -Dfinance.metrics=false} отключает запись: {@link #start()} и {@link Histogram#stop}
+ * превращаются в пустые вызовы.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("finance.metrics", "true"));
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /** Метрики процесса: их пишут сервисы и хранилища, показывают CLI и JMX. */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /** Начало замера для {@link Histogram#stop}. */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /** Гистограмма длительностей в наносекундах. */
+    public Histogram timer(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, Unit.NANOS));
+    }
+
+    /** Гистограмма размеров в байтах. */
+    public Histogram bytes(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, Unit.BYTES));
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public enum Unit {NANOS, BYTES}
+
+    public record Snapshot(String name, Unit unit, long count, long sum, long max,
+                           long p50, long p90, long p99, long p999) {
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    /** Снимки всех гистограмм, по имени. */
+    public List<Snapshot> histograms() {
+        List<Snapshot> res = new ArrayList<>();
+        for (Histogram h : new TreeMap<>(histograms).values()) res.add(h.snapshot());
+        return res;
+    }
+
+    /** Значения всех счётчиков, по имени. */
+    public Map<String, Long> counters() {
+        Map<String, Long> res = new TreeMap<>();
+        counters.forEach((name, c) -> res.put(name, c.get()));
+        return res;
+    }
+
+    /** Текстовый отчёт: гистограммы (время — в микросекундах) и счётчики. */
+    public void writeReport(Writer out) throws IOException {
+        List<Snapshot> hs = histograms();
+        out.write(String.format(Locale.ROOT, "%-28s %10s %10s %10s %10s %10s %10s%n",
+                "Метрика", "Кол-во", "Среднее", "p50", "p99", "p99.9", "Макс."));
+        if (hs.isEmpty()) out.write("  (нет)\n");
+        for (Snapshot s : hs) {
+            out.write(String.format(Locale.ROOT, "%-28s %10d %10s %10s %10s %10s %10s%n", s.name(), s.count(),
+                    format(s.unit(), Math.round(s.mean())), format(s.unit(), s.p50()), format(s.unit(), s.p99()),
+                    format(s.unit(), s.p999()), format(s.unit(), s.max())));
+        }
+        Map<String, Long> cs = counters();
+        if (!cs.isEmpty()) {
+            out.write("Счётчики:\n");
+            for (var e : cs.entrySet()) out.write(String.format(Locale.ROOT, "  %-26s %d%n", e.getKey(), e.getValue()));
+        }
+    }
+
+    public String report() {
+        StringWriter sw = new StringWriter();
+        try {
+            writeReport(sw);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sw.toString();
+    }
+
+    /** Пишет отчёт в файл (через временный файл, чтобы не оставить его наполовину записанным). */
+    public void dump(Path file) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writeReport(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось записать метрики: " + e.getMessage(), e);
+        }
+    }
+
+    private static String format(Unit unit, long value) {
+        if (unit == Unit.BYTES) return Long.toString(value);
+        return String.format(Locale.ROOT, "%.1fмкс", value / 1000.0);
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            if (ENABLED) value.increment();
+        }
+
+        public void add(long n) {
+            if (ENABLED) value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        public String name() {
+            return name;
+        }
+    }
+
+    public static final class Histogram {
+        private final String name;
+        private final Unit unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name, Unit unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        /** Записывает время с {@code start} ({@link Metrics#start()}). */
+        public void stop(long start) {
+            if (ENABLED) record(System.nanoTime() - start);
+        }
+
+        public void record(long value) {
+            if (!ENABLED) return;
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(index(value));
+            sum.add(value);
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+                // повтор: другой поток успел записать свой максимум
+            }
+        }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) count += counts[i] = buckets.get(i);
+            return new Snapshot(name, unit, count, sum.sum(), max.get(),
+                    percentile(counts, count, 0.50), percentile(counts, count, 0.90),
+                    percentile(counts, count, 0.99), percentile(counts, count, 0.999));
+        }
+
+        // верхняя граница корзины, в которую попадает доля q значений; не больше максимума
+        private long percentile(long[] counts, long count, double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+    }
+
+    // значения < 32 — своя корзина; дальше степень двойки делится на 32 равные части
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        if (exp >= 62) return Long.MAX_VALUE;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
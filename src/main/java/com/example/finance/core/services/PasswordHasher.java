@@ -0,0 +1,16 @@
+package com.example.finance.core.services;
+
+/** Алгоритм хеширования паролей; хеш — строка, по которой алгоритм узнаёт свои хеши. */
+public interface PasswordHasher {
+    String hash(String raw);
+
+    boolean matches(String raw, String stored);
+
+    /** Хеш сделан этим алгоритмом. */
+    boolean recognizes(String stored);
+
+    /** Хеш этого алгоритма, но с устаревшими параметрами (например, меньшей стоимостью). */
+    default boolean outdated(String stored) {
+        return false;
+    }
+}
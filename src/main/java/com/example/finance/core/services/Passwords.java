@@ -2,16 +2,212 @@ package com.example.finance.core.services;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class Passwords {
+/**
+ * Хеширование и проверка паролей. Новые хеши делает текущий алгоритм,
+ * проверяются хеши любого из известных; хеш, сделанный другим алгоритмом или с устаревшей
+ * стоимостью, при успешном входе помечается {@link Check#OK_REHASH}, и {@link AuthService}
+ * заменяет его новым — так старые несолёные SHA-256 переходят на PBKDF2 без сброса паролей.
+ *
+ * Дорогие хеши считаются на отдельном пуле из {@code threads} потоков с ограниченной очередью:
+ * сколько бы входов ни шло одновременно, они не займут больше этих потоков, а при полной
+ * очереди вход сразу отклоняется. Успешная проверка запоминается в небольшом кэше
+ * (хеш -> SHA-256 от пароля с секретом процесса), и повторный вход с тем же паролем
+ * не считает KDF заново; {@code cacheSize = 0} кэш отключает.
+ */
+public final class Passwords {
+    /** Прежний формат: SHA-256 без соли, 64 шестнадцатеричных символа. Только для проверки старых хешей. */
+    public static final PasswordHasher SHA256 = new PasswordHasher() {
+        @Override
+        public String hash(String raw) {
+            return sha256(raw);
+        }
+
+        @Override
+        public boolean matches(String raw, String stored) {
+            return stored != null && MessageDigest.isEqual(
+                    sha256(raw).getBytes(StandardCharsets.US_ASCII), stored.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public boolean recognizes(String stored) {
+            if (stored == null || stored.length() != 64) return false;
+            for (int i = 0; i < stored.length(); i++) if (Character.digit(stored.charAt(i), 16) < 0) return false;
+            return true;
+        }
+    };
+
+    public static final int DEFAULT_PBKDF2_ITERATIONS = 600_000;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> SHA = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен: " + e.getMessage(), e);
+        }
+    });
+
+    public enum Check {
+        MISMATCH, OK, OK_REHASH;
+
+        public boolean ok() {
+            return this != MISMATCH;
+        }
+    }
+
+    private final PasswordHasher current;
+    private final List<PasswordHasher> known;
+    private final ThreadPoolExecutor pool;
+    private final int cacheSize;
+    private final Map<String, byte[]> verified;
+    private final byte[] secret = new byte[32];
+
+    public Passwords(PasswordHasher current, List<PasswordHasher> legacy, int threads, int queue, int cacheSize) {
+        if (threads < 1) throw new IllegalArgumentException("Потоков хеширования должно быть >= 1.");
+        if (queue < 1) throw new IllegalArgumentException("Очередь хеширования должна быть >= 1.");
+        if (cacheSize < 0) throw new IllegalArgumentException("Размер кэша проверок должен быть >= 0.");
+        this.current = current;
+        this.known = new ArrayList<>();
+        known.add(current);
+        known.addAll(legacy);
+        this.cacheSize = cacheSize;
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > Passwords.this.cacheSize;
+            }
+        };
+        new SecureRandom().nextBytes(secret);
+
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread t = new Thread(r, "password-hash-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** PBKDF2 с заданной стоимостью. */
+    public static PasswordHasher pbkdf2(int iterations) {
+        return new Pbkdf2Hasher(iterations);
+    }
+
+    /**
+     * Настройки из системных свойств: {@code -Dfinance.passwordHash=pbkdf2|sha256} (по умолчанию pbkdf2),
+     * {@code -Dfinance.pbkdf2Iterations} ({@value #DEFAULT_PBKDF2_ITERATIONS}), {@code -Dfinance.hashThreads}
+     * (число ядер), {@code -Dfinance.passwordCache} (1024 проверки).
+     */
+    public static Passwords fromSystemProperties() {
+        int iterations = Integer.getInteger("finance.pbkdf2Iterations", DEFAULT_PBKDF2_ITERATIONS);
+        String kind = System.getProperty("finance.passwordHash", "pbkdf2");
+        PasswordHasher current = switch (kind) {
+            case "pbkdf2" -> pbkdf2(iterations);
+            case "sha256" -> SHA256;
+            default -> throw new IllegalArgumentException("Неизвестный алгоритм паролей: " + kind);
+        };
+        List<PasswordHasher> legacy = current == SHA256 ? List.of(pbkdf2(iterations)) : List.of(SHA256);
+        int threads = Integer.getInteger("finance.hashThreads", Runtime.getRuntime().availableProcessors());
+        return new Passwords(current, legacy, threads, threads * 64, Integer.getInteger("finance.passwordCache", 1024));
+    }
+
+    public String hash(String raw) {
+        return run(current, () -> current.hash(raw));
+    }
+
+    public Check verify(String raw, String stored) {
+        if (stored == null) return Check.MISMATCH;
+        PasswordHasher hasher = null;
+        for (PasswordHasher h : known) {
+            if (h.recognizes(stored)) {
+                hasher = h;
+                break;
+            }
+        }
+        if (hasher == null) return Check.MISMATCH;
+        Check ok = hasher != current || current.outdated(stored) ? Check.OK_REHASH : Check.OK;
+
+        byte[] fingerprint = cacheSize > 0 ? fingerprint(raw) : null;
+        if (fingerprint != null) {
+            byte[] seen;
+            synchronized (verified) {
+                seen = verified.get(stored);
+            }
+            if (seen != null && MessageDigest.isEqual(seen, fingerprint)) return ok;
+        }
+
+        PasswordHasher h = hasher;
+        if (!run(h, () -> h.matches(raw, stored))) return Check.MISMATCH;
+        if (fingerprint != null) {
+            synchronized (verified) {
+                verified.put(stored, fingerprint);
+            }
+        }
+        return ok;
+    }
+
+    /** Несолёный SHA-256 в hex — прежний формат хешей. */
     public static String sha256(String raw) {
         if (raw == null) raw = "";
+        return hex(SHA.get().digest(raw.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    private byte[] fingerprint(String raw) {
+        MessageDigest md = SHA.get();
+        md.update(secret);
+        return md.digest((raw == null ? "" : raw).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // дешёвый SHA-256 считается на месте, остальное — на пуле хеширования
+    private <T> T run(PasswordHasher hasher, Callable<T> task) {
+        if (hasher == SHA256) return call(task);
+        Future<T> f;
+        try {
+            f = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Слишком много одновременных входов, повторите позже.");
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Проверка пароля прервана.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException("Не удалось вычислить хеш пароля: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static <T> T call(Callable<T> task) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(raw.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
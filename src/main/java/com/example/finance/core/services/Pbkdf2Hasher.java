@@ -0,0 +1,89 @@
+package com.example.finance.core.services;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 с солью на каждого пользователя. Хеш хранит свою стоимость и соль:
+ * {@code pbkdf2-sha256$<итераций>$<соль base64>$<ключ base64>}, поэтому хеши с прежней
+ * стоимостью проверяются и после её увеличения (и считаются устаревшими).
+ */
+final class Pbkdf2Hasher implements PasswordHasher {
+    static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 недоступен: " + e.getMessage(), e);
+        }
+    });
+
+    private final int iterations;
+
+    Pbkdf2Hasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Число итераций PBKDF2 должно быть >= 1.");
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String raw) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(derive(raw, salt, iterations));
+    }
+
+    @Override
+    public boolean matches(String raw, String stored) {
+        String[] parts = parts(stored);
+        if (parts == null) return false;
+        try {
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            return MessageDigest.isEqual(expected, derive(raw, salt, Integer.parseInt(parts[0])));
+        } catch (IllegalArgumentException e) {
+            // испорченный хеш (не base64, пустая соль, 0 итераций) не совпадает ни с каким паролем
+            return false;
+        }
+    }
+
+    @Override
+    public boolean recognizes(String stored) {
+        return parts(stored) != null;
+    }
+
+    @Override
+    public boolean outdated(String stored) {
+        String[] parts = parts(stored);
+        return parts != null && Integer.parseInt(parts[0]) < iterations;
+    }
+
+    // итерации, соль, ключ; null — не хеш PBKDF2
+    private static String[] parts(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return null;
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3 || parts[0].isEmpty() || parts[0].length() > 9) return null;
+        for (int i = 0; i < parts[0].length(); i++) if (!Character.isDigit(parts[0].charAt(i))) return null;
+        return parts;
+    }
+
+    private static byte[] derive(String raw, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec((raw == null ? "" : raw).toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось вычислить хеш пароля: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
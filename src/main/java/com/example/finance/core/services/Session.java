@@ -0,0 +1,62 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+
+import java.util.function.Function;
+
+/**
+ * Сессия вошедшего пользователя. Сессий может быть сколько угодно одновременно;
+ * сессии одного логина разделяют один кошелёк, поэтому доступ к нему идёт через
+ * {@link #withWallet} (изменение) или {@link #readWallet} (только чтение), под блокировкой логина.
+ */
+public class Session {
+    private final User user;
+    private final LoginLocks locks;
+    private final WalletStorage walletStorage;
+    private volatile boolean open = true;
+
+    Session(User user, LoginLocks locks, WalletStorage walletStorage) {
+        this.user = user;
+        this.locks = locks;
+        this.walletStorage = walletStorage;
+    }
+
+    public User getUser() { return user; }
+
+    public String getLogin() { return user.getLogin(); }
+
+    public boolean isOpen() { return open; }
+
+    /**
+     * Выполняет изменение кошелька и сообщает о нём хранилищу ({@link WalletStorage#walletChanged}).
+     * Открытость сессии проверяется уже под блокировкой: закрытие между проверкой и блокировкой
+     * подсунуло бы действию пустой кошелёк после {@link User#releaseWallet}.
+     */
+    public <T> T withWallet(Function<Wallet, T> action) {
+        return locks.withLock(user.getLogin(), () -> {
+            requireOpen();
+            Wallet w = user.getWallet();
+            T result = action.apply(w);
+            walletStorage.walletChanged(user.getLogin(), w);
+            return result;
+        });
+    }
+
+    public <T> T readWallet(Function<Wallet, T> action) {
+        return locks.withLock(user.getLogin(), () -> {
+            requireOpen();
+            return action.apply(user.getWallet());
+        });
+    }
+
+    // вызывается под блокировкой логина
+    private void requireOpen() {
+        if (!open || !user.isWalletLoaded()) throw new IllegalStateException("Сессия закрыта.");
+    }
+
+    void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.OperationVisitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сборка отчёта о статистике за один проход. Суммы по категориям (из агрегатов кошелька
+ * или из сводок за период) и лимиты бюджетов складываются в плотные массивы минимальных
+ * единиц ({@link Money}) по номеру категории, без {@code Map<String, Double>} и упаковки;
+ * все разделы отчёта затем печатаются из этих массивов.
+ *
+ * Текст собирается в буфер, который при выводе во {@link Writer} сбрасывается кусками,
+ * так что большой отчёт не держится в памяти целиком. Экземпляр переиспользуется
+ * между отчётами одного потока ({@link #reset()}), поэтому массивы и буферы
+ * выделяются один раз. Не потокобезопасен.
+ */
+final class StatsReport implements OperationVisitor {
+    private static final int FLUSH_AT = 8 * 1024;
+    // буфер, разросшийся на необычно большом отчёте, не держим дольше одного отчёта
+    private static final int MAX_RETAINED_CHARS = 1 << 20;
+
+    private static final byte INCOME = 1;
+    private static final byte EXPENSE = 2;
+    private static final byte BUDGET = 4;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] names = new String[16];
+    private long[] income = new long[16];
+    private long[] expense = new long[16];
+    private long[] limit = new long[16];
+    private byte[] present = new byte[16];
+    private int size;
+    private long totalIncome;
+    private long totalExpense;
+
+    private StringBuilder buf = new StringBuilder(FLUSH_AT);
+    private final char[] chunk = new char[FLUSH_AT];
+    private Writer out;
+
+    void reset() {
+        slots.clear();
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+        totalIncome = 0;
+        totalExpense = 0;
+        if (buf.capacity() > MAX_RETAINED_CHARS) buf = new StringBuilder(FLUSH_AT);
+        buf.setLength(0);
+        out = null;
+    }
+
+    @Override
+    public void visit(OperationType type, String category, long amount) {
+        if (type == OperationType.INCOME) {
+            int i = slot(category);
+            income[i] += amount;
+            present[i] |= INCOME;
+            totalIncome += amount;
+        } else if (type == OperationType.EXPENSE) {
+            int i = slot(category);
+            expense[i] += amount;
+            present[i] |= EXPENSE;
+            totalExpense += amount;
+        }
+    }
+
+    void budget(String category, long value) {
+        int i = slot(category);
+        limit[i] = value;
+        present[i] |= BUDGET;
+    }
+
+    /** Итоги, посчитанные кошельком, вместо сумм по категориям — чтобы совпадали с остальными командами. */
+    void totals(long income, long expense) {
+        totalIncome = income;
+        totalExpense = expense;
+    }
+
+    /**
+     * Печатает отчёт: {@code header} (или ничего), итоги, суммы по категориям и остатки
+     * бюджетов (лимит минус расходы из этого же отчёта); категории — по алфавиту.
+     * С {@code out == null} текст остаётся в буфере, см. {@link #text()}.
+     */
+    void render(String header, String budgetTitle, Writer out) throws IOException {
+        this.out = out;
+        int[] order = sortedSlots();
+        if (header != null) line(header);
+
+        buf.append("Общий доход: ").append(Money.format(totalIncome)).append('\n');
+        section("Доходы по категориям:\n", order, INCOME, income);
+        buf.append("Общие расходы: ").append(Money.format(totalExpense)).append('\n');
+        section("Расходы по категориям:\n", order, EXPENSE, expense);
+
+        buf.append(budgetTitle);
+        boolean any = false;
+        for (int i : order) {
+            if ((present[i] & BUDGET) == 0) continue;
+            any = true;
+            buf.append("  ").append(names[i]).append(": ").append(Money.format(limit[i]))
+                    .append(", Оставшийся бюджет: ").append(Money.format(limit[i] - expense[i])).append('\n');
+            flushIfFull();
+        }
+        if (!any) buf.append("  (нет)\n");
+        if (out != null) flush();
+    }
+
+    String text() {
+        return buf.toString();
+    }
+
+    private void section(String title, int[] order, byte kind, long[] sums) throws IOException {
+        buf.append(title);
+        boolean any = false;
+        for (int i : order) {
+            if ((present[i] & kind) == 0) continue;
+            any = true;
+            buf.append("  ").append(names[i]).append(": ").append(Money.format(sums[i])).append('\n');
+            flushIfFull();
+        }
+        if (!any) buf.append("  (нет)\n");
+    }
+
+    private void line(String s) throws IOException {
+        buf.append(s).append('\n');
+        flushIfFull();
+    }
+
+    private int slot(String category) {
+        Integer i = slots.get(category);
+        if (i != null) return i;
+        if (size == names.length) grow();
+        int s = size++;
+        names[s] = category;
+        income[s] = 0;
+        expense[s] = 0;
+        limit[s] = 0;
+        present[s] = 0;
+        slots.put(category, s);
+        return s;
+    }
+
+    private void grow() {
+        int n = names.length * 2;
+        names = Arrays.copyOf(names, n);
+        income = Arrays.copyOf(income, n);
+        expense = Arrays.copyOf(expense, n);
+        limit = Arrays.copyOf(limit, n);
+        present = Arrays.copyOf(present, n);
+    }
+
+    // сортируем копию имён и возвращаемся к номерам через индекс — без компаратора по Integer
+    private int[] sortedSlots() {
+        String[] sorted = Arrays.copyOf(names, size);
+        Arrays.sort(sorted);
+        int[] order = new int[size];
+        for (int k = 0; k < size; k++) order[k] = slots.get(sorted[k]);
+        return order;
+    }
+
+    private void flushIfFull() throws IOException {
+        if (out != null && buf.length() >= FLUSH_AT) flush();
+    }
+
+    private void flush() throws IOException {
+        int len = buf.length();
+        for (int from = 0; from < len; from += chunk.length) {
+            int n = Math.min(chunk.length, len - from);
+            buf.getChars(from, from + n, chunk, 0);
+            out.write(chunk, 0, n);
+        }
+        buf.setLength(0);
+    }
+}
@@ -1,51 +1,157 @@
 package com.example.finance.core.services;
 
+import com.example.finance.core.model.Money;
 import com.example.finance.core.model.User;
 import com.example.finance.core.model.Wallet;
 import com.example.finance.core.ports.UserRepository;
 import com.example.finance.core.ports.WalletStorage;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 
 public class TransferService {
+    private static final String CATEGORY = "Перевод";
+
     private final UserRepository users;
     private final WalletStorage walletStorage;
     private final WalletService walletService;
+    private final LoginLocks locks;
+
+    private static final Metrics.Histogram TRANSFER = Metrics.global().timer("transfer.single");
+    private static final Metrics.Histogram TRANSFER_BATCH = Metrics.global().timer("transfer.batch");
+
+    /** Одна часть пакетного перевода: получатель, сумма в минимальных единицах ({@link Money}) и комментарий. */
+    public record Leg(String toLogin, long amountMinor, String note) {
+
+        /** Часть с суммой в основных единицах — для вызовов с {@code double} на границе API. */
+        public static Leg of(String toLogin, double amount, String note) {
+            return new Leg(toLogin, toMinor(amount), note);
+        }
+    }
 
     public TransferService(UserRepository users, WalletStorage walletStorage, WalletService walletService) {
+        this(users, walletStorage, walletService, new LoginLocks());
+    }
+
+    /** {@code locks} должны быть теми же, что у {@link AuthService}, иначе перевод не исключает работу сессий. */
+    public TransferService(UserRepository users, WalletStorage walletStorage, WalletService walletService,
+                           LoginLocks locks) {
         this.users = users;
         this.walletStorage = walletStorage;
         this.walletService = walletService;
+        this.locks = locks;
     }
 
     /**
      * Перевод денег from -> toLogin
      * У from: EXPENSE, у получателя: INCOME
      * category: "Перевод"
+     *
+     * Оба кошелька меняются под блокировками обоих логинов и сохраняются одной единицей
+     * ({@link WalletStorage#saveWallets}). Уже загруженный кошелёк получателя берётся из памяти;
+     * кошелёк того, кто не вошёл, читается только на время перевода и к пользователю не привязывается.
+     * Если сохранить не удалось, добавленные операции снимаются со всех кошельков.
+     * Кошелёк отправителя должен быть загружен (сессия открыта), иначе — {@link IllegalStateException}.
      */
     public void transfer(User from, String toLogin, double amount, String note) {
-        if (toLogin == null || toLogin.trim().isEmpty())
-            throw new IllegalArgumentException("Логин получателя пуст.");
+        transferMinor(from, toLogin, toMinor(amount), note);
+    }
 
-        if (from.getLogin().equals(toLogin))
-            throw new IllegalArgumentException("Нельзя переводить самому себе.");
+    /** То же, что {@link #transfer}, но сумма — в минимальных единицах. */
+    public void transferMinor(User from, String toLogin, long amount, String note) {
+        long start = Metrics.start();
+        try {
+            transferLegs(from, List.of(new Leg(toLogin, amount, note)));
+        } finally {
+            TRANSFER.stop(start);
+        }
+    }
 
-        if (Double.isNaN(amount) || Double.isInfinite(amount) || amount <= 0)
-            throw new IllegalArgumentException("Сумма перевода должна быть > 0.");
+    /**
+     * Пакетный перевод от одного отправителя многим получателям (например, выплаты).
+     * Все части проверяются до первого изменения: при ошибке ни один кошелёк не меняется.
+     * Части группируются по получателю, поэтому каждый кошелёк загружается не более одного раза,
+     * а все затронутые кошельки сохраняются одним вызовом {@link WalletStorage#saveWallets}.
+     */
+    public void transferBatch(User from, List<Leg> legs) {
+        long start = Metrics.start();
+        try {
+            transferLegs(from, legs);
+        } finally {
+            TRANSFER_BATCH.stop(start);
+        }
+    }
+
+    private void transferLegs(User from, List<Leg> legs) {
+        if (legs == null || legs.isEmpty())
+            throw new IllegalArgumentException("Пакет переводов пуст.");
+
+        Map<String, User> recipients = new LinkedHashMap<>();
+        for (Leg leg : legs) {
+            validate(from, leg);
+            recipients.computeIfAbsent(leg.toLogin(), login -> users.findByLogin(login)
+                    .orElseThrow(() -> new IllegalArgumentException("Получатель не найден: " + login)));
+        }
 
-        var toUser = users.findByLogin(toLogin)
-                .orElseThrow(() -> new IllegalArgumentException("Получатель не найден: " + toLogin));
+        List<String> logins = new ArrayList<>(recipients.keySet());
+        logins.add(from.getLogin());
 
-        Wallet toWallet = walletStorage.loadWallet(toLogin);
-        toUser.setWallet(toWallet);
+        locks.withLocks(logins, () -> {
+            // после выхода отправителя у User пустой кошелёк (releaseWallet): перевод в него и сохранение
+            // затёрли бы настоящую историю, поэтому проверка — под блокировкой, как в Session
+            if (!from.isWalletLoaded()) throw new IllegalStateException("Сессия отправителя закрыта.");
+            // кошелёк получателя без сессии не вешается на User: иначе он остался бы в памяти навсегда
+            Map<String, Wallet> changed = new LinkedHashMap<>();
+            changed.put(from.getLogin(), from.getWallet());
+            for (var e : recipients.entrySet()) {
+                User to = e.getValue();
+                changed.put(e.getKey(), to.isWalletLoaded() ? to.getWallet() : walletStorage.loadWallet(e.getKey()));
+            }
 
-        String cat = "Перевод";
-        walletService.addCategory(from.getWallet(), cat);
-        walletService.addCategory(toUser.getWallet(), cat);
+            List<Undo> undo = new ArrayList<>(changed.size());
+            for (Wallet w : changed.values()) undo.add(new Undo(w, w.getOperations().size(), w.getCategories().contains(CATEGORY)));
+            try {
+                for (Wallet w : changed.values()) walletService.addCategory(w, CATEGORY);
+                for (Leg leg : legs) {
+                    String suffix = leg.note() == null || leg.note().isBlank() ? "" : (": " + leg.note());
+                    walletService.addExpenseMinor(from.getWallet(), CATEGORY, leg.amountMinor(), "to " + leg.toLogin() + suffix);
+                    walletService.addIncomeMinor(changed.get(leg.toLogin()), CATEGORY, leg.amountMinor(), "from " + from.getLogin() + suffix);
+                }
+                walletStorage.saveWallets(changed);
+            } catch (RuntimeException e) {
+                for (Undo u : undo) u.rollback();
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    // состояние кошелька до перевода: операции после operations и добавленная категория снимаются
+    private record Undo(Wallet wallet, int operations, boolean hadCategory) {
+        void rollback() {
+            List<?> ops = wallet.getOperations();
+            for (int i = ops.size() - 1; i >= operations; i--) ops.remove(i);
+            if (!hadCategory) wallet.getCategories().remove(CATEGORY);
+        }
+    }
 
-        walletService.addExpense(from.getWallet(), cat, amount, "to " + toLogin + (note == null || note.isBlank() ? "" : (": " + note)));
-        walletService.addIncome(toUser.getWallet(), cat, amount, "from " + from.getLogin() + (note == null || note.isBlank() ? "" : (": " + note)));
+    private static void validate(User from, Leg leg) {
+        if (leg.toLogin() == null || leg.toLogin().trim().isEmpty())
+            throw new IllegalArgumentException("Логин получателя пуст.");
 
-        walletStorage.saveWallet(from.getLogin(), from.getWallet());
-        walletStorage.saveWallet(toLogin, toUser.getWallet());
+        if (from.getLogin().equals(leg.toLogin()))
+            throw new IllegalArgumentException("Нельзя переводить самому себе.");
+
+        if (leg.amountMinor() <= 0)
+            throw new IllegalArgumentException("Сумма перевода должна быть > 0.");
+    }
+
+    private static long toMinor(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount) || amount <= 0)
+            throw new IllegalArgumentException("Сумма перевода должна быть > 0.");
+        return Money.toMinor(amount);
     }
 }
@@ -1,17 +1,47 @@
 package com.example.finance.core.services;
 
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.BudgetTracker;
+import com.example.finance.core.model.Money;
 import com.example.finance.core.model.Operation;
 import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.OperationVisitor;
+import com.example.finance.core.model.PeriodicBudget;
+import com.example.finance.core.model.PeriodicBudgets;
 import com.example.finance.core.model.Wallet;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 
 public class WalletService {
+    // бюджеты показываем как раньше (за весь кошелёк), а “остаток” считаем по расходам периода — так логичнее для отчёта периода
+    private static final String PERIOD_BUDGET_TITLE = "Бюджет по категориям (расходы за период):\n";
+    private static final String BUDGET_MESSAGE = "Лимит бюджета должен быть > 0.";
+    private static final String INCOME_MESSAGE = "Сумма дохода должна быть > 0.";
+    private static final String EXPENSE_MESSAGE = "Сумма расхода должна быть > 0.";
+
+    private static final Metrics.Histogram ADD_INCOME = Metrics.global().timer("wallet.addIncome");
+    private static final Metrics.Histogram ADD_EXPENSE = Metrics.global().timer("wallet.addExpense");
+    private static final Metrics.Histogram APPEND_ALL = Metrics.global().timer("wallet.appendAll");
+    private static final Metrics.Histogram ALERTS = Metrics.global().timer("wallet.alerts");
+    private static final Metrics.Counter ALERTS_ISSUED = Metrics.global().counter("wallet.alertsIssued");
+    private static final Metrics.Histogram STATS_REPORT = Metrics.global().timer("wallet.statsReport");
+    private static final Metrics.Histogram PERIOD_REPORT = Metrics.global().timer("wallet.periodReport");
+
+    private final ThreadLocal<StatsReport> reports = ThreadLocal.withInitial(StatsReport::new);
 
     public void addCategory(Wallet w, String name) {
         if (name == null || name.trim().isEmpty())
@@ -19,116 +49,249 @@ public class WalletService {
         w.getCategories().add(name.trim());
     }
 
+    /** Лимит в основных единицах — для вызовов с {@code double} на границе API; см. {@link #setBudgetMinor}. */
     public void setBudget(Wallet w, String category, double limit) {
+        setBudgetMinor(w, category, toMinor(limit, BUDGET_MESSAGE));
+    }
+
+    /** Лимит бюджета категории в минимальных единицах ({@link Money}). */
+    public void setBudgetMinor(Wallet w, String category, long limit) {
         requireCategory(w, category);
-        validateAmount(limit, "Лимит бюджета должен быть > 0.");
-        w.getBudgetsByCategory().put(category, limit);
+        validateAmount(limit, BUDGET_MESSAGE);
+        w.budgets().setLimitMinor(category, limit);
     }
 
-    public List<String> addIncome(Wallet w, String category, double amount, String note) {
-        validateAmount(amount, "Сумма дохода должна быть > 0.");
+    public void setPeriodicBudget(Wallet w, String category, BudgetPeriod period, double limit, boolean rollover) {
+        setPeriodicBudgetMinor(w, category, period, toMinor(limit, BUDGET_MESSAGE), rollover);
+    }
+
+    /**
+     * Повторяющийся бюджет категории на месяц или неделю; лимит — в минимальных единицах.
+     * При смене лимита того же периода начало бюджета сохраняется, чтобы не терять перенос остатка.
+     */
+    public void setPeriodicBudgetMinor(Wallet w, String category, BudgetPeriod period, long limit, boolean rollover) {
         requireCategory(w, category);
-        w.getOperations().add(new Operation(OperationType.INCOME, category, amount, safe(note)));
-        return alerts(w, category);
+        if (period == null) throw new IllegalArgumentException("Период бюджета не задан.");
+        validateAmount(limit, BUDGET_MESSAGE);
+        PeriodicBudget old = w.periodicBudgets().get(category);
+        LocalDate start = old != null && old.period() == period ? old.start() : LocalDate.now();
+        w.periodicBudgets().put(category, new PeriodicBudget(period, limit, rollover, start));
+    }
+
+    public List<String> addIncome(Wallet w, String category, double amount, String note) {
+        return addIncomeMinor(w, category, toMinor(amount, INCOME_MESSAGE), note);
+    }
+
+    /** Доход с суммой в минимальных единицах ({@link Money}). */
+    public List<String> addIncomeMinor(Wallet w, String category, long amount, String note) {
+        long start = Metrics.start();
+        try {
+            w.getOperations().add(newOperationMinor(w, OperationType.INCOME, category, amount, note));
+            return balanceAlert(w, List.of());
+        } finally {
+            ADD_INCOME.stop(start);
+        }
     }
 
     public List<String> addExpense(Wallet w, String category, double amount, String note) {
-        validateAmount(amount, "Сумма расхода должна быть > 0.");
+        return addExpenseMinor(w, category, toMinor(amount, EXPENSE_MESSAGE), note);
+    }
+
+    /**
+     * Расход с суммой в минимальных единицах. Оповещение по бюджету выдаётся, только если расход
+     * поднял категорию на новый порог (см. {@link BudgetTracker}); без пересечения проверка ничего не создаёт.
+     */
+    public List<String> addExpenseMinor(Wallet w, String category, long amount, String note) {
+        long start = Metrics.start();
+        try {
+            Operation o = newOperationMinor(w, OperationType.EXPENSE, category, amount, note);
+            int before = w.budgets().threshold(category);
+            LocalDate today = w.periodicBudgets().get(category) == null ? null : LocalDate.now();
+            boolean periodOk = today == null || w.periodicBudgets().remainingMinor(category, today) >= 0;
+            w.getOperations().add(o);
+
+            long alertsStart = Metrics.start();
+            int after = w.budgets().threshold(category);
+            List<String> res = after > before ? List.of(budgetAlert(w, category)) : List.of();
+            if (today != null && periodOk && w.periodicBudgets().remainingMinor(category, today) < 0) {
+                res = new ArrayList<>(res);
+                res.add(periodicAlert(w, category, today));
+            }
+            res = balanceAlert(w, res);
+            ALERTS.stop(alertsStart);
+            return res;
+        } finally {
+            ADD_EXPENSE.stop(start);
+        }
+    }
+
+    public Operation newOperation(Wallet w, OperationType type, String category, double amount, String note) {
+        return newOperationMinor(w, type, category, toMinor(amount, amountMessage(type)), note);
+    }
+
+    /** Проверяет и создаёт операцию для кошелька, не добавляя её (для пачек через {@link #appendAll}). */
+    public Operation newOperationMinor(Wallet w, OperationType type, String category, long amount, String note) {
+        validateAmount(amount, amountMessage(type));
         requireCategory(w, category);
-        w.getOperations().add(new Operation(OperationType.EXPENSE, category, amount, safe(note)));
-        return alerts(w, category);
+        return Operation.ofMinor(UUID.randomUUID().toString(), type, category, amount, LocalDateTime.now(), safe(note));
+    }
+
+    /**
+     * Дописывает готовые операции пачкой: недостающие категории создаются, оповещения
+     * считаются один раз в конце по всем затронутым категориям, а не после каждой операции.
+     */
+    public List<String> appendAll(Wallet w, List<Operation> ops) {
+        long start = Metrics.start();
+        try {
+            return appendAllTimed(w, ops);
+        } finally {
+            APPEND_ALL.stop(start);
+        }
+    }
+
+    private List<String> appendAllTimed(Wallet w, List<Operation> ops) {
+        Set<String> touched = new TreeSet<>();
+        for (Operation o : ops) {
+            if (o.getType() == null) throw new IllegalArgumentException("Тип операции не задан.");
+            validateAmount(o.getAmountMinor(), "Сумма операции должна быть > 0.");
+            if (o.getCategory() == null || o.getCategory().trim().isEmpty())
+                throw new IllegalArgumentException("Категория пустая.");
+            touched.add(o.getCategory());
+        }
+        LocalDate today = LocalDate.now();
+        Map<String, Integer> before = new HashMap<>();
+        Set<String> periodOk = new HashSet<>();
+        for (String c : touched) {
+            before.put(c, w.budgets().threshold(c));
+            if (w.periodicBudgets().remainingMinor(c, today) >= 0) periodOk.add(c);
+        }
+        w.getCategories().addAll(touched);
+        w.getOperations().addAll(ops);
+
+        long alertsStart = Metrics.start();
+        List<String> res = new ArrayList<>();
+        for (String c : touched) {
+            if (w.budgets().threshold(c) > before.get(c)) res.add(budgetAlert(w, c));
+            if (periodOk.contains(c) && w.periodicBudgets().remainingMinor(c, today) < 0) res.add(periodicAlert(w, c, today));
+        }
+        res = balanceAlert(w, res);
+        ALERTS.stop(alertsStart);
+        return res;
     }
 
     public double totalIncome(Wallet w) {
-        return w.getOperations().stream()
-                .filter(o -> o.getType() == OperationType.INCOME)
-                .mapToDouble(Operation::getAmount)
-                .sum();
+        return w.totalIncome();
     }
 
     public double totalExpense(Wallet w) {
-        return w.getOperations().stream()
-                .filter(o -> o.getType() == OperationType.EXPENSE)
-                .mapToDouble(Operation::getAmount)
-                .sum();
+        return w.totalExpense();
     }
 
     public Map<String, Double> incomeByCategory(Wallet w) {
-        Map<String, Double> map = new HashMap<>();
-        for (Operation o : w.getOperations()) {
-            if (o.getType() == OperationType.INCOME) {
-                map.put(o.getCategory(), map.getOrDefault(o.getCategory(), 0.0) + o.getAmount());
-            }
-        }
-        return map;
+        return w.incomeByCategory();
     }
 
     public Map<String, Double> expenseByCategory(Wallet w) {
-        Map<String, Double> map = new HashMap<>();
-        for (Operation o : w.getOperations()) {
-            if (o.getType() == OperationType.EXPENSE) {
-                map.put(o.getCategory(), map.getOrDefault(o.getCategory(), 0.0) + o.getAmount());
-            }
-        }
-        return map;
+        return w.expenseByCategory();
     }
 
     public Map<String, Double> remainingBudgetByCategory(Wallet w) {
-        Map<String, Double> spent = expenseByCategory(w);
-        Map<String, Double> remaining = new HashMap<>();
-        for (var e : w.getBudgetsByCategory().entrySet()) {
-            double used = spent.getOrDefault(e.getKey(), 0.0);
-            remaining.put(e.getKey(), e.getValue() - used);
-        }
-        return remaining;
+        return w.budgets().remainingByCategory();
     }
 
     public String buildStatsReport(Wallet w) {
-        StringBuilder sb = new StringBuilder();
+        long start = Metrics.start();
+        try {
+            StatsReport r = wholeWallet(w);
+            r.render(null, "Бюджет по категориям:\n", null);
+            return r.text();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // без Writer вывода нет
+        } finally {
+            STATS_REPORT.stop(start);
+        }
+    }
 
-        sb.append("Общий доход: ").append(totalIncome(w)).append("\n");
-        sb.append("Доходы по категориям:\n");
-        var inc = incomeByCategory(w);
-        if (inc.isEmpty()) sb.append("  (нет)\n");
-        else inc.entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .forEach(e -> sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append("\n"));
-
-        sb.append("Общие расходы: ").append(totalExpense(w)).append("\n");
-        sb.append("Расходы по категориям:\n");
-        var exp = expenseByCategory(w);
-        if (exp.isEmpty()) sb.append("  (нет)\n");
-        else exp.entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .forEach(e -> sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append("\n"));
-
-
-        sb.append("Бюджет по категориям:\n");
-        if (w.getBudgetsByCategory().isEmpty()) sb.append("  (нет)\n");
-        else {
-            var remaining = remainingBudgetByCategory(w);
-            w.getBudgetsByCategory().entrySet().stream().sorted(Map.Entry.comparingByKey())
-                    .forEach(e -> {
-                        String cat = e.getKey();
-                        double limit = e.getValue();
-                        double rem = remaining.getOrDefault(cat, limit);
-                        sb.append("  ").append(cat).append(": ").append(limit)
-                                .append(", Оставшийся бюджет: ").append(rem).append("\n");
-                    });
+    /** То же, что {@link #buildStatsReport(Wallet)}, но текст идёт прямо в {@code out}, без строки целиком. */
+    public void writeStatsReport(Wallet w, Writer out) throws IOException {
+        long start = Metrics.start();
+        try {
+            wholeWallet(w).render(null, "Бюджет по категориям:\n", out);
+        } finally {
+            STATS_REPORT.stop(start);
         }
-        return sb.toString();
     }
 
+    private StatsReport wholeWallet(Wallet w) {
+        StatsReport r = report(w);
+        w.visitTotals(r);
+        r.totals(w.totalIncomeMinor(), w.totalExpenseMinor());
+        return r;
+    }
+
+    // отчёт потока, очищенный и с лимитами бюджетов кошелька
+    private StatsReport report(Wallet w) {
+        StatsReport r = reports.get();
+        r.reset();
+        for (var e : w.budgets().limitsMinor().entrySet()) r.budget(e.getKey(), e.getValue());
+        return r;
+    }
+
+    /** Текущее состояние без учёта порогов: все превышенные бюджеты из списка и общий баланс. */
     public List<String> alerts(Wallet w, String category) {
+        return alerts(w, List.of(category));
+    }
+
+    public List<String> alerts(Wallet w, Collection<String> categories) {
         List<String> res = new ArrayList<>();
 
-        if (w.getBudgetsByCategory().containsKey(category)) {
-            double limit = w.getBudgetsByCategory().get(category);
-            double spent = expenseByCategory(w).getOrDefault(category, 0.0);
-            double remaining = limit - spent;
-            if (remaining < 0) res.add("⚠ Превышен бюджет по категории '" + category + "' на " + (-remaining));
+        for (String category : categories) {
+            long remaining = w.budgets().remainingMinor(category);
+            if (remaining < 0) res.add("⚠ Превышен бюджет по категории '" + category + "' на " + Money.format(-remaining));
         }
 
-        if (totalExpense(w) > totalIncome(w)) res.add("⚠ Общие расходы превысили доходы.");
+        return balanceAlert(w, res);
+    }
+
+    private static String budgetAlert(Wallet w, String category) {
+        long remaining = w.budgets().remainingMinor(category);
+        if (remaining < 0) return "⚠ Превышен бюджет по категории '" + category + "' на " + Money.format(-remaining);
+        return "⚠ Израсходовано " + w.budgets().threshold(category) + "% бюджета по категории '" + category
+                + "', осталось " + Money.format(remaining);
+    }
+
+    private static String periodicAlert(Wallet w, String category, LocalDate day) {
+        PeriodicBudget b = w.periodicBudgets().get(category);
+        return "⚠ Превышен " + (b.period() == BudgetPeriod.MONTH ? "месячный" : "недельный") + " бюджет по категории '"
+                + category + "' на " + Money.format(-w.periodicBudgets().remainingMinor(category, day));
+    }
+
+    /** Повторяющиеся бюджеты на период дня {@code day}: лимит, перенос, расходы и остаток — без просмотра истории. */
+    public String buildPeriodicBudgetsReport(Wallet w, LocalDate day) {
+        PeriodicBudgets pb = w.periodicBudgets();
+        if (pb.isEmpty()) return "(повторяющихся бюджетов нет)";
+        StringBuilder sb = new StringBuilder("Бюджеты на период:\n");
+        pb.all().entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            String cat = e.getKey();
+            PeriodicBudget b = e.getValue();
+            LocalDate start = b.period().start(b.period().index(day));
+            sb.append("  ").append(cat).append(" (").append(b.period() == BudgetPeriod.MONTH ? "месяц" : "неделя")
+                    .append(" с ").append(start).append("): ").append(Money.format(b.limitMinor()));
+            if (b.rollover()) sb.append(", перенос: ").append(Money.format(pb.carriedMinor(cat, day)));
+            sb.append(", потрачено: ").append(Money.format(pb.spentMinor(cat, day)))
+                    .append(", остаток: ").append(Money.format(pb.remainingMinor(cat, day))).append("\n");
+        });
+        return sb.toString();
+    }
 
+    private static List<String> balanceAlert(Wallet w, List<String> alerts) {
+        if (w.totalExpenseMinor() <= w.totalIncomeMinor()) {
+            if (!alerts.isEmpty()) ALERTS_ISSUED.add(alerts.size());
+            return alerts;
+        }
+        List<String> res = new ArrayList<>(alerts);
+        res.add("⚠ Общие расходы превысили доходы.");
+        ALERTS_ISSUED.add(res.size());
         return res;
     }
 
@@ -139,9 +302,18 @@ public class WalletService {
             throw new IllegalArgumentException("Категория не найдена: " + category);
     }
 
-    private static void validateAmount(double value, String message) {
-        if (Double.isNaN(value) || Double.isInfinite(value) || value <= 0)
-            throw new IllegalArgumentException(message);
+    // сумма в основных единицах с границы API; меньше копейки после округления тоже считается нулевой
+    private static long toMinor(double value, String message) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || value <= 0) throw new IllegalArgumentException(message);
+        return Money.toMinor(value);
+    }
+
+    private static void validateAmount(long value, String message) {
+        if (value <= 0) throw new IllegalArgumentException(message);
+    }
+
+    private static String amountMessage(OperationType type) {
+        return type == OperationType.INCOME ? INCOME_MESSAGE : EXPENSE_MESSAGE;
     }
 
     private static String safe(String s) {
@@ -149,6 +321,11 @@ public class WalletService {
     }
 
     public double sumByCategories(Wallet w, OperationType type, List<String> categories) {
+        return Money.toMajor(sumByCategoriesMinor(w, type, categories));
+    }
+
+    /** Сумма операций типа {@code type} по списку категорий, в минимальных единицах. */
+    public long sumByCategoriesMinor(Wallet w, OperationType type, List<String> categories) {
         if (categories == null || categories.isEmpty())
             throw new IllegalArgumentException("Список категорий пуст.");
 
@@ -159,11 +336,8 @@ public class WalletService {
             }
         }
 
-        return w.getOperations().stream()
-                .filter(o -> o.getType() == type)
-                .filter(o -> categories.contains(o.getCategory()))
-                .mapToDouble(Operation::getAmount)
-                .sum();
+        // категории — набор номеров из словаря кошелька; складываются готовые суммы по категориям
+        return w.sumMinor(type, w.dictionary().idsOf(categories));
     }
 
     public List<String> parseCategoriesCsv(String csv) {
@@ -179,74 +353,84 @@ public class WalletService {
         return res;
     }
     public String buildStatsReport(Wallet w, LocalDate from, LocalDate to) {
+        long start = Metrics.start();
+        try {
+            StatsReport r = period(w, from, to);
+            r.render(periodHeader(from, to), PERIOD_BUDGET_TITLE, null);
+            return r.text();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            PERIOD_REPORT.stop(start);
+        }
+    }
+
+    public void writeStatsReport(Wallet w, LocalDate from, LocalDate to, Writer out) throws IOException {
+        long start = Metrics.start();
+        try {
+            period(w, from, to).render(periodHeader(from, to), PERIOD_BUDGET_TITLE, out);
+        } finally {
+            PERIOD_REPORT.stop(start);
+        }
+    }
+
+    // период из целых дней собирается из сводок по годам/месяцам/дням, без обхода операций
+    private StatsReport period(Wallet w, LocalDate from, LocalDate to) {
         if (from == null || to == null) throw new IllegalArgumentException("Даты не заданы.");
         if (from.isAfter(to)) throw new IllegalArgumentException("Дата 'from' позже даты 'to'.");
+        StatsReport r = report(w);
+        w.rollups().visit(from, to, r);
+        return r;
+    }
 
-        LocalDateTime start = from.atStartOfDay();
-        LocalDateTime end = to.plusDays(1).atStartOfDay(); // исключающая граница
-
-        return buildStatsReportByDateTimeRange(w, start, end);
+    private static String periodHeader(LocalDate from, LocalDate to) {
+        return "Период: " + from + " .. " + to;
     }
 
-    private String buildStatsReportByDateTimeRange(Wallet w, LocalDateTime startInclusive, LocalDateTime endExclusive) {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Ряд доходов и расходов по дням, месяцам или годам за [from, to] — по корзинам
+     * сводок кошелька; пустые корзины пропускаются. Крайние корзины обрезаются по [from, to],
+     * чтобы строки не включали операции вне периода из заголовка.
+     */
+    public String buildSeriesReport(Wallet w, ChronoUnit unit, LocalDate from, LocalDate to) {
+        if (from == null || to == null) throw new IllegalArgumentException("Даты не заданы.");
+        if (from.isAfter(to)) throw new IllegalArgumentException("Дата 'from' позже даты 'to'.");
+        LocalDate bucket = switch (unit) {
+            case DAYS -> from;
+            case MONTHS -> from.withDayOfMonth(1);
+            case YEARS -> from.withDayOfYear(1);
+            default -> throw new IllegalArgumentException("Шаг ряда должен быть day, month или year.");
+        };
 
-        double incTotal = w.getOperations().stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .filter(o -> !o.getCreatedAt().isBefore(startInclusive) && o.getCreatedAt().isBefore(endExclusive))
-                .filter(o -> o.getType() == OperationType.INCOME)
-                .mapToDouble(Operation::getAmount).sum();
-
-        double expTotal = w.getOperations().stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .filter(o -> !o.getCreatedAt().isBefore(startInclusive) && o.getCreatedAt().isBefore(endExclusive))
-                .filter(o -> o.getType() == OperationType.EXPENSE)
-                .mapToDouble(Operation::getAmount).sum();
-
-        sb.append("Период: ").append(startInclusive.toLocalDate()).append(" .. ").append(endExclusive.minusNanos(1).toLocalDate()).append("\n");
-        sb.append("Общий доход: ").append(incTotal).append("\n");
-
-        sb.append("Доходы по категориям:\n");
-        Map<String, Double> inc = new HashMap<>();
-        w.getOperations().stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .filter(o -> !o.getCreatedAt().isBefore(startInclusive) && o.getCreatedAt().isBefore(endExclusive))
-                .filter(o -> o.getType() == OperationType.INCOME)
-                .forEach(o -> inc.put(o.getCategory(), inc.getOrDefault(o.getCategory(), 0.0) + o.getAmount()));
-
-        if (inc.isEmpty()) sb.append("  (нет)\n");
-        else inc.entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .forEach(e -> sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append("\n"));
-
-        sb.append("Общие расходы: ").append(expTotal).append("\n");
-
-        sb.append("Расходы по категориям:\n");
-        Map<String, Double> exp = new HashMap<>();
-        w.getOperations().stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .filter(o -> !o.getCreatedAt().isBefore(startInclusive) && o.getCreatedAt().isBefore(endExclusive))
-                .filter(o -> o.getType() == OperationType.EXPENSE)
-                .forEach(o -> exp.put(o.getCategory(), exp.getOrDefault(o.getCategory(), 0.0) + o.getAmount()));
-
-        if (exp.isEmpty()) sb.append("  (нет)\n");
-        else exp.entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .forEach(e -> sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append("\n"));
-
-        // бюджеты показываем как раньше (за весь кошелёк), а “остаток” считаем по расходам периода — так логичнее для отчёта периода
-        sb.append("Бюджет по категориям (расходы за период):\n");
-        if (w.getBudgetsByCategory().isEmpty()) sb.append("  (нет)\n");
-        else {
-            for (var e : w.getBudgetsByCategory().entrySet()) {
-                String cat = e.getKey();
-                double limit = e.getValue();
-                double spentInPeriod = exp.getOrDefault(cat, 0.0);
-                double remaining = limit - spentInPeriod;
-                sb.append("  ").append(cat).append(": ").append(limit)
-                        .append(", Оставшийся бюджет: ").append(remaining).append("\n");
-            }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Период: ").append(from).append(" .. ").append(to).append("\n");
+        for (; !bucket.isAfter(to); bucket = bucket.plus(1, unit)) {
+            PeriodTotals t = new PeriodTotals();
+            LocalDate end = bucket.plus(1, unit).minusDays(1);
+            // целая корзина внутри периода всё равно берётся одной сводкой месяца или года
+            w.rollups().visit(bucket.isBefore(from) ? from : bucket, end.isAfter(to) ? to : end, t);
+            if (!t.any) continue;
+            String label = switch (unit) {
+                case MONTHS -> YearMonth.from(bucket).toString();
+                case YEARS -> String.valueOf(bucket.getYear());
+                default -> bucket.toString();
+            };
+            sb.append("  ").append(label).append(": доход ").append(Money.format(t.income))
+                    .append(", расход ").append(Money.format(t.expense)).append("\n");
         }
-
         return sb.toString();
     }
-}
 
+    private static final class PeriodTotals implements OperationVisitor {
+        long income;
+        long expense;
+        boolean any;
+
+        @Override
+        public void visit(OperationType type, String category, long amount) {
+            if (type == OperationType.INCOME) income += amount;
+            else if (type == OperationType.EXPENSE) expense += amount;
+            any = true;
+        }
+    }
+}
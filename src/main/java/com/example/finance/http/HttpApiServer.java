@@ -0,0 +1,320 @@
+package com.example.finance.http;
+
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.AuthService;
+import com.example.finance.core.services.Session;
+import com.example.finance.core.services.TransferService;
+import com.example.finance.core.services.WalletService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP/JSON API поверх тех же сервисов, что и CLI, на {@code com.sun.net.httpserver}.
+ * Каждый запрос обрабатывается в своём (по возможности виртуальном) потоке.
+ *
+ * Вход выдаёт токен; остальные запросы передают его в {@code Authorization: Bearer <token>}.
+ * За токеном стоит {@link Session}, поэтому один логин может работать из многих клиентов.
+ *
+ * <pre>
+ * POST /api/register   {"login", "password"}
+ * POST /api/login      {"login", "password"}            -> {"token"}
+ * POST /api/logout
+ * POST /api/categories {"name"}
+ * POST /api/operations {"type": INCOME|EXPENSE, "category", "amount", "note"} -> {"alerts"}
+ * POST /api/transfer   {"to", "amount", "note"}
+ * GET  /api/stats      -> итоги, суммы по категориям и остатки бюджетов
+ * </pre>
+ * Ошибки: 400 — неверные данные, 401 — нет, неизвестен или просрочен токен, 404/405 — путь или метод,
+ * 413 — тело больше {@value #MAX_BODY_BYTES} байт.
+ *
+ * По умолчанию сервер слушает только loopback: регистрация и вход идут открытым HTTP.
+ * Сессия, к которой не обращались дольше {@code idleTimeout}, закрывается с сохранением кошелька,
+ * и её токен перестаёт действовать.
+ */
+public class HttpApiServer implements AutoCloseable {
+    private final AuthService auth;
+    private final WalletService wallet;
+    private final TransferService transfer;
+
+    public static final int MAX_BODY_BYTES = 64 * 1024;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    public static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ObjectMapper om = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Token> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService sweeper;
+
+    // сессия токена и время последнего обращения к ней
+    private static final class Token {
+        final Session session;
+        volatile long lastUsed = System.nanoTime();
+
+        Token(Session session) {
+            this.session = session;
+        }
+    }
+
+    public HttpApiServer(AuthService auth, WalletService wallet, TransferService transfer) {
+        this(auth, wallet, transfer, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public HttpApiServer(AuthService auth, WalletService wallet, TransferService transfer, Duration idleTimeout) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero())
+            throw new IllegalArgumentException("Тайм-аут сессии должен быть > 0.");
+        this.auth = auth;
+        this.wallet = wallet;
+        this.transfer = transfer;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /** Запускает сервер на loopback; порт 0 — любой свободный. Возвращает фактический порт. */
+    public int start(int port) throws IOException {
+        return start(null, port);
+    }
+
+    /** Запускает сервер на адресе {@code host} ({@code null} — loopback). Возвращает фактический порт. */
+    public int start(String host, int port) throws IOException {
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        server = HttpServer.create(new InetSocketAddress(address, port), 1024);
+        executor = ThreadPerTask.newExecutor("http");
+        server.setExecutor(executor);
+
+        long sweepMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 4);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "http-session-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::closeIdleSessions, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+
+        route("/api/register", "POST", false, (s, body) -> {
+            auth.register(string(body, "login"), string(body, "password"));
+            return Map.of("login", string(body, "login"));
+        });
+        route("/api/login", "POST", false, (s, body) -> {
+            Session session = auth.openSession(string(body, "login"), string(body, "password"));
+            String token = newToken();
+            sessions.put(token, new Token(session));
+            return Map.of("token", token);
+        });
+        route("/api/logout", "POST", true, (s, body) -> {
+            sessions.values().removeIf(t -> t.session == s);
+            auth.closeSession(s);
+            return Map.of();
+        });
+        route("/api/categories", "POST", true, (s, body) -> {
+            String name = string(body, "name");
+            s.withWallet(w -> {
+                wallet.addCategory(w, name);
+                return null;
+            });
+            return Map.of("name", name);
+        });
+        route("/api/operations", "POST", true, (s, body) -> {
+            OperationType type = type(string(body, "type"));
+            String category = string(body, "category");
+            long amount = amount(body, "amount");
+            String note = optionalString(body, "note");
+            List<String> alerts = s.withWallet(w -> type == OperationType.INCOME
+                    ? wallet.addIncomeMinor(w, category, amount, note)
+                    : wallet.addExpenseMinor(w, category, amount, note));
+            return Map.of("alerts", alerts);
+        });
+        route("/api/transfer", "POST", true, (s, body) -> {
+            transfer.transferMinor(s.getUser(), string(body, "to"), amount(body, "amount"), optionalString(body, "note"));
+            return Map.of();
+        });
+        route("/api/stats", "GET", true, (s, body) -> s.readWallet(this::stats));
+
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер, дожидается уже принятых запросов (не дольше {@link #SHUTDOWN_TIMEOUT})
+     * и только затем закрывает (с сохранением) все открытые сессии.
+     */
+    @Override
+    public void close() {
+        if (server == null) return;
+        server.stop(1);
+        sweeper.shutdown();
+        executor.shutdown();
+        try {
+            long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) executor.shutdownNow();
+            sweeper.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        sweeper.shutdownNow();
+        for (Token t : sessions.values()) auth.closeSession(t.session);
+        sessions.clear();
+        server = null;
+    }
+
+    // закрывает сессии, простаивавшие дольше тайм-аута; кошелёк сохраняется и отпускается
+    private void closeIdleSessions() {
+        long now = System.nanoTime();
+        sessions.entrySet().removeIf(e -> {
+            if (now - e.getValue().lastUsed < idleTimeoutNanos) return false;
+            try {
+                auth.closeSession(e.getValue().session);
+            } catch (RuntimeException ex) {
+                return false; // не удалось сохранить — попробуем в следующий раз
+            }
+            return true;
+        });
+    }
+
+    private Map<String, Object> stats(Wallet w) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("totalIncome", w.totalIncome());
+        res.put("totalExpense", w.totalExpense());
+        res.put("incomeByCategory", w.incomeByCategory());
+        res.put("expenseByCategory", w.expenseByCategory());
+        res.put("remainingBudget", wallet.remainingBudgetByCategory(w));
+        return res;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Session session, Map<String, Object> body);
+    }
+
+    private void route(String path, String method, boolean authorized, Handler handler) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    reply(exchange, 404, Map.of("error", "Не найдено: " + exchange.getRequestURI().getPath()));
+                    return;
+                }
+                if (!exchange.getRequestMethod().equals(method)) {
+                    reply(exchange, 405, Map.of("error", "Ожидался метод " + method));
+                    return;
+                }
+                Session session = null;
+                if (authorized) {
+                    session = session(exchange);
+                    if (session == null) {
+                        reply(exchange, 401, Map.of("error", "Нужен токен: Authorization: Bearer <token>."));
+                        return;
+                    }
+                }
+                Map<String, Object> body;
+                try {
+                    body = body(exchange);
+                } catch (IllegalArgumentException e) {
+                    reply(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                    return;
+                }
+                if (body == null) {
+                    reply(exchange, 413, Map.of("error", "Тело запроса больше " + MAX_BODY_BYTES + " байт."));
+                    return;
+                }
+                try {
+                    reply(exchange, 200, handler.handle(session, body));
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    reply(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                } catch (RuntimeException e) {
+                    reply(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+                }
+            }
+        });
+    }
+
+    private Session session(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) return null;
+        Token t = sessions.get(header.substring("Bearer ".length()).trim());
+        if (t == null || !t.session.isOpen()) return null;
+        t.lastUsed = System.nanoTime();
+        return t.session;
+    }
+
+    // null — тело больше MAX_BODY_BYTES; дальше лимита не читается
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) return null;
+            if (bytes.length == 0) return Map.of();
+            try {
+                return om.readValue(bytes, Map.class);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Некорректный JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    private void reply(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = om.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String string(Map<String, Object> body, String field) {
+        Object v = body.get(field);
+        if (!(v instanceof String s)) throw new IllegalArgumentException("Нет строкового поля '" + field + "'.");
+        return s;
+    }
+
+    private static String optionalString(Map<String, Object> body, String field) {
+        Object v = body.get(field);
+        if (v == null) return "";
+        if (!(v instanceof String s)) throw new IllegalArgumentException("Поле '" + field + "' должно быть строкой.");
+        return s;
+    }
+
+    // дробные числа тела приходят как BigDecimal (см. om), поэтому сумма переводится в копейки без double
+    private static long amount(Map<String, Object> body, String field) {
+        Object v = body.get(field);
+        if (!(v instanceof Number n)) throw new IllegalArgumentException("Нет числового поля '" + field + "'.");
+        return Money.toMinor(n instanceof BigDecimal d ? d : new BigDecimal(n.toString()));
+    }
+
+    private static OperationType type(String s) {
+        try {
+            return OperationType.valueOf(s.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Тип операции должен быть INCOME или EXPENSE.");
+        }
+    }
+}
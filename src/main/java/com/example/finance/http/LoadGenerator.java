@@ -0,0 +1,147 @@
+package com.example.finance.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный клиент для {@link HttpApiServer}: регистрирует и логинит пользователей,
+ * затем несколько потоков шлют {@code POST /api/operations} заданное время.
+ * В конце печатает RPS и перцентили задержки.
+ *
+ * <pre>
+ * java -cp ... com.example.finance.http.LoadGenerator [url] [пользователей] [потоков] [секунд]
+ * </pre>
+ * По умолчанию: http://localhost:8080, 16 пользователей, 64 потока, 10 секунд.
+ */
+public final class LoadGenerator {
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String url;
+
+    public LoadGenerator(String url) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        System.out.println(new LoadGenerator(url).run(users, threads, Duration.ofSeconds(seconds)));
+    }
+
+    /** Итог прогона. Задержки — в микросекундах. */
+    public record Report(long requests, long errors, Duration elapsed, long p50Micros, long p99Micros, long maxMicros) {
+        public double rps() {
+            return requests * 1e9 / Math.max(1, elapsed.toNanos());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Запросов: %d (ошибок: %d) за %.1f c, RPS: %.0f, p50: %.2f мс, p99: %.2f мс, max: %.2f мс",
+                    requests, errors, elapsed.toNanos() / 1e9, rps(), p50Micros / 1e3, p99Micros / 1e3, maxMicros / 1e3);
+        }
+    }
+
+    public Report run(int users, int threads, Duration duration) throws Exception {
+        if (users <= 0 || threads <= 0) throw new IllegalArgumentException("Число пользователей и потоков должно быть > 0.");
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        String[] tokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            String login = "load-" + run + "-" + i;
+            String creds = "{\"login\":\"" + login + "\",\"password\":\"load\"}";
+            post("/api/register", null, creds);
+            HttpResponse<String> res = post("/api/login", null, creds);
+            Matcher m = TOKEN.matcher(res.body());
+            if (res.statusCode() != 200 || !m.find()) throw new IllegalStateException("Не удалось войти: " + res.body());
+            tokens[i] = m.group(1);
+            post("/api/categories", tokens[i], "{\"name\":\"Нагрузка\"}");
+        }
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+        List<Future<Worker>> futures = new ArrayList<>(threads);
+        ExecutorService executor = ThreadPerTask.newExecutor("load");
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> new Worker().run(tokens, deadline)));
+            }
+            List<Worker> workers = new ArrayList<>(threads);
+            for (Future<Worker> f : futures) workers.add(f.get());
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            for (int i = 0; i < users; i++) post("/api/logout", tokens[i], "");
+            return report(workers, elapsed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Report report(List<Worker> workers, Duration elapsed) {
+        int total = 0;
+        long errors = 0;
+        for (Worker w : workers) {
+            total += w.count;
+            errors += w.errors;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (Worker w : workers) {
+            System.arraycopy(w.latencies, 0, all, pos, w.count);
+            pos += w.count;
+        }
+        Arrays.sort(all);
+        return new Report(total, errors, elapsed, percentile(all, 0.50), percentile(all, 0.99), total == 0 ? 0 : all[total - 1]);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private HttpResponse<String> post(String path, String token, String json) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Поток нагрузки: копит свои задержки без синхронизации, сводятся они в конце. */
+    private final class Worker {
+        long[] latencies = new long[1024];
+        int count;
+        long errors;
+
+        Worker run(String[] tokens, long deadline) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                String token = tokens[rnd.nextInt(tokens.length)];
+                String type = rnd.nextInt(4) == 0 ? "INCOME" : "EXPENSE";
+                String body = "{\"type\":\"" + type + "\",\"category\":\"Нагрузка\",\"amount\":" + (1 + rnd.nextInt(1000)) + "}";
+                long t0 = System.nanoTime();
+                try {
+                    if (post("/api/operations", token, body).statusCode() != 200) errors++;
+                } catch (Exception e) {
+                    errors++;
+                }
+                if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = (System.nanoTime() - t0) / 1000;
+            }
+            return this;
+        }
+    }
+}
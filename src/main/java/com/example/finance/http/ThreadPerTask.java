@@ -0,0 +1,28 @@
+package com.example.finance.http;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель «поток на задачу»: виртуальные потоки, если JVM их поддерживает (Java 21+),
+ * иначе обычные потоки-демоны. Проект собирается под Java 17, поэтому виртуальные
+ * потоки подключаются через рефлексию.
+ */
+final class ThreadPerTask {
+    private ThreadPerTask() {
+    }
+
+    static ExecutorService newExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
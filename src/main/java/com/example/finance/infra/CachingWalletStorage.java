@@ -0,0 +1,296 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.core.services.Metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Кэш кошельков поверх другого {@link WalletStorage} с отложенной записью.
+ *
+ * Загруженные кошельки держатся в памяти в LRU, ограниченном числом кошельков и суммарным
+ * числом операций; пока логин в кэше, кошелёк не читается из хранилища повторно.
+ * {@link #saveWallet} и {@link #walletChanged} только отмечают кошелёк грязным: грязные
+ * кошельки сохраняются фоновым потоком раз в {@code flushIntervalMillis} или сразу, как их
+ * наберётся {@code flushThreshold}. Вытесняемый грязный кошелёк сначала сохраняется.
+ * {@link #saveWallets} пишет сразу, чтобы пакет лёг на диск одной единицей.
+ *
+ * Фоновое сохранение берёт блокировку логина из {@code lockFor} — ту же, под которой
+ * сессии меняют кошелёк, — поэтому не видит кошелёк посреди изменения.
+ *
+ * Неудачное фоновое сохранение оставляет кошелёк грязным, считается в счётчике
+ * {@code storage.walletCache.flushFailures} и пробрасывается из ближайшего {@link #flush()} или {@link #close()}.
+ */
+public class CachingWalletStorage implements WalletStorage, AutoCloseable {
+    private final WalletStorage delegate;
+    private final Function<String, Lock> lockFor;
+    private final int maxWallets;
+    private final long maxOperations;
+    private final int flushThreshold;
+
+    // порядок доступа: первым идёт давно не использованный кошелёк
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private long operations; // под lru
+
+    private final AtomicInteger dirty = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final AtomicReference<RuntimeException> backgroundFailure = new AtomicReference<>();
+
+    private static final Metrics.Counter FLUSH_FAILURES = Metrics.global().counter("storage.walletCache.flushFailures");
+
+    public CachingWalletStorage(WalletStorage delegate, Function<String, Lock> lockFor) {
+        this(delegate, lockFor, 1024, 5_000_000, 1000, 64);
+    }
+
+    public CachingWalletStorage(WalletStorage delegate, Function<String, Lock> lockFor, int maxWallets,
+                                long maxOperations, long flushIntervalMillis, int flushThreshold) {
+        if (maxWallets < 1) throw new IllegalArgumentException("maxWallets должен быть >= 1.");
+        if (maxOperations < 1) throw new IllegalArgumentException("maxOperations должен быть >= 1.");
+        if (flushIntervalMillis < 1) throw new IllegalArgumentException("flushIntervalMillis должен быть >= 1.");
+        if (flushThreshold < 1) throw new IllegalArgumentException("flushThreshold должен быть >= 1.");
+        this.delegate = delegate;
+        this.lockFor = lockFor;
+        this.maxWallets = maxWallets;
+        this.maxOperations = maxOperations;
+        this.flushThreshold = flushThreshold;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wallet-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Wallet loadWallet(String login) {
+        Wallet w = null;
+        while (w == null) {
+            Entry e = entry(login);
+            synchronized (e) {
+                if (e.evicted) continue; // вытеснен между поиском и захватом: берём новую запись
+                if (e.wallet == null) {
+                    e.wallet = delegate.loadWallet(login);
+                    reweigh(e);
+                }
+                w = e.wallet;
+            }
+        }
+        evictIfNeeded();
+        return w;
+    }
+
+    @Override
+    public void saveWallet(String login, Wallet wallet) {
+        markDirty(login, wallet);
+        if (dirty.get() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flushInBackground);
+        }
+        evictIfNeeded();
+    }
+
+    @Override
+    public void walletChanged(String login, Wallet wallet) {
+        saveWallet(login, wallet);
+    }
+
+    @Override
+    public void saveWallets(Map<String, Wallet> wallets) {
+        delegate.saveWallets(wallets);
+        wallets.forEach((login, wallet) -> {
+            while (true) {
+                Entry e = entry(login);
+                synchronized (e) {
+                    if (e.evicted) continue;
+                    e.wallet = wallet;
+                    if (e.dirty) {
+                        e.dirty = false;
+                        dirty.decrementAndGet();
+                    }
+                    reweigh(e);
+                    return;
+                }
+            }
+        });
+        evictIfNeeded();
+    }
+
+    @Override
+    public long storedBytes(String login) {
+        return delegate.storedBytes(login);
+    }
+
+    /**
+     * Сохраняет все грязные кошельки. Ошибка сохранения (или накопившаяся ошибка фонового сохранения)
+     * пробрасывается после попытки сохранить остальные; кошелёк с ошибкой остаётся грязным.
+     */
+    public void flush() {
+        flushQueued.set(false);
+        RuntimeException failure = backgroundFailure.getAndSet(null);
+        for (Entry e : dirtyEntries()) {
+            try {
+                flush(e);
+            } catch (RuntimeException ex) {
+                if (failure == null) failure = ex;
+                else failure.addSuppressed(ex);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            if (delegate instanceof AutoCloseable c) {
+                try {
+                    c.close();
+                } catch (Exception e) {
+                    throw new RuntimeException("Не удалось закрыть хранилище кошельков: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        flushQueued.set(false);
+        for (Entry e : dirtyEntries()) {
+            try {
+                flush(e);
+            } catch (RuntimeException ex) {
+                // кошелёк остаётся грязным, попробуем в следующий раз; ошибку отдаст flush()/close()
+                FLUSH_FAILURES.increment();
+                backgroundFailure.compareAndSet(null, ex);
+            }
+        }
+    }
+
+    private void flush(Entry e) {
+        Lock lock = lockFor.apply(e.login);
+        lock.lock();
+        try {
+            synchronized (e) {
+                if (!e.dirty || e.evicted) return;
+                delegate.saveWallet(e.login, e.wallet);
+                e.dirty = false;
+                dirty.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markDirty(String login, Wallet wallet) {
+        while (true) {
+            Entry e = entry(login);
+            synchronized (e) {
+                if (e.evicted) continue;
+                e.wallet = wallet;
+                if (!e.dirty) {
+                    e.dirty = true;
+                    dirty.incrementAndGet();
+                }
+                reweigh(e);
+                return;
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        List<Entry> victims;
+        synchronized (lru) {
+            if (lru.size() <= maxWallets && operations <= maxOperations) return;
+            victims = new ArrayList<>();
+            long left = operations;
+            int count = lru.size();
+            for (Entry e : lru.values()) {
+                if (count <= maxWallets && left <= maxOperations) break;
+                victims.add(e);
+                left -= e.weight;
+                count--;
+            }
+        }
+        for (Entry e : victims) evict(e);
+    }
+
+    // порядок захвата: блокировка логина -> запись -> lru, как и при фоновом сохранении
+    private void evict(Entry e) {
+        Lock lock = lockFor.apply(e.login);
+        // tryLock повторно входит в блокировку своего потока: кошелёк, с которым этот поток работает, не трогаем
+        if (lock instanceof ReentrantLock rl && rl.isHeldByCurrentThread()) return;
+        if (!lock.tryLock()) return; // логин занят — значит, кошелёк сейчас нужен, вытесним позже
+        try {
+            synchronized (e) {
+                if (e.evicted) return;
+                if (e.dirty) {
+                    delegate.saveWallet(e.login, e.wallet);
+                    e.dirty = false;
+                    dirty.decrementAndGet();
+                }
+                synchronized (lru) {
+                    lru.remove(e.login, e);
+                    operations -= e.weight;
+                }
+                e.evicted = true;
+                e.wallet = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry entry(String login) {
+        synchronized (lru) {
+            return lru.computeIfAbsent(login, Entry::new);
+        }
+    }
+
+    private List<Entry> dirtyEntries() {
+        synchronized (lru) {
+            List<Entry> list = new ArrayList<>();
+            for (Entry e : lru.values()) if (e.dirty) list.add(e);
+            return list;
+        }
+    }
+
+    private void reweigh(Entry e) {
+        int weight = e.wallet == null ? 0 : e.wallet.getOperations().size();
+        synchronized (lru) {
+            operations += weight - e.weight;
+            e.weight = weight;
+        }
+    }
+
+    private static final class Entry {
+        final String login;
+        Wallet wallet;
+        volatile boolean dirty;
+        boolean evicted;
+        int weight;
+
+        Entry(String login) {
+            this.login = login;
+        }
+    }
+}
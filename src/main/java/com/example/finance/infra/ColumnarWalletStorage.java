@@ -0,0 +1,353 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.OperationColumns;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.PeriodicBudget;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Столбцовое хранилище кошельков: {@code <login>.wallet.cols}, читаемый через {@link MappedByteBuffer}.
+ *
+ * Операции лежат отдельными столбцами: суммы (long, минимальные единицы {@link Money}), createdAt (секунды UTC + наносекунды),
+ * тип и признаки null (byte), категория (int-номер в словаре файла), id и заметки (смещения + UTF-8).
+ * Загрузка не создаёт объектов на операцию: кошелёк строится через {@link Wallet#over} поверх
+ * отображённых столбцов, агрегаты считаются одним проходом по ним, а {@code Operation}
+ * создаются только при обращении к {@code getOperations()}.
+ *
+ * Сохранение переписывает файл целиком (через временный файл и атомарную замену).
+ * Файл ограничен 2 ГБ — размером одного отображения. Если файла нет, читается
+ * {@code <login>.wallet.json} старого формата. Лимиты бюджетов тоже хранятся в минимальных единицах.
+ */
+public class ColumnarWalletStorage implements WalletStorage {
+    private static final int MAGIC = 0x46574331; // FWC1
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16 + 8 * 8;
+
+    private static final int TYPE_MASK = 0x0F;
+    private static final int NULL_ID = 0x10;
+    private static final int NULL_NOTE = 0x20;
+
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final BudgetPeriod[] PERIODS = BudgetPeriod.values();
+
+    private final Path dataDir;
+    private final JsonWalletStorage legacy;
+
+    public ColumnarWalletStorage(Path dataDir) {
+        this.dataDir = dataDir;
+        this.legacy = new JsonWalletStorage(dataDir);
+    }
+
+    private Path walletPath(String login) {
+        return dataDir.resolve(login + ".wallet.cols");
+    }
+
+    @Override
+    public Wallet loadWallet(String login) {
+        try {
+            Files.createDirectories(dataDir);
+            Path p = walletPath(login);
+            if (!Files.exists(p)) return legacy.loadWallet(login);
+
+            MappedByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new IOException("Файл кошелька больше 2 ГБ: " + p);
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+
+            MappedColumns columns = new MappedColumns(buf);
+            Wallet w = Wallet.over(columns);
+            columns.readMeta(w);
+            return w;
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось загрузить кошелёк: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long storedBytes(String login) {
+        return JsonWalletStorage.bytesOf(walletPath(login));
+    }
+
+    @Override
+    public void saveWallet(String login, Wallet wallet) {
+        try {
+            Files.createDirectories(dataDir);
+            Path target = walletPath(login);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            write(tmp, wallet);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить кошелёк: " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(Path p, Wallet w) throws IOException {
+        OperationColumns c = w.columns();
+        int n = c.size();
+        long[] offsets = new long[8];
+
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(HEADER_SIZE);
+            CountingOutput out = new CountingOutput(ch, HEADER_SIZE);
+
+            offsets[0] = out.position();
+            for (int row = 0; row < n; row++) out.writeLong(c.amountMinor(row));
+
+            offsets[1] = out.position();
+            for (int row = 0; row < n; row++) out.writeLong(c.createdAtEpochSecond(row));
+
+            offsets[2] = out.position();
+            for (int row = 0; row < n; row++) out.writeInt(c.createdAtNano(row));
+
+            offsets[3] = out.position();
+            Map<String, Integer> dictionary = new HashMap<>();
+            for (int row = 0; row < n; row++) {
+                String cat = c.category(row);
+                out.writeInt(cat == null ? -1 : dictionary.computeIfAbsent(cat, k -> dictionary.size()));
+            }
+
+            offsets[4] = out.position();
+            int idBytes = 0;
+            for (int row = 0; row < n; row++) {
+                out.writeInt(idBytes);
+                idBytes += utf8Length(c.id(row));
+            }
+            out.writeInt(idBytes);
+            int noteBytes = 0;
+            for (int row = 0; row < n; row++) {
+                out.writeInt(noteBytes);
+                noteBytes += utf8Length(c.note(row));
+            }
+            out.writeInt(noteBytes);
+
+            offsets[5] = out.position();
+            for (int row = 0; row < n; row++) writeUtf8(out, c.id(row));
+            for (int row = 0; row < n; row++) writeUtf8(out, c.note(row));
+
+            offsets[6] = out.position();
+            for (int row = 0; row < n; row++) {
+                OperationType t = c.type(row);
+                int flags = t == null ? 0 : t.ordinal() + 1;
+                if (c.id(row) == null) flags |= NULL_ID;
+                if (c.note(row) == null) flags |= NULL_NOTE;
+                out.writeByte(flags);
+            }
+
+            offsets[7] = out.position();
+            String[] names = new String[dictionary.size()];
+            dictionary.forEach((name, id) -> names[id] = name);
+            out.writeInt(names.length);
+            for (String name : names) writeString(out, name);
+            out.writeInt(w.getCategories().size());
+            for (String cat : w.getCategories()) writeString(out, cat);
+            Map<String, Long> limits = w.budgets().limitsMinor();
+            out.writeInt(limits.size());
+            for (var e : limits.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeLong(e.getValue());
+            }
+            // дописано в конец метаданных: файлы без этого блока читаются как раньше
+            out.writeInt(w.getPeriodicBudgets().size());
+            for (var e : w.getPeriodicBudgets().entrySet()) {
+                PeriodicBudget b = e.getValue();
+                writeString(out, e.getKey());
+                out.writeByte(b.period().ordinal());
+                out.writeLong(b.limitMinor());
+                out.writeBoolean(b.rollover());
+                out.writeLong(b.start().toEpochDay());
+            }
+            out.flush();
+
+            if (out.position() > Integer.MAX_VALUE) throw new IOException("Кошелёк не помещается в 2 ГБ.");
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(idBytes);
+            for (long off : offsets) header.putLong(off);
+            header.flip();
+            ch.position(0);
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        }
+    }
+
+    /** Столбцы операций поверх отображённого файла; строки читаются абсолютными get без выделения памяти. */
+    private static final class MappedColumns implements OperationColumns {
+        private final MappedByteBuffer buf;
+        private final int rows;
+        private final int idBytes;
+        private final int amounts, seconds, nanos, categoryIds, idOffsets, noteOffsets, idData, noteData, flags, meta;
+        private final String[] dictionary;
+
+        MappedColumns(MappedByteBuffer buf) throws IOException {
+            this.buf = buf;
+            if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) throw new IOException("Неизвестный формат файла кошелька.");
+            int version = buf.getInt(4);
+            if (version != VERSION) throw new IOException("Неподдерживаемая версия файла кошелька: " + version);
+            rows = buf.getInt(8);
+            idBytes = buf.getInt(12);
+            amounts = offset(0);
+            seconds = offset(1);
+            nanos = offset(2);
+            categoryIds = offset(3);
+            idOffsets = offset(4);
+            noteOffsets = idOffsets + 4 * (rows + 1);
+            idData = offset(5);
+            noteData = idData + idBytes;
+            flags = offset(6);
+
+            int pos = offset(7);
+            dictionary = new String[buf.getInt(pos)];
+            pos += 4;
+            for (int i = 0; i < dictionary.length; i++) {
+                int len = buf.getInt(pos);
+                dictionary[i] = decode(pos + 4, len);
+                pos += 4 + len;
+            }
+            meta = pos;
+        }
+
+        void readMeta(Wallet w) {
+            int pos = meta;
+            int categories = buf.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < categories; i++) {
+                int len = buf.getInt(pos);
+                w.getCategories().add(decode(pos + 4, len));
+                pos += 4 + len;
+            }
+            int budgets = buf.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < budgets; i++) {
+                int len = buf.getInt(pos);
+                String cat = decode(pos + 4, len);
+                pos += 4 + len;
+                w.budgets().setLimitMinor(cat, buf.getLong(pos));
+                pos += 8;
+            }
+            if (pos >= buf.limit()) return;
+            int periodic = buf.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < periodic; i++) {
+                int len = buf.getInt(pos);
+                String cat = decode(pos + 4, len);
+                pos += 4 + len;
+                BudgetPeriod period = PERIODS[buf.get(pos)];
+                long limit = buf.getLong(pos + 1);
+                boolean rollover = buf.get(pos + 9) != 0;
+                LocalDate start = LocalDate.ofEpochDay(buf.getLong(pos + 10));
+                pos += 18;
+                w.periodicBudgets().put(cat, new PeriodicBudget(period, limit, rollover, start));
+            }
+        }
+
+        @Override
+        public int size() { return rows; }
+
+        @Override
+        public String id(int row) {
+            if ((buf.get(flags + row) & NULL_ID) != 0) return null;
+            int start = buf.getInt(idOffsets + 4 * row);
+            return decode(idData + start, buf.getInt(idOffsets + 4 * (row + 1)) - start);
+        }
+
+        @Override
+        public OperationType type(int row) {
+            int t = buf.get(flags + row) & TYPE_MASK;
+            return t == 0 ? null : TYPES[t - 1];
+        }
+
+        @Override
+        public String category(int row) {
+            int id = buf.getInt(categoryIds + 4 * row);
+            return id < 0 ? null : dictionary[id];
+        }
+
+        @Override
+        public long amountMinor(int row) {
+            return buf.getLong(amounts + 8 * row);
+        }
+
+        @Override
+        public long createdAtEpochSecond(int row) { return buf.getLong(seconds + 8 * row); }
+
+        @Override
+        public int createdAtNano(int row) { return buf.getInt(nanos + 4 * row); }
+
+        @Override
+        public String note(int row) {
+            if ((buf.get(flags + row) & NULL_NOTE) != 0) return null;
+            int start = buf.getInt(noteOffsets + 4 * row);
+            return decode(noteData + start, buf.getInt(noteOffsets + 4 * (row + 1)) - start);
+        }
+
+        private int offset(int section) {
+            return (int) buf.getLong(16 + 8 * section);
+        }
+
+        private String decode(int pos, int len) {
+            byte[] bytes = new byte[len];
+            buf.get(pos, bytes, 0, len);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class CountingOutput extends DataOutputStream {
+        private final long start;
+
+        CountingOutput(FileChannel ch, long start) {
+            super(new BufferedOutputStream(Channels.newOutputStream(ch), 64 * 1024));
+            this.start = start;
+        }
+
+        long position() {
+            return start + written;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeUtf8(DataOutputStream out, String s) throws IOException {
+        if (s != null && !s.isEmpty()) out.write(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) return 0;
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) len++;
+            else if (ch < 0x800) len += 2;
+            else if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) len++; // одиночный суррогат кодируется как '?'
+            else len += 3;
+        }
+        return len;
+    }
+}
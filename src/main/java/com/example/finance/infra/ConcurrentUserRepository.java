@@ -0,0 +1,44 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.ports.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Потокобезопасный репозиторий пользователей без общих блокировок (на {@link ConcurrentHashMap}). */
+public class ConcurrentUserRepository implements UserRepository {
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<User> findByLogin(String login) {
+        return Optional.ofNullable(users.get(login));
+    }
+
+    @Override
+    public boolean exists(String login) {
+        return users.containsKey(login);
+    }
+
+    @Override
+    public void save(User user) {
+        users.put(user.getLogin(), user);
+    }
+
+    @Override
+    public boolean saveIfAbsent(User user) {
+        return users.putIfAbsent(user.getLogin(), user) == null;
+    }
+
+    @Override
+    public List<User> findAll() {
+        return new ArrayList<>(users.values());
+    }
+
+    public void replaceAll(List<User> loaded) {
+        users.clear();
+        for (User u : loaded) users.put(u.getLogin(), u);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.services.Metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Metrics} в JMX как {@code com.example.finance:type=Metrics}: у каждой гистограммы
+ * атрибуты {@code <имя>.count|mean|p50|p99|p999|max} (время — в микросекундах), у счётчика —
+ * атрибут с его именем; операция {@code report} возвращает текстовый отчёт, {@code dump(file)}
+ * пишет его в файл. Набор атрибутов читается заново при каждом запросе, так что метрики,
+ * появившиеся после регистрации, тоже видны.
+ */
+public class JmxMetrics implements DynamicMBean {
+    public static final String NAME = "com.example.finance:type=Metrics";
+
+    private final Metrics metrics;
+
+    public JmxMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Регистрирует метрики в платформенном MBean-сервере; повторная регистрация ничего не делает. */
+    public static void register(Metrics metrics) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new JmxMetrics(metrics), new ObjectName(NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // уже зарегистрированы
+        } catch (JMException e) {
+            throw new RuntimeException("Не удалось зарегистрировать метрики в JMX: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = values().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = values();
+        AttributeList res = new AttributeList();
+        for (String a : attributes) {
+            Object v = values.get(a);
+            if (v != null) res.add(new Attribute(a, v));
+        }
+        return res;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Метрики только для чтения: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    // по контракту DynamicMBean: неизвестная операция или сигнатура — ReflectionException,
+    // ошибка самой операции — MBeanException, а не исключение времени выполнения
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+        try {
+            return switch (actionName) {
+                case "report" -> metrics.report();
+                case "dump" -> {
+                    if (params == null || params.length != 1 || !(params[0] instanceof String path))
+                        throw new ReflectionException(new NoSuchMethodException(actionName + Arrays.toString(signature)));
+                    metrics.dump(Path.of(path));
+                    yield null;
+                }
+                default -> throw new ReflectionException(new NoSuchMethodException(actionName));
+            };
+        } catch (RuntimeException e) {
+            throw new MBeanException(e, "Операция " + actionName + " не выполнена: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        values().forEach((name, v) -> attrs.add(new MBeanAttributeInfo(name, v.getClass().getName(), name,
+                true, false, false)));
+        MBeanOperationInfo[] ops = {
+                new MBeanOperationInfo("report", "Текстовый отчёт", new MBeanParameterInfo[0],
+                        String.class.getName(), MBeanOperationInfo.INFO),
+                new MBeanOperationInfo("dump", "Записать отчёт в файл", new MBeanParameterInfo[]{
+                        new MBeanParameterInfo("file", String.class.getName(), "Путь к файлу")},
+                        void.class.getName(), MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Метрики finance-cli",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, ops, null);
+    }
+
+    private Map<String, Object> values() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        for (Metrics.Snapshot s : metrics.histograms()) {
+            boolean time = s.unit() == Metrics.Unit.NANOS;
+            res.put(s.name() + ".count", s.count());
+            res.put(s.name() + ".mean", scale(time, s.mean()));
+            res.put(s.name() + ".p50", scale(time, s.p50()));
+            res.put(s.name() + ".p99", scale(time, s.p99()));
+            res.put(s.name() + ".p999", scale(time, s.p999()));
+            res.put(s.name() + ".max", scale(time, s.max()));
+        }
+        res.putAll(metrics.counters());
+        return res;
+    }
+
+    private static double scale(boolean micros, double value) {
+        return micros ? value / 1000.0 : value;
+    }
+}
@@ -0,0 +1,764 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.PeriodicBudget;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Хранилище кошельков в виде снимка и журнала изменений на пользователя:
+ * {@code <login>.wallet.snapshot} и {@code <login>.wallet.journal}.
+ *
+ * Сохранение дописывает в журнал только новые операции и изменения категорий/бюджетов,
+ * накопленные с прошлого сохранения, поэтому стоит O(дельты), а не O(истории).
+ * fsync выполняется пачками: после {@code syncBatch} записей или {@code syncIntervalMillis}
+ * с прошлого fsync, а также в {@link #flush()} и {@link #close()}.
+ * Когда в журнале набирается {@code compactThreshold} записей, кошелёк целиком пишется
+ * в новый снимок, а журнал начинается заново. Загрузка — снимок плюс хвост журнала.
+ * Суммы операций и лимиты бюджетов в записях — {@code long} в минимальных единицах (копейках).
+ *
+ * Если дельту нельзя выразить дописыванием (операции удалены/изменены или сохраняется
+ * другой экземпляр кошелька), сохранение сразу пишет снимок.
+ * Кошельки из старого формата {@code <login>.wallet.json} читаются при первой загрузке
+ * и переносятся в журнал при первом сохранении.
+ * С {@code packedWallets} загруженные кошельки хранят операции в упакованных столбцах
+ * ({@link Wallet#packed()}).
+ *
+ * {@link #saveWallets} сохраняет несколько кошельков атомарно: дельты (или снимки) всех
+ * кошельков сначала пишутся одним файлом {@code wallets-<n>.commit} с CRC и атомарным
+ * переименованием, затем раскладываются по журналам, после чего файл удаляется.
+ * Оставшийся после сбоя commit-файл доигрывается при создании хранилища: журналы
+ * обрезаются до записанной позиции и дописываются заново, поэтому повтор безопасен.
+ */
+public class JournalWalletStorage implements WalletStorage, AutoCloseable {
+    private static final int SNAPSHOT_MAGIC = 0x46575331; // FWS1
+    private static final int JOURNAL_MAGIC = 0x46574A31;  // FWJ1
+    private static final int COMMIT_MAGIC = 0x46574231;   // FWB1
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final byte OPERATION = 1;
+    private static final byte CATEGORY_ADDED = 2;
+    private static final byte CATEGORY_REMOVED = 3;
+    private static final byte BUDGET_SET = 4;
+    private static final byte BUDGET_REMOVED = 5;
+    private static final byte PERIODIC_BUDGET_SET = 6;
+    private static final byte PERIODIC_BUDGET_REMOVED = 7;
+
+    private static final byte COMMIT_APPEND = 0;
+    private static final byte COMMIT_SNAPSHOT = 1;
+
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final BudgetPeriod[] PERIODS = BudgetPeriod.values();
+
+    private final Path dataDir;
+    private final int syncBatch;
+    private final long syncIntervalMillis;
+    private final int compactThreshold;
+    private final boolean packedWallets;
+    private final JsonWalletStorage legacy;
+    private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+    private final AtomicLong commitSequence = new AtomicLong();
+
+    public JournalWalletStorage(Path dataDir) {
+        this(dataDir, false);
+    }
+
+    public JournalWalletStorage(Path dataDir, boolean packedWallets) {
+        this(dataDir, 64, 1000, 10_000, packedWallets);
+    }
+
+    public JournalWalletStorage(Path dataDir, int syncBatch, long syncIntervalMillis, int compactThreshold) {
+        this(dataDir, syncBatch, syncIntervalMillis, compactThreshold, false);
+    }
+
+    public JournalWalletStorage(Path dataDir, int syncBatch, long syncIntervalMillis, int compactThreshold,
+                                boolean packedWallets) {
+        if (syncBatch < 1) throw new IllegalArgumentException("syncBatch должен быть >= 1.");
+        if (syncIntervalMillis < 0) throw new IllegalArgumentException("syncIntervalMillis должен быть >= 0.");
+        if (compactThreshold < 1) throw new IllegalArgumentException("compactThreshold должен быть >= 1.");
+        this.dataDir = dataDir;
+        this.syncBatch = syncBatch;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.compactThreshold = compactThreshold;
+        this.packedWallets = packedWallets;
+        this.legacy = new JsonWalletStorage(dataDir);
+        recoverCommits();
+    }
+
+    @Override
+    public Wallet loadWallet(String login) {
+        Journal j = journals.computeIfAbsent(login, Journal::new);
+        synchronized (j) {
+            try {
+                return j.load();
+            } catch (IOException e) {
+                throw new RuntimeException("Не удалось загрузить кошелёк: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void saveWallet(String login, Wallet wallet) {
+        Journal j = journals.computeIfAbsent(login, Journal::new);
+        synchronized (j) {
+            try {
+                j.save(wallet);
+            } catch (IOException e) {
+                throw new RuntimeException("Не удалось сохранить кошелёк: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public long storedBytes(String login) {
+        return JsonWalletStorage.bytesOf(dataDir.resolve(login + ".wallet.snapshot"),
+                dataDir.resolve(login + ".wallet.journal"));
+    }
+
+    @Override
+    public void saveWallets(Map<String, Wallet> wallets) {
+        // журналы захватываются в порядке логинов, чтобы встречные пакеты не блокировали друг друга
+        List<Journal> locked = new ArrayList<>();
+        for (String login : new TreeSet<>(wallets.keySet())) locked.add(journals.computeIfAbsent(login, Journal::new));
+        try {
+            commitLocked(locked, 0, wallets);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить кошельки: " + e.getMessage(), e);
+        }
+    }
+
+    private void commitLocked(List<Journal> locked, int i, Map<String, Wallet> wallets) throws IOException {
+        if (i < locked.size()) {
+            synchronized (locked.get(i)) {
+                commitLocked(locked, i + 1, wallets);
+            }
+            return;
+        }
+
+        List<CommitEntry> entries = new ArrayList<>();
+        for (Journal j : locked) {
+            CommitEntry e = j.prepare(wallets.get(j.login));
+            if (e != null) entries.add(e);
+        }
+        if (entries.isEmpty()) return;
+
+        Path commit = dataDir.resolve("wallets-" + commitSequence.incrementAndGet() + ".commit");
+        Path tmp = commit.resolveSibling(commit.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(entries.size());
+            for (CommitEntry e : entries) {
+                writeString(out, e.login);
+                out.writeByte(e.mode);
+                out.writeLong(e.generation);
+                out.writeLong(e.offset);
+                out.writeInt(e.bytes.length);
+                out.write(e.bytes);
+            }
+            byte[] payload = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer buf = ByteBuffer.allocate(4 + payload.length + 4)
+                    .putInt(COMMIT_MAGIC).put(payload).putInt((int) crc.getValue());
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, commit, StandardCopyOption.ATOMIC_MOVE);
+
+        for (CommitEntry e : entries) journals.get(e.login).apply(e);
+        Files.delete(commit);
+
+        for (CommitEntry e : entries) journals.get(e.login).compactIfNeeded();
+    }
+
+    private void recoverCommits() {
+        if (!Files.isDirectory(dataDir)) return;
+        try (DirectoryStream<Path> commits = Files.newDirectoryStream(dataDir, "wallets-*.commit")) {
+            for (Path commit : commits) {
+                for (CommitEntry e : readCommit(commit)) journals.computeIfAbsent(e.login, Journal::new).redo(e);
+                Files.delete(commit);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось восстановить незавершённое сохранение кошельков: " + e.getMessage(), e);
+        }
+        // недописанный commit-файл означает, что пакет не был зафиксирован
+        try (DirectoryStream<Path> partial = Files.newDirectoryStream(dataDir, "wallets-*.commit.tmp")) {
+            for (Path tmp : partial) Files.delete(tmp);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось восстановить незавершённое сохранение кошельков: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<CommitEntry> readCommit(Path commit) throws IOException {
+        byte[] all = Files.readAllBytes(commit);
+        // commit-файл появляется атомарным переименованием, так что повреждённым он быть не должен
+        if (all.length < 8 || ByteBuffer.wrap(all).getInt() != COMMIT_MAGIC)
+            throw new IOException("Неизвестный формат commit-файла: " + commit);
+        CRC32 crc = new CRC32();
+        crc.update(all, 4, all.length - 8);
+        if ((int) crc.getValue() != ByteBuffer.wrap(all, all.length - 4, 4).getInt())
+            throw new IOException("Повреждён commit-файл: " + commit);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(all, 4, all.length - 8));
+        int n = in.readInt();
+        List<CommitEntry> entries = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String login = readString(in);
+            byte mode = in.readByte();
+            long generation = in.readLong();
+            long offset = in.readLong();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            entries.add(new CommitEntry(login, mode, generation, offset, bytes, 0, null));
+        }
+        return entries;
+    }
+
+    /** Принудительно сбрасывает на диск все журналы с несинхронизированными записями. */
+    public void flush() {
+        for (Journal j : journals.values()) {
+            synchronized (j) {
+                try {
+                    j.sync();
+                } catch (IOException e) {
+                    throw new RuntimeException("Не удалось сбросить журнал кошелька: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        for (Journal j : journals.values()) {
+            synchronized (j) {
+                j.closeChannel();
+            }
+        }
+        journals.clear();
+    }
+
+    private final class Journal {
+        private final String login;
+        private final Path snapshotPath;
+        private final Path journalPath;
+
+        private FileChannel channel;
+        private long generation;
+        private int journalRecords;
+        private int unsyncedRecords;
+        private long lastSyncMillis = System.currentTimeMillis();
+
+        // что уже лежит на диске для последнего загруженного/сохранённого экземпляра кошелька
+        private Wallet wallet;
+        private long historyVersion;
+        private int persistedOperations;
+        private Set<String> persistedCategories = new HashSet<>();
+        private Map<String, Long> persistedBudgets = new HashMap<>();
+        private Map<String, PeriodicBudget> persistedPeriodicBudgets = Map.of();
+
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        private final ByteArrayOutputStream batch = new ByteArrayOutputStream(4096);
+        private final CRC32 crc = new CRC32();
+
+        Journal(String login) {
+            this.login = login;
+            this.snapshotPath = dataDir.resolve(login + ".wallet.snapshot");
+            this.journalPath = dataDir.resolve(login + ".wallet.journal");
+        }
+
+        Wallet load() throws IOException {
+            Files.createDirectories(dataDir);
+            closeChannel();
+
+            boolean hasSnapshot = Files.exists(snapshotPath);
+            boolean hasJournal = Files.exists(journalPath);
+
+            if (!hasSnapshot && !hasJournal) {
+                // журнал создаст первое сохранение, до него JSON остаётся источником данных
+                Wallet w = legacy.loadWallet(login);
+                if (packedWallets) {
+                    Wallet packed = Wallet.packed();
+                    packed.setOperations(w.getOperations());
+                    packed.setCategories(w.getCategories());
+                    w.budgets().limitsMinor().forEach(packed.budgets()::setLimitMinor);
+                    packed.setPeriodicBudgets(w.getPeriodicBudgets());
+                    w = packed;
+                }
+                generation = 0;
+                journalRecords = 0;
+                remember(null);
+                wallet = w;
+                return w;
+            }
+
+            Wallet w = packedWallets ? Wallet.packed() : new Wallet();
+            generation = 0;
+            if (hasSnapshot) {
+                try (DataInputStream in = input(snapshotPath)) {
+                    if (in.readInt() != SNAPSHOT_MAGIC)
+                        throw new IOException("Неизвестный формат снимка: " + snapshotPath);
+                    generation = in.readLong();
+                    replay(in, w, true);
+                }
+            }
+
+            journalRecords = 0;
+            Replay tail = null;
+            if (hasJournal) {
+                try (DataInputStream in = input(journalPath)) {
+                    // журнал от более старого поколения уже вошёл в снимок и игнорируется
+                    if (in.readInt() == JOURNAL_MAGIC && in.readLong() >= generation) tail = replay(in, w, false);
+                } catch (EOFException e) {
+                    // недописанный заголовок: журнал пуст
+                }
+            }
+
+            if (tail != null) {
+                journalRecords = tail.records;
+                truncateTail(tail.validBytes);
+            }
+            openJournal(tail == null);
+            remember(w);
+            return w;
+        }
+
+        void save(Wallet w) throws IOException {
+            ensureOpen();
+            int records = delta(w);
+            if (records < 0) {
+                compact(w);
+                return;
+            }
+            if (records == 0) return;
+
+            ByteBuffer buf = ByteBuffer.wrap(batch.toByteArray());
+            while (buf.hasRemaining()) channel.write(buf);
+            journalRecords += records;
+            unsyncedRecords += records;
+            remember(w);
+
+            if (journalRecords >= compactThreshold) compact(w);
+            else if (unsyncedRecords >= syncBatch || System.currentTimeMillis() - lastSyncMillis >= syncIntervalMillis) sync();
+        }
+
+        /** Готовит запись пакетного сохранения: дельту для дописывания или снимок целиком; null — менять нечего. */
+        CommitEntry prepare(Wallet w) throws IOException {
+            ensureOpen();
+            int records = delta(w);
+            if (records == 0) return null;
+            if (records > 0) return new CommitEntry(login, COMMIT_APPEND, generation, channel.position(), batch.toByteArray(), records, w);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+            writeSnapshotRecords(w, body);
+            return new CommitEntry(login, COMMIT_SNAPSHOT, generation, 0, body.toByteArray(), 0, w);
+        }
+
+        /** Раскладывает подготовленную запись после того, как commit-файл лёг на диск. */
+        void apply(CommitEntry e) throws IOException {
+            if (e.mode == COMMIT_APPEND) {
+                ByteBuffer buf = ByteBuffer.wrap(e.bytes);
+                while (buf.hasRemaining()) channel.write(buf);
+                channel.force(false);
+                journalRecords += e.records;
+                unsyncedRecords = 0;
+                lastSyncMillis = System.currentTimeMillis();
+                remember(e.wallet);
+            } else {
+                replaceSnapshot(generation + 1, out -> out.write(e.bytes));
+                closeChannel();
+                generation++;
+                openJournal(true);
+                journalRecords = 0;
+                remember(e.wallet);
+            }
+        }
+
+        void compactIfNeeded() throws IOException {
+            if (journalRecords >= compactThreshold) compact(wallet);
+        }
+
+        /** Доигрывает запись commit-файла после сбоя; повторный вызов даёт тот же результат. */
+        void redo(CommitEntry e) throws IOException {
+            // снимок следующего поколения уже на месте: запись была разложена до сбоя
+            if (snapshotGeneration() > e.generation) return;
+            if (e.mode == COMMIT_SNAPSHOT) {
+                replaceSnapshot(e.generation + 1, out -> out.write(e.bytes));
+                return;
+            }
+
+            try (FileChannel ch = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(12);
+                ch.read(header, 0);
+                header.flip();
+                if (header.remaining() < 12 || header.getInt() != JOURNAL_MAGIC || header.getLong() != e.generation)
+                    throw new IOException("Журнал " + journalPath + " не соответствует commit-файлу.");
+                ch.truncate(e.offset);
+                ByteBuffer buf = ByteBuffer.wrap(e.bytes);
+                long pos = e.offset;
+                while (buf.hasRemaining()) pos += ch.write(buf, pos);
+                ch.force(true);
+            }
+        }
+
+        private long snapshotGeneration() throws IOException {
+            if (!Files.exists(snapshotPath)) return 0;
+            try (DataInputStream in = input(snapshotPath)) {
+                return in.readInt() == SNAPSHOT_MAGIC ? in.readLong() : 0;
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (channel != null) return;
+            Files.createDirectories(dataDir);
+            openJournal(!Files.exists(journalPath));
+        }
+
+        // кладёт в batch дельту с прошлого сохранения и возвращает число записей;
+        // -1, если дельту нельзя выразить дописыванием
+        private int delta(Wallet w) throws IOException {
+            if (w != wallet || w.historyVersion() != historyVersion || w.getOperations().size() < persistedOperations) {
+                return -1;
+            }
+
+            batch.reset();
+            int records = 0;
+
+            List<Operation> ops = w.getOperations();
+            for (int i = persistedOperations; i < ops.size(); i++, records++) writeOperation(ops.get(i));
+
+            for (String c : w.getCategories()) {
+                if (!persistedCategories.contains(c)) {
+                    writeStringRecord(CATEGORY_ADDED, c);
+                    records++;
+                }
+            }
+            for (String c : persistedCategories) {
+                if (!w.getCategories().contains(c)) {
+                    writeStringRecord(CATEGORY_REMOVED, c);
+                    records++;
+                }
+            }
+
+            Map<String, Long> limits = w.budgets().limitsMinor();
+            for (var e : limits.entrySet()) {
+                if (!Objects.equals(persistedBudgets.get(e.getKey()), e.getValue())) {
+                    writeBudget(e.getKey(), e.getValue());
+                    records++;
+                }
+            }
+            for (String c : persistedBudgets.keySet()) {
+                if (!limits.containsKey(c)) {
+                    writeStringRecord(BUDGET_REMOVED, c);
+                    records++;
+                }
+            }
+
+            Map<String, PeriodicBudget> periodic = w.getPeriodicBudgets();
+            for (var e : periodic.entrySet()) {
+                if (!e.getValue().equals(persistedPeriodicBudgets.get(e.getKey()))) {
+                    writePeriodicBudget(e.getKey(), e.getValue());
+                    records++;
+                }
+            }
+            for (String c : persistedPeriodicBudgets.keySet()) {
+                if (!periodic.containsKey(c)) {
+                    writeStringRecord(PERIODIC_BUDGET_REMOVED, c);
+                    records++;
+                }
+            }
+
+            return records;
+        }
+
+        void sync() throws IOException {
+            if (channel == null || unsyncedRecords == 0) return;
+            channel.force(false);
+            unsyncedRecords = 0;
+            lastSyncMillis = System.currentTimeMillis();
+        }
+
+        void closeChannel() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // закрываем при выходе или перед перечитыванием, данные уже сброшены в sync
+            }
+            channel = null;
+        }
+
+        private void compact(Wallet w) throws IOException {
+            long next = generation + 1;
+            replaceSnapshot(next, out -> writeSnapshotRecords(w, out));
+
+            // после переноса снимка старый журнал (поколение generation) при загрузке игнорируется
+            closeChannel();
+            generation = next;
+            openJournal(true);
+            journalRecords = 0;
+            remember(w);
+        }
+
+        private void replaceSnapshot(long next, SnapshotBody body) throws IOException {
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 64 * 1024));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(next);
+                body.writeTo(out);
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void writeSnapshotRecords(Wallet w, OutputStream out) throws IOException {
+            for (Operation o : w.getOperations()) {
+                batch.reset();
+                writeOperation(o);
+                batch.writeTo(out);
+            }
+            for (String c : w.getCategories()) {
+                batch.reset();
+                writeStringRecord(CATEGORY_ADDED, c);
+                batch.writeTo(out);
+            }
+            for (var e : w.budgets().limitsMinor().entrySet()) {
+                batch.reset();
+                writeBudget(e.getKey(), e.getValue());
+                batch.writeTo(out);
+            }
+            for (var e : w.getPeriodicBudgets().entrySet()) {
+                batch.reset();
+                writePeriodicBudget(e.getKey(), e.getValue());
+                batch.writeTo(out);
+            }
+        }
+
+        private void openJournal(boolean fresh) throws IOException {
+            if (fresh) {
+                channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                ByteBuffer header = ByteBuffer.allocate(12).putInt(JOURNAL_MAGIC).putLong(generation);
+                header.flip();
+                while (header.hasRemaining()) channel.write(header);
+                channel.force(true);
+            } else {
+                channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+            }
+            channel.position(channel.size());
+            unsyncedRecords = 0;
+            lastSyncMillis = System.currentTimeMillis();
+        }
+
+        private void truncateTail(long validBytes) throws IOException {
+            long size = 12 + validBytes;
+            if (Files.size(journalPath) <= size) return;
+            // хвост после сбоя посреди записи отбрасываем
+            try (FileChannel ch = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                ch.truncate(size);
+                ch.force(true);
+            }
+        }
+
+        private void remember(Wallet w) {
+            wallet = w;
+            if (w == null) {
+                historyVersion = 0;
+                persistedOperations = 0;
+                persistedCategories = new HashSet<>();
+                persistedBudgets = new HashMap<>();
+                persistedPeriodicBudgets = Map.of();
+                return;
+            }
+            historyVersion = w.historyVersion();
+            persistedOperations = w.getOperations().size();
+            persistedCategories = new HashSet<>(w.getCategories());
+            persistedBudgets = w.budgets().limitsMinor();
+            persistedPeriodicBudgets = w.getPeriodicBudgets();
+        }
+
+        private void writeOperation(Operation o) throws IOException {
+            DataOutputStream out = begin(OPERATION);
+            writeString(out, o.getId());
+            out.writeByte(o.getType() == null ? -1 : o.getType().ordinal());
+            writeString(out, o.getCategory());
+            out.writeLong(o.getAmountMinor());
+            LocalDateTime t = o.getCreatedAt();
+            out.writeBoolean(t != null);
+            if (t != null) {
+                out.writeLong(t.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(t.getNano());
+            }
+            writeString(out, o.getNote());
+            end();
+        }
+
+        private void writeStringRecord(byte kind, String value) throws IOException {
+            writeString(begin(kind), value);
+            end();
+        }
+
+        private void writeBudget(String category, long limit) throws IOException {
+            DataOutputStream out = begin(BUDGET_SET);
+            writeString(out, category);
+            out.writeLong(limit);
+            end();
+        }
+
+        private void writePeriodicBudget(String category, PeriodicBudget b) throws IOException {
+            DataOutputStream out = begin(PERIODIC_BUDGET_SET);
+            writeString(out, category);
+            out.writeByte(b.period().ordinal());
+            out.writeLong(b.limitMinor());
+            out.writeBoolean(b.rollover());
+            out.writeLong(b.start().toEpochDay());
+            end();
+        }
+
+        private DataOutputStream begin(byte kind) {
+            record.reset();
+            record.write(kind);
+            return new DataOutputStream(record);
+        }
+
+        // запись: [длина][тип + данные][crc32]
+        private void end() throws IOException {
+            crc.reset();
+            byte[] bytes = record.toByteArray();
+            crc.update(bytes);
+            DataOutputStream out = new DataOutputStream(batch);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+        }
+
+        // оборванным может быть только хвост журнала: снимок пишется во временный файл и заменяется
+        // атомарно, поэтому снимок, не прочитанный до конца, — ошибка, а не повод отбросить остаток
+        private Replay replay(DataInputStream in, Wallet w, boolean snapshot) throws IOException {
+            Replay r = new Replay();
+            while (true) {
+                int first = in.read();
+                if (first < 0) break;
+                byte[] bytes = readRecord(in, first);
+                if (bytes == null) {
+                    if (snapshot) throw new IOException("Снимок кошелька " + login + " повреждён после записи " + r.records + ".");
+                    break;
+                }
+                apply(bytes, w);
+                r.records++;
+                r.validBytes += 8 + bytes.length;
+            }
+            return r;
+        }
+
+        // запись после первого байта длины; null — длина вне границ, запись оборвана или не сошлась crc
+        private byte[] readRecord(DataInputStream in, int first) throws IOException {
+            try {
+                int len = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+                if (len <= 0 || len > MAX_RECORD_SIZE) return null;
+                byte[] bytes = new byte[len];
+                in.readFully(bytes);
+                int expected = in.readInt();
+                crc.reset();
+                crc.update(bytes);
+                return (int) crc.getValue() == expected ? bytes : null;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        private void apply(byte[] bytes, Wallet w) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte kind = in.readByte();
+            switch (kind) {
+                case OPERATION -> {
+                    String id = readString(in);
+                    byte type = in.readByte();
+                    String category = readString(in);
+                    long amount = in.readLong();
+                    LocalDateTime createdAt = null;
+                    if (in.readBoolean()) createdAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                    String note = readString(in);
+                    w.getOperations().add(Operation.ofMinor(id, type < 0 ? null : TYPES[type], category, amount, createdAt, note));
+                }
+                case CATEGORY_ADDED -> w.getCategories().add(readString(in));
+                case CATEGORY_REMOVED -> w.getCategories().remove(readString(in));
+                case BUDGET_SET -> w.budgets().setLimitMinor(readString(in), in.readLong());
+                case BUDGET_REMOVED -> w.getBudgetsByCategory().remove(readString(in));
+                case PERIODIC_BUDGET_SET -> {
+                    String category = readString(in);
+                    BudgetPeriod period = PERIODS[in.readByte()];
+                    long limit = in.readLong();
+                    boolean rollover = in.readBoolean();
+                    LocalDate start = LocalDate.ofEpochDay(in.readLong());
+                    w.periodicBudgets().put(category, new PeriodicBudget(period, limit, rollover, start));
+                }
+                case PERIODIC_BUDGET_REMOVED -> w.periodicBudgets().remove(readString(in));
+                default -> throw new IOException("Неизвестная запись журнала кошелька " + login + ": " + kind);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SnapshotBody {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // одна запись commit-файла; records и wallet нужны только в памяти для раскладки
+    private record CommitEntry(String login, byte mode, long generation, long offset, byte[] bytes,
+                               int records, Wallet wallet) {
+    }
+
+    private static final class Replay {
+        int records;
+        long validBytes;
+    }
+
+    private static DataInputStream input(Path p) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(p), 64 * 1024));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
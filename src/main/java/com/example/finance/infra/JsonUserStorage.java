@@ -2,28 +2,47 @@ package com.example.finance.infra;
 
 import com.example.finance.core.model.User;
 import com.example.finance.core.ports.UserStorage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Пользователи в одном JSON-массиве. Читается и пишется потоково ({@link JsonParser}/{@link JsonGenerator}),
+ * с {@code compact} — без отступов.
+ */
 public class JsonUserStorage implements UserStorage {
     private final Path path;
-    private final ObjectMapper om = new ObjectMapper();
+    private final boolean compact;
+    private final JsonFactory json = new JsonFactory();
 
     public JsonUserStorage(Path path) {
+        this(path, false);
+    }
+
+    public JsonUserStorage(Path path, boolean compact) {
         this.path = path;
+        this.compact = compact;
     }
 
     @Override
     public List<User> loadAll() {
         try {
             if (!Files.exists(path)) return new ArrayList<>();
-            User[] arr = om.readValue(path.toFile(), User[].class);
-            return new ArrayList<>(Arrays.asList(arr));
+            try (JsonParser in = json.createParser(path.toFile())) {
+                List<User> users = new ArrayList<>();
+                if (in.nextToken() != JsonToken.START_ARRAY) return users;
+                while (in.nextToken() == JsonToken.START_OBJECT) users.add(readUser(in));
+                return users;
+            }
         } catch (Exception e) {
             return new ArrayList<>();
         }
@@ -33,9 +52,38 @@ public class JsonUserStorage implements UserStorage {
     public void saveAll(List<User> users) {
         try {
             Files.createDirectories(path.getParent() == null ? Path.of(".") : path.getParent());
-            om.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), users);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (JsonGenerator out = json.createGenerator(tmp.toFile(), JsonEncoding.UTF8)) {
+                if (!compact) out.useDefaultPrettyPrinter();
+                out.writeStartArray();
+                for (User u : users) writeUser(out, u);
+                out.writeEndArray();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (Exception e) {
             throw new RuntimeException("Не удалось сохранить пользователей: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    private static User readUser(JsonParser in) throws IOException {
+        User u = new User();
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+            String field = in.currentName();
+            JsonToken value = in.nextToken();
+            String text = value == JsonToken.VALUE_NULL ? null : in.getValueAsString();
+            switch (field) {
+                case "login" -> u.setLogin(text);
+                case "passwordHash" -> u.setPasswordHash(text);
+                default -> in.skipChildren();
+            }
+        }
+        return u;
+    }
+
+    private static void writeUser(JsonGenerator out, User u) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("login", u.getLogin());
+        out.writeStringField("passwordHash", u.getPasswordHash());
+        out.writeEndObject();
+    }
+}
@@ -1,20 +1,64 @@
 package com.example.finance.infra;
 
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Money;
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationColumns;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.PeriodicBudget;
 import com.example.finance.core.model.Wallet;
 import com.example.finance.core.ports.WalletStorage;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
 
+/**
+ * Кошельки в {@code <login>.wallet.json}. Чтение и запись идут потоково через
+ * {@link JsonParser}/{@link JsonGenerator}: операции по одной попадают в кошелёк (и его агрегаты)
+ * и по одной пишутся из столбцов кошелька, без дерева JSON и промежуточных коллекций.
+ * Формат тот же, что у прежней сериализации через ObjectMapper (createdAt — массив чисел,
+ * как у JavaTimeModule); при чтении понимается и строка ISO-8601.
+ * С {@code compact} файл пишется без отступов и переводов строк.
+ *
+ * Потоковое чтение не держит в памяти ни файл, ни дерево, но сам кошелёк целиком живёт в памяти:
+ * при чтении каждая операция сразу попадает в его столбцы. С {@code packedWallets} это упакованные
+ * примитивные столбцы ({@link Wallet#packed()}, порядка 40 байт на операцию вместо объекта с тремя
+ * строками), но объём памяти всё равно растёт с числом операций.
+ *
+ * Нечитаемый файл (обрезанный, с неверным токеном или суммой) — ошибка, а не пустой кошелёк:
+ * иначе пустой кошелёк при следующем сохранении записался бы поверх данных пользователя.
+ */
 public class JsonWalletStorage implements WalletStorage {
+    private static final OperationType[] TYPES = OperationType.values();
+
     private final Path dataDir;
-    private final ObjectMapper om = new ObjectMapper();
+    private final boolean compact;
+    private final boolean packedWallets;
+    private final JsonFactory json = new JsonFactory();
 
     public JsonWalletStorage(Path dataDir) {
+        this(dataDir, false);
+    }
+
+    public JsonWalletStorage(Path dataDir, boolean compact) {
+        this(dataDir, compact, false);
+    }
+
+    public JsonWalletStorage(Path dataDir, boolean compact, boolean packedWallets) {
         this.dataDir = dataDir;
-        om.registerModule(new JavaTimeModule());
+        this.compact = compact;
+        this.packedWallets = packedWallets;
     }
 
     private Path walletPath(String login) {
@@ -26,10 +70,12 @@ public class JsonWalletStorage implements WalletStorage {
         try {
             Files.createDirectories(dataDir);
             Path p = walletPath(login);
-            if (!Files.exists(p)) return new Wallet();
-            return om.readValue(p.toFile(), Wallet.class);
+            if (!Files.exists(p)) return newWallet();
+            try (JsonParser in = json.createParser(p.toFile())) {
+                return readWallet(in, newWallet());
+            }
         } catch (Exception e) {
-            return new Wallet();
+            throw new RuntimeException("Не удалось прочитать кошелёк " + login + ": " + e.getMessage(), e);
         }
     }
 
@@ -37,9 +83,217 @@ public class JsonWalletStorage implements WalletStorage {
     public void saveWallet(String login, Wallet wallet) {
         try {
             Files.createDirectories(dataDir);
-            om.writerWithDefaultPrettyPrinter().writeValue(walletPath(login).toFile(), wallet);
+            Path target = walletPath(login);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (JsonGenerator out = json.createGenerator(tmp.toFile(), JsonEncoding.UTF8)) {
+                if (!compact) out.useDefaultPrettyPrinter();
+                writeWallet(out, wallet);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (Exception e) {
             throw new RuntimeException("Не удалось сохранить кошелёк: " + e.getMessage(), e);
         }
     }
+
+    @Override
+    public long storedBytes(String login) {
+        return bytesOf(walletPath(login));
+    }
+
+    // суммарный размер существующих файлов; -1, если размер прочитать не удалось
+    static long bytesOf(Path... files) {
+        long total = 0;
+        try {
+            for (Path f : files) if (Files.exists(f)) total += Files.size(f);
+        } catch (IOException e) {
+            return -1;
+        }
+        return total;
+    }
+
+    private Wallet newWallet() {
+        return packedWallets ? Wallet.packed() : new Wallet();
+    }
+
+    private static Wallet readWallet(JsonParser in, Wallet w) throws IOException {
+        expect(in.nextToken(), JsonToken.START_OBJECT);
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+            String field = in.currentName();
+            JsonToken value = in.nextToken();
+            if (value == JsonToken.VALUE_NULL) continue;
+            switch (field) {
+                case "operations" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    while (in.nextToken() == JsonToken.START_OBJECT) w.getOperations().add(readOperation(in));
+                }
+                case "categories" -> {
+                    expect(value, JsonToken.START_ARRAY);
+                    while (in.nextToken() != JsonToken.END_ARRAY) w.getCategories().add(in.getValueAsString());
+                }
+                case "budgetsByCategory" -> {
+                    expect(value, JsonToken.START_OBJECT);
+                    while (in.nextToken() == JsonToken.FIELD_NAME) {
+                        String category = in.currentName();
+                        in.nextToken();
+                        w.getBudgetsByCategory().put(category, in.getValueAsDouble());
+                    }
+                }
+                case "periodicBudgets" -> {
+                    expect(value, JsonToken.START_OBJECT);
+                    while (in.nextToken() == JsonToken.FIELD_NAME) {
+                        String category = in.currentName();
+                        expect(in.nextToken(), JsonToken.START_OBJECT);
+                        w.periodicBudgets().put(category, readPeriodicBudget(in));
+                    }
+                }
+                default -> in.skipChildren();
+            }
+        }
+        return w;
+    }
+
+    // отсутствующие поля получают значения по умолчанию, как при чтении через ObjectMapper
+    private static Operation readOperation(JsonParser in) throws IOException {
+        String id = UUID.randomUUID().toString();
+        OperationType type = null;
+        String category = null;
+        double amount = 0;
+        LocalDateTime createdAt = LocalDateTime.now();
+        String note = null;
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+            String field = in.currentName();
+            JsonToken value = in.nextToken();
+            boolean isNull = value == JsonToken.VALUE_NULL;
+            switch (field) {
+                case "id" -> id = isNull ? null : in.getText();
+                case "type" -> type = isNull ? null : OperationType.valueOf(in.getText());
+                case "category" -> category = isNull ? null : in.getText();
+                case "amount" -> amount = isNull ? 0 : in.getValueAsDouble();
+                case "createdAt" -> createdAt = isNull ? null : readDateTime(in);
+                case "note" -> note = isNull ? null : in.getText();
+                default -> in.skipChildren();
+            }
+        }
+        return new Operation(id, type, category, amount, createdAt, note);
+    }
+
+    private static PeriodicBudget readPeriodicBudget(JsonParser in) throws IOException {
+        BudgetPeriod period = null;
+        double limit = 0;
+        boolean rollover = false;
+        LocalDate start = null;
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+            String field = in.currentName();
+            JsonToken value = in.nextToken();
+            if (value == JsonToken.VALUE_NULL) continue;
+            switch (field) {
+                case "period" -> period = BudgetPeriod.valueOf(in.getText());
+                case "limit" -> limit = in.getValueAsDouble();
+                case "rollover" -> rollover = in.getValueAsBoolean();
+                case "start" -> start = readDate(in);
+                default -> in.skipChildren();
+            }
+        }
+        return new PeriodicBudget(period, limit, rollover, start);
+    }
+
+    private static LocalDate readDate(JsonParser in) throws IOException {
+        if (in.currentToken() == JsonToken.VALUE_STRING) return LocalDate.parse(in.getText());
+        expect(in.currentToken(), JsonToken.START_ARRAY);
+        int[] parts = new int[3];
+        int n = 0;
+        while (in.nextToken() != JsonToken.END_ARRAY) {
+            if (n < parts.length) parts[n] = in.getIntValue();
+            n++;
+        }
+        if (n < 3) throw new IOException("Некорректная дата бюджета: ожидалось 3 числа.");
+        return LocalDate.of(parts[0], parts[1], parts[2]);
+    }
+
+    private static LocalDateTime readDateTime(JsonParser in) throws IOException {
+        if (in.currentToken() == JsonToken.VALUE_STRING) return LocalDateTime.parse(in.getText());
+        expect(in.currentToken(), JsonToken.START_ARRAY);
+        int[] parts = new int[7];
+        int n = 0;
+        while (in.nextToken() != JsonToken.END_ARRAY) {
+            if (n < parts.length) parts[n] = in.getIntValue();
+            n++;
+        }
+        if (n < 5) throw new IOException("Некорректная дата операции: ожидалось минимум 5 чисел.");
+        return LocalDateTime.of(parts[0], parts[1], parts[2], parts[3], parts[4], parts[5], parts[6]);
+    }
+
+    private static void writeWallet(JsonGenerator out, Wallet w) throws IOException {
+        out.writeStartObject();
+
+        out.writeArrayFieldStart("operations");
+        OperationColumns c = w.columns();
+        for (int row = 0, n = c.size(); row < n; row++) {
+            out.writeStartObject();
+            out.writeStringField("id", c.id(row));
+            OperationType type = c.type(row);
+            out.writeStringField("type", type == null ? null : type.name());
+            out.writeStringField("category", c.category(row));
+            // в JSON сумма остаётся в основных единицах; при чтении округляется до минимальных
+            out.writeNumberField("amount", Money.toMajor(c.amountMinor(row)));
+            out.writeFieldName("createdAt");
+            long sec = c.createdAtEpochSecond(row);
+            if (sec == OperationColumns.NO_TIME) out.writeNull();
+            else writeDateTime(out, LocalDateTime.ofEpochSecond(sec, c.createdAtNano(row), ZoneOffset.UTC));
+            out.writeStringField("note", c.note(row));
+            out.writeEndObject();
+        }
+        out.writeEndArray();
+
+        out.writeArrayFieldStart("categories");
+        for (String cat : w.getCategories()) out.writeString(cat);
+        out.writeEndArray();
+
+        out.writeObjectFieldStart("budgetsByCategory");
+        for (var e : w.getBudgetsByCategory().entrySet()) {
+            out.writeFieldName(e.getKey());
+            if (e.getValue() == null) out.writeNull();
+            else out.writeNumber(e.getValue());
+        }
+        out.writeEndObject();
+
+        out.writeObjectFieldStart("periodicBudgets");
+        for (var e : w.getPeriodicBudgets().entrySet()) {
+            PeriodicBudget b = e.getValue();
+            out.writeObjectFieldStart(e.getKey());
+            out.writeStringField("period", b.period().name());
+            out.writeNumberField("limit", b.limit());
+            out.writeBooleanField("rollover", b.rollover());
+            out.writeFieldName("start");
+            out.writeStartArray();
+            out.writeNumber(b.start().getYear());
+            out.writeNumber(b.start().getMonthValue());
+            out.writeNumber(b.start().getDayOfMonth());
+            out.writeEndArray();
+            out.writeEndObject();
+        }
+        out.writeEndObject();
+
+        out.writeEndObject();
+    }
+
+    // как LocalDateTimeSerializer: секунды и наносекунды пишутся, только если не нулевые
+    private static void writeDateTime(JsonGenerator out, LocalDateTime t) throws IOException {
+        out.writeStartArray();
+        out.writeNumber(t.getYear());
+        out.writeNumber(t.getMonthValue());
+        out.writeNumber(t.getDayOfMonth());
+        out.writeNumber(t.getHour());
+        out.writeNumber(t.getMinute());
+        if (t.getSecond() > 0 || t.getNano() > 0) {
+            out.writeNumber(t.getSecond());
+            if (t.getNano() > 0) out.writeNumber(t.getNano());
+        }
+        out.writeEndArray();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) throw new IOException("Некорректный JSON кошелька: ожидалось " + expected + ", получено " + actual);
+    }
 }
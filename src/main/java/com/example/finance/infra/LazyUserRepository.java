@@ -0,0 +1,158 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.ports.UserRepository;
+import com.example.finance.core.services.LoginLocks;
+import com.example.finance.core.services.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Репозиторий пользователей поверх {@link ShardedUserStorage}, который ничего не читает при старте:
+ * пользователь берётся из шарда по индексу ({@link ShardedUserStorage#find}) при первом обращении
+ * и держится в кэше последних {@code cacheSize} логинов, так что запуск не зависит от числа пользователей.
+ *
+ * Сессии одного логина должны видеть один объект {@link User}, поэтому вытесненный из кэша пользователь
+ * с открытым кошельком или ещё не записанный в хранилище остаётся в памяти, пока это так.
+ * Записан ли он, видно по самому объекту ({@link User#isStored()}), так что вытеснение не читает шард.
+ * В хранилище пишет {@code AuthService} через {@link ShardedUserStorage#saveUser}; репозиторий
+ * только помнит объекты. {@link #findAll()} читает все шарды — это для аналитики, а не для входа.
+ * Кэш защищён своим монитором, но шард читается вне его — под полосой логина ({@link LoginLocks}),
+ * так что промахи по разным логинам не ждут друг друга, а один логин не читается дважды.
+ * Чтения из шардов замеряются в {@code storage.users.find} и {@code storage.users.loadAll}.
+ */
+public class LazyUserRepository implements UserRepository {
+    private static final Metrics.Histogram FIND = Metrics.global().timer("storage.users.find");
+    private static final Metrics.Histogram LOAD_ALL = Metrics.global().timer("storage.users.loadAll");
+
+    private final ShardedUserStorage storage;
+    private final int cacheSize;
+    private final Map<String, User> cache;
+    // чтения шардов по логину; отдельные от блокировок сессий, чтобы не зависеть от их порядка
+    private final LoginLocks loads = new LoginLocks();
+    // вытесненные из кэша, но ещё нужные в памяти; просматриваются, когда их набирается sweepAt
+    private final Map<String, User> pinned = new HashMap<>();
+    private int sweepAt;
+
+    public LazyUserRepository(ShardedUserStorage storage, int cacheSize) {
+        if (cacheSize < 1) throw new IllegalArgumentException("Размер кэша пользователей должен быть >= 1.");
+        this.storage = storage;
+        this.cacheSize = cacheSize;
+        this.sweepAt = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                if (size() <= LazyUserRepository.this.cacheSize) return false;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Optional<User> findByLogin(String login) {
+        synchronized (cache) {
+            User u = cached(login);
+            if (u != null) return Optional.of(u);
+        }
+        return Optional.ofNullable(loads.withLock(login, () -> load(login)));
+    }
+
+    // под полосой логина в loads: пока поток читал шард, логин мог уже появиться в кэше
+    private User load(String login) {
+        synchronized (cache) {
+            User u = cached(login);
+            if (u != null) return u;
+        }
+        User u;
+        long start = Metrics.start();
+        try {
+            u = storage.find(login).orElse(null);
+        } finally {
+            FIND.stop(start);
+        }
+        synchronized (cache) {
+            User raced = cached(login);
+            if (raced != null) return raced;
+            if (u != null) cache.put(login, u);
+            return u;
+        }
+    }
+
+    @Override
+    public boolean exists(String login) {
+        return findByLogin(login).isPresent();
+    }
+
+    @Override
+    public void save(User user) {
+        synchronized (cache) {
+            pinned.remove(user.getLogin());
+            cache.put(user.getLogin(), user);
+        }
+    }
+
+    @Override
+    public boolean saveIfAbsent(User user) {
+        String login = user.getLogin();
+        return loads.withLock(login, () -> {
+            if (load(login) != null) return false;
+            synchronized (cache) {
+                if (cached(login) != null) return false;
+                cache.put(login, user);
+                return true;
+            }
+        });
+    }
+
+    /** Все пользователи из хранилища; у тех, что уже в памяти, возвращается тот же объект. */
+    @Override
+    public List<User> findAll() {
+        long start = Metrics.start();
+        List<User> stored;
+        try {
+            stored = storage.loadAll();
+        } finally {
+            LOAD_ALL.stop(start);
+        }
+        synchronized (cache) {
+            // копия, а не get: чтение кэша не должно менять порядок вытеснения
+            Map<String, User> memory = new HashMap<>(cache);
+            memory.putAll(pinned);
+            List<User> res = new ArrayList<>(stored.size());
+            for (User u : stored) {
+                User mem = memory.remove(u.getLogin());
+                res.add(mem != null ? mem : u);
+            }
+            res.addAll(memory.values());
+            return res;
+        }
+    }
+
+    private User cached(String login) {
+        User u = cache.get(login);
+        if (u == null) {
+            u = pinned.remove(login);
+            if (u != null) cache.put(login, u);
+        }
+        return u;
+    }
+
+    private void evict(User u) {
+        if (!mustStay(u)) return;
+        pinned.put(u.getLogin(), u);
+        if (pinned.size() >= sweepAt) {
+            pinned.values().removeIf(p -> !mustStay(p));
+            sweepAt = Math.max(cacheSize, pinned.size() * 2);
+        }
+    }
+
+    private static boolean mustStay(User u) {
+        return u.isWalletLoaded() || !u.isStored();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.ports.UserStorage;
+import com.example.finance.core.services.Metrics;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/** Замеры хранилища пользователей: {@code storage.users.loadAll|saveAll|saveUser}. */
+public class MeteredUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final Metrics.Histogram loadAll;
+    private final Metrics.Histogram saveAll;
+    private final Metrics.Histogram saveUser;
+
+    public MeteredUserStorage(UserStorage delegate) {
+        this(delegate, Metrics.global());
+    }
+
+    public MeteredUserStorage(UserStorage delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.loadAll = metrics.timer("storage.users.loadAll");
+        this.saveAll = metrics.timer("storage.users.saveAll");
+        this.saveUser = metrics.timer("storage.users.saveUser");
+    }
+
+    @Override
+    public List<User> loadAll() {
+        long start = Metrics.start();
+        try {
+            return delegate.loadAll();
+        } finally {
+            loadAll.stop(start);
+        }
+    }
+
+    @Override
+    public void saveAll(List<User> users) {
+        long start = Metrics.start();
+        try {
+            delegate.saveAll(users);
+        } finally {
+            saveAll.stop(start);
+        }
+    }
+
+    @Override
+    public void saveUser(User user, Supplier<List<User>> all) {
+        long start = Metrics.start();
+        try {
+            delegate.saveUser(user, all);
+        } finally {
+            saveUser.stop(start);
+        }
+    }
+}
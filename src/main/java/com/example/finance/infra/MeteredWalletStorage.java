@@ -0,0 +1,99 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.core.services.Metrics;
+
+import java.util.Map;
+
+/**
+ * Замеры хранилища кошельков: время {@code loadWallet}, {@code saveWallet} и {@code saveWallets}
+ * в гистограммах {@code <prefix>.load|save|saveBatch} (вместе с неудачными вызовами), число
+ * операций в прочитанных кошельках и размер кошелька на диске после чтения и записи
+ * ({@code <prefix>.bytes}, если хранилище его знает: {@link WalletStorage#storedBytes}).
+ * Размер берётся из метаданных файла, без чтения.
+ * Остальное передаётся хранилищу как есть; {@link #close()} закрывает его, если оно закрывается.
+ */
+public class MeteredWalletStorage implements WalletStorage, AutoCloseable {
+    private final WalletStorage delegate;
+    private final Metrics.Histogram load;
+    private final Metrics.Histogram save;
+    private final Metrics.Histogram saveBatch;
+    private final Metrics.Counter loadedOperations;
+    private final Metrics.Histogram bytes;
+
+    public MeteredWalletStorage(WalletStorage delegate, String prefix) {
+        this(delegate, prefix, Metrics.global());
+    }
+
+    public MeteredWalletStorage(WalletStorage delegate, String prefix, Metrics metrics) {
+        this.delegate = delegate;
+        this.load = metrics.timer(prefix + ".load");
+        this.save = metrics.timer(prefix + ".save");
+        this.saveBatch = metrics.timer(prefix + ".saveBatch");
+        this.loadedOperations = metrics.counter(prefix + ".loadedOperations");
+        this.bytes = metrics.bytes(prefix + ".bytes");
+    }
+
+    @Override
+    public Wallet loadWallet(String login) {
+        long start = Metrics.start();
+        try {
+            Wallet w = delegate.loadWallet(login);
+            loadedOperations.add(w.getOperations().size());
+            recordBytes(login);
+            return w;
+        } finally {
+            load.stop(start);
+        }
+    }
+
+    @Override
+    public void saveWallet(String login, Wallet wallet) {
+        long start = Metrics.start();
+        try {
+            delegate.saveWallet(login, wallet);
+        } finally {
+            save.stop(start);
+        }
+        recordBytes(login);
+    }
+
+    @Override
+    public void walletChanged(String login, Wallet wallet) {
+        delegate.walletChanged(login, wallet);
+    }
+
+    @Override
+    public void saveWallets(Map<String, Wallet> wallets) {
+        long start = Metrics.start();
+        try {
+            delegate.saveWallets(wallets);
+        } finally {
+            saveBatch.stop(start);
+        }
+        for (String login : wallets.keySet()) recordBytes(login);
+    }
+
+    @Override
+    public long storedBytes(String login) {
+        return delegate.storedBytes(login);
+    }
+
+    private void recordBytes(String login) {
+        if (!Metrics.ENABLED) return;
+        long size = delegate.storedBytes(login);
+        if (size >= 0) bytes.record(size);
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable c) {
+            try {
+                c.close();
+            } catch (Exception e) {
+                throw new RuntimeException("Не удалось закрыть хранилище кошельков: " + e.getMessage(), e);
+            }
+        }
+    }
+}
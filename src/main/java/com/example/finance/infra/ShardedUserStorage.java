@@ -0,0 +1,484 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.ports.UserStorage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Пользователи в нескольких файлах-шардах {@code <dir>/users-<n>.log}: логин попадает в шард
+ * по хешу. Шард — журнал записей {@code [длина][данные][crc32]}; регистрация или изменение
+ * пользователя дописывает одну запись в свой шард, поэтому стоит O(1), а не O(числа пользователей).
+ * При чтении побеждает последняя запись логина. Запись, оборванная сбоем, отбрасывается
+ * вместе с хвостом файла.
+ *
+ * Рядом с шардом лежит индекс {@code users-<n>.idx}: пары (64-битный хеш логина, смещение
+ * последней записи логина), отсортированные по хешу, и длина журнала, которую он покрывает.
+ * {@link #find(String)} ищет логин двоичным поиском прямо по файлу индекса и читает одну запись,
+ * так что для входа не нужно читать всех пользователей. Записи, дописанные после индекса,
+ * при открытии шарда дочитываются в память; индекс переписывается, когда их набирается
+ * {@value #TAIL_LIMIT}, и в {@link #close()}. Индекс, не сходящийся с журналом, удаляется
+ * и строится заново.
+ *
+ * {@link #loadAll()} читает шарды параллельно на {@link ForkJoinPool}. Если старых записей в шарде
+ * заметно больше, чем пользователей, он при загрузке переписывается заново (через временный файл).
+ * fsync — после {@code syncBatch} записей в шард и в {@link #close()}.
+ * Если шардов ещё нет, пользователи переносятся из {@code users.json} прежнего формата.
+ */
+public class ShardedUserStorage implements UserStorage, AutoCloseable {
+    private static final byte USER = 1;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final int INDEX_MAGIC = 0x46554931; // "FUI1"
+    private static final int INDEX_HEADER = 16;
+    private static final int INDEX_ENTRY = 16;
+    static final int TAIL_LIMIT = 1024;
+
+    private final Path dir;
+    private final int syncBatch;
+    private final JsonUserStorage legacy;
+    private final Shard[] shards;
+    private volatile boolean migrated;
+
+    public ShardedUserStorage(Path dir, Path legacyJson) {
+        this(dir, 16, 1, legacyJson);
+    }
+
+    public ShardedUserStorage(Path dir, int shardCount, int syncBatch, Path legacyJson) {
+        if (shardCount < 1) throw new IllegalArgumentException("Число шардов должно быть >= 1.");
+        if (syncBatch < 1) throw new IllegalArgumentException("syncBatch должен быть >= 1.");
+        this.dir = dir;
+        this.syncBatch = syncBatch;
+        this.legacy = legacyJson == null ? null : new JsonUserStorage(legacyJson);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new Shard(dir.resolve("users-" + i + ".log"));
+    }
+
+    @Override
+    public List<User> loadAll() {
+        migrateLegacy();
+        List<ForkJoinTask<List<User>>> tasks = new ArrayList<>();
+        for (Shard s : shards) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                synchronized (s) {
+                    return s.load();
+                }
+            }));
+        }
+        List<User> users = new ArrayList<>();
+        for (ForkJoinTask<List<User>> t : tasks) users.addAll(t.join());
+        return users;
+    }
+
+    /** Последняя запись логина, прочитанная по индексу шарда; остальные пользователи не читаются. */
+    public Optional<User> find(String login) {
+        migrateLegacy();
+        Shard s = shards[shardIndex(login)];
+        synchronized (s) {
+            try {
+                return Optional.ofNullable(s.find(login));
+            } catch (IOException e) {
+                throw new RuntimeException("Не удалось прочитать пользователя: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void saveAll(List<User> users) {
+        List<List<User>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) byShard.add(new ArrayList<>());
+        for (User u : users) byShard.get(shardIndex(u.getLogin())).add(u);
+        try {
+            Files.createDirectories(dir);
+            for (int i = 0; i < shards.length; i++) {
+                synchronized (shards[i]) {
+                    shards[i].rewrite(byShard.get(i));
+                }
+            }
+            for (User u : users) u.markStored();
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить пользователей: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void saveUser(User user, Supplier<List<User>> all) {
+        Shard s = shards[shardIndex(user.getLogin())];
+        synchronized (s) {
+            try {
+                s.append(user);
+                user.markStored();
+            } catch (IOException e) {
+                throw new RuntimeException("Не удалось сохранить пользователя: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Shard s : shards) {
+            synchronized (s) {
+                try {
+                    s.closeChannel();
+                } catch (IOException e) {
+                    throw new RuntimeException("Не удалось сбросить пользователей: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void migrateLegacy() {
+        if (migrated) return;
+        synchronized (this) {
+            if (migrated) return;
+            boolean any = false;
+            for (Shard s : shards) any |= Files.exists(s.path);
+            if (!any && legacy != null) {
+                List<User> users = legacy.loadAll();
+                if (!users.isEmpty()) saveAll(users);
+            }
+            migrated = true;
+        }
+    }
+
+    private int shardIndex(String login) {
+        return Math.floorMod(login.hashCode(), shards.length);
+    }
+
+    // FNV-1a по байтам UTF-8; в индексе 64 бита, чтобы совпадения хешей были редкостью
+    static long loginHash(String login) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : login.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private final class Shard {
+        final Path path;
+        final Path indexPath;
+        private FileChannel channel;
+        // конец последней целой записи; -1 — шард ещё не открывался
+        private long validBytes = -1;
+        private int unsynced;
+        // файл индекса и число пар в нём; null — индекса нет
+        private FileChannel index;
+        private int indexCount;
+        // записи после покрытой индексом части журнала: логин -> смещение
+        private final Map<String, Long> tail = new HashMap<>();
+        private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+
+        Shard(Path path) {
+            this.path = path;
+            this.indexPath = path.resolveSibling(path.getFileName().toString().replace(".log", ".idx"));
+        }
+
+        List<User> load() {
+            try {
+                if (!open(false)) return new ArrayList<>();
+                Map<String, User> users = new LinkedHashMap<>();
+                int records = scan(0, (u, offset) -> users.put(u.getLogin(), u));
+                if (records > 2 * users.size() + 64) rewrite(new ArrayList<>(users.values()));
+                else if (!tail.isEmpty()) writeIndex();
+                return new ArrayList<>(users.values());
+            } catch (IOException e) {
+                throw new RuntimeException("Не удалось прочитать " + path.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        User find(String login) throws IOException {
+            return find(login, true);
+        }
+
+        private User find(String login, boolean retry) throws IOException {
+            if (!open(false)) return null;
+            Long offset = tail.get(login);
+            if (offset != null) return readAt(offset);
+            if (index == null) return null;
+
+            long hash = loginHash(login);
+            int lo = 0;
+            int hi = indexCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (readEntry(mid) < hash) lo = mid + 1;
+                else hi = mid;
+            }
+            for (int i = lo; i < indexCount && readEntry(i) == hash; i++) {
+                User u = readAt(entry.getLong(8));
+                if (u == null) {
+                    // индекс указывает мимо записи: журнал менялся без него
+                    if (!retry) return null;
+                    dropIndex();
+                    return find(login, false);
+                }
+                if (login.equals(u.getLogin())) return u;
+            }
+            return null;
+        }
+
+        void append(User u) throws IOException {
+            open(true);
+            ByteBuffer record = ByteBuffer.wrap(encode(u));
+            long offset = validBytes;
+            for (long pos = offset; record.hasRemaining(); ) pos += channel.write(record, pos);
+            validBytes = offset + record.capacity();
+            tail.put(u.getLogin(), offset);
+            if (++unsynced >= syncBatch) {
+                channel.force(false);
+                unsynced = 0;
+            }
+            if (tail.size() >= TAIL_LIMIT) writeIndex();
+        }
+
+        void rewrite(List<User> users) throws IOException {
+            tail.clear(); // индекс всё равно строится заново
+            closeChannel();
+            // индекс удаляется до журнала: после сбоя между ними он просто строится заново
+            Files.deleteIfExists(indexPath);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                for (User u : users) body.write(encode(u));
+                ByteBuffer buf = ByteBuffer.wrap(body.toByteArray());
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void closeChannel() throws IOException {
+            if (channel == null) return;
+            try {
+                if (!tail.isEmpty()) writeIndex();
+                if (unsynced > 0) channel.force(false);
+            } finally {
+                channel.close();
+                channel = null;
+                closeIndex();
+                validBytes = -1;
+                unsynced = 0;
+                tail.clear();
+            }
+        }
+
+        // открывает журнал и индекс и дочитывает записи после индекса; оборванный хвост обрезается
+        private boolean open(boolean create) throws IOException {
+            if (channel != null) return true;
+            if (!create && !Files.exists(path)) return false;
+            Files.createDirectories(dir);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            tail.clear();
+            scan(openIndex(), (u, offset) -> tail.put(u.getLogin(), offset));
+            if (channel.size() > validBytes) channel.truncate(validBytes);
+            if (tail.size() >= TAIL_LIMIT) writeIndex();
+            return true;
+        }
+
+        // читает записи с позиции from до первой испорченной; validBytes — конец последней целой
+        private int scan(long from, BiConsumer<User, Long> each) throws IOException {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel.position(from)), 1 << 16));
+            CRC32 crc = new CRC32();
+            long pos = from;
+            int records = 0;
+            while (true) {
+                try {
+                    int len = in.readInt();
+                    if (len <= 0 || len > MAX_RECORD_SIZE) break;
+                    byte[] bytes = new byte[len];
+                    in.readFully(bytes);
+                    int expected = in.readInt();
+                    crc.reset();
+                    crc.update(bytes);
+                    if ((int) crc.getValue() != expected) break;
+                    User u = decode(bytes);
+                    if (u != null) each.accept(u, pos);
+                    records++;
+                    pos += 8 + len;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+            validBytes = pos;
+            return records;
+        }
+
+        // одна запись по смещению; null — там нет целой записи
+        private User readAt(long offset) throws IOException {
+            if (offset < 0 || offset + 8 > validBytes) return null;
+            ByteBuffer head = ByteBuffer.allocate(4);
+            readFully(channel, head, offset);
+            int len = head.getInt(0);
+            if (len <= 0 || len > MAX_RECORD_SIZE || offset + 8 + len > validBytes) return null;
+            ByteBuffer body = ByteBuffer.allocate(len + 4);
+            readFully(channel, body, offset + 4);
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, len);
+            if ((int) crc.getValue() != body.getInt(len)) return null;
+            return decode(Arrays.copyOf(body.array(), len));
+        }
+
+        // хеш пары i; смещение остаётся в entry
+        private long readEntry(int i) throws IOException {
+            readFully(index, entry, INDEX_HEADER + (long) i * INDEX_ENTRY);
+            return entry.getLong(0);
+        }
+
+        // длина журнала, покрытая индексом; 0 — индекса нет или он не подходит к журналу
+        private long openIndex() throws IOException {
+            closeIndex();
+            if (!Files.exists(indexPath)) return 0;
+            FileChannel ch = FileChannel.open(indexPath, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+            long covered = -1;
+            int count = 0;
+            if (ch.size() >= INDEX_HEADER) {
+                readFully(ch, header, 0);
+                covered = header.getInt(0) == INDEX_MAGIC ? header.getLong(4) : -1;
+                count = header.getInt(12);
+            }
+            if (covered < 0 || covered > channel.size() || count < 0
+                    || ch.size() != INDEX_HEADER + (long) count * INDEX_ENTRY) {
+                ch.close();
+                Files.deleteIfExists(indexPath);
+                return 0;
+            }
+            index = ch;
+            indexCount = count;
+            return covered;
+        }
+
+        // новый индекс: пары старого, кроме логинов, перезаписанных в хвосте, плюс хвост
+        private void writeIndex() throws IOException {
+            Set<Long> tailHashes = new HashSet<>();
+            for (String login : tail.keySet()) tailHashes.add(loginHash(login));
+            List<long[]> entries = new ArrayList<>(indexCount + tail.size());
+            for (int i = 0; i < indexCount; i++) {
+                long hash = readEntry(i);
+                long offset = entry.getLong(8);
+                if (tailHashes.contains(hash)) {
+                    User u = readAt(offset);
+                    if (u == null || tail.containsKey(u.getLogin())) continue;
+                }
+                entries.add(new long[]{hash, offset});
+            }
+            tail.forEach((login, offset) -> entries.add(new long[]{loginHash(login), offset}));
+            entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+            ByteBuffer buf = ByteBuffer.allocate(INDEX_HEADER + entries.size() * INDEX_ENTRY);
+            buf.putInt(INDEX_MAGIC).putLong(validBytes).putInt(entries.size());
+            for (long[] e : entries) buf.putLong(e[0]).putLong(e[1]);
+            buf.flip();
+            // журнал должен быть на диске раньше индекса, который на него ссылается
+            channel.force(false);
+            unsynced = 0;
+            Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(true);
+            }
+            closeIndex();
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            index = FileChannel.open(indexPath, StandardOpenOption.READ);
+            indexCount = entries.size();
+            tail.clear();
+        }
+
+        private void dropIndex() throws IOException {
+            closeIndex();
+            Files.deleteIfExists(indexPath);
+            tail.clear();
+            scan(0, (u, offset) -> tail.put(u.getLogin(), offset));
+            writeIndex();
+        }
+
+        private void closeIndex() throws IOException {
+            if (index == null) return;
+            index.close();
+            index = null;
+            indexCount = 0;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException();
+        }
+    }
+
+    // запись: [длина][тип + логин + хеш пароля][crc32]
+    private static byte[] encode(User u) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(USER);
+        writeString(out, u.getLogin());
+        writeString(out, u.getPasswordHash());
+        byte[] bytes = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+        record.putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    private static User decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readByte() != USER) return null;
+        User u = new User(readString(in), readString(in));
+        u.markStored();
+        return u;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
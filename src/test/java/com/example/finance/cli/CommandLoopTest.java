@@ -0,0 +1,91 @@
+package com.example.finance.cli;
+
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.AuthService;
+import com.example.finance.core.services.TransferService;
+import com.example.finance.core.services.WalletService;
+import com.example.finance.infra.ConcurrentUserRepository;
+import com.example.finance.infra.JsonUserStorage;
+import com.example.finance.infra.JsonWalletStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandLoopTest {
+
+    @TempDir
+    Path dir;
+
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private PrintStream console;
+
+    @BeforeEach
+    void captureOutput() {
+        console = System.out;
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreOutput() {
+        System.setOut(console);
+    }
+
+    @Test
+    void batch_groupsOperations_andSavesOnEnd() throws Exception {
+        Path script = dir.resolve("script.txt");
+        Files.writeString(script, """
+                # тестовый скрипт
+                register xana pass
+                login xana pass
+                add-category Еда
+                set-budget Еда 500
+                add-expense Еда 300 обед
+                add-expense Такси 100
+                add-expense Еда 300 ужин
+                add-income Еда 50
+                """);
+
+        JsonWalletStorage walletStorage = new JsonWalletStorage(dir);
+        ConcurrentUserRepository users = new ConcurrentUserRepository();
+        AuthService auth = new AuthService(users, new JsonUserStorage(dir.resolve("users.json")), walletStorage);
+        WalletService walletService = new WalletService();
+        new CommandLoop(auth, walletService, new TransferService(users, walletStorage, walletService)).runBatch(script);
+
+        String output = captured.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("Ошибка: Категория не найдена: Такси"), output);
+        assertEquals(1, output.split("Превышен бюджет", -1).length - 1, output);
+        assertTrue(output.trim().endsWith("Данные сохранены. Выход."), output);
+
+        Wallet saved = walletStorage.loadWallet("xana");
+        assertEquals(3, saved.getOperations().size());
+        assertEquals(600.0, saved.totalExpense());
+    }
+
+    @Test
+    void batch_withoutSession_reportsOnlyErrors() throws Exception {
+        Path script = dir.resolve("script.txt");
+        Files.writeString(script, """
+                add-expense Еда 300
+                add-income Еда 50
+                """);
+
+        JsonWalletStorage walletStorage = new JsonWalletStorage(dir);
+        ConcurrentUserRepository users = new ConcurrentUserRepository();
+        AuthService auth = new AuthService(users, new JsonUserStorage(dir.resolve("users.json")), walletStorage);
+        WalletService walletService = new WalletService();
+        new CommandLoop(auth, walletService, new TransferService(users, walletStorage, walletService)).runBatch(script);
+
+        String output = captured.toString(StandardCharsets.UTF_8);
+        assertFalse(output.contains("Операция добавлена."), output);
+        assertEquals(2, output.split("Ошибка: ", -1).length - 1, output);
+    }
+}
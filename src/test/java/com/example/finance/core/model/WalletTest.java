@@ -0,0 +1,255 @@
+package com.example.finance.core.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletTest {
+
+    @Test
+    void amounts_areSummedExactlyInMinorUnits() {
+        Wallet w = new Wallet();
+        for (int i = 0; i < 1000; i++) w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 0.1, ""));
+        w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 0.1, ""));
+        w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 0.2, ""));
+
+        assertEquals(10_000, w.totalExpenseMinor());
+        assertEquals(100.0, w.expenseOf("Еда"));
+        assertEquals("0.3", String.valueOf(w.totalIncome()));
+        // ввод округляется до копейки, разбор текста — точный
+        assertEquals(1235, new Operation(OperationType.INCOME, "Зарплата", 12.345, "").getAmountMinor());
+        assertEquals(1250, Money.parse("12,5"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("12.345"));
+    }
+
+    @Test
+    void aggregates_followAppendSetAndRemove() {
+        Wallet w = new Wallet();
+        w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 1000, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Такси", 200, ""));
+
+        assertEquals(1000.0, w.totalIncome());
+        assertEquals(500.0, w.totalExpense());
+        assertEquals(300.0, w.expenseOf("Еда"));
+
+        w.getOperations().set(1, new Operation(OperationType.EXPENSE, "Еда", 50, ""));
+        assertEquals(250.0, w.totalExpense());
+        assertEquals(50.0, w.expenseOf("Еда"));
+
+        w.getOperations().remove(2);
+        assertEquals(50.0, w.totalExpense());
+        assertFalse(w.expenseByCategory().containsKey("Такси"));
+    }
+
+    @Test
+    void aggregates_followOperationSetters() {
+        Wallet w = new Wallet();
+        Operation o = new Operation(OperationType.EXPENSE, "Еда", 300, "");
+        w.getOperations().add(o);
+
+        o.setAmount(100);
+        o.setCategory("Такси");
+        assertEquals(100.0, w.totalExpense());
+        assertEquals(0.0, w.expenseOf("Еда"));
+        assertEquals(100.0, w.expenseOf("Такси"));
+
+        o.setType(OperationType.INCOME);
+        assertEquals(0.0, w.totalExpense());
+        assertEquals(100.0, w.totalIncome());
+        assertEquals(100.0, w.incomeOf("Такси"));
+    }
+
+    @Test
+    void aggregates_surviveJsonRoundTrip() throws Exception {
+        ObjectMapper om = new ObjectMapper().registerModule(new JavaTimeModule());
+        Wallet w = new Wallet();
+        w.getCategories().add("Еда");
+        w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 1000, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, "обед"));
+
+        Wallet loaded = om.readValue(om.writeValueAsString(w), Wallet.class);
+
+        assertEquals(2, loaded.getOperations().size());
+        assertEquals(1000.0, loaded.totalIncome());
+        assertEquals(300.0, loaded.totalExpense());
+        assertEquals(300.0, loaded.expenseByCategory().get("Еда"));
+    }
+
+    @Test
+    void forEachBetween_returnsOnlyPeriodInTimeOrder() {
+        Wallet w = new Wallet();
+        Operation feb = at(new Operation(OperationType.INCOME, "Зарплата", 2000, "feb"), 2026, 2, 5);
+        Operation jan10 = at(new Operation(OperationType.INCOME, "Зарплата", 1000, "jan10"), 2026, 1, 10);
+        Operation jan15 = at(new Operation(OperationType.EXPENSE, "Еда", 500, "jan15"), 2026, 1, 15);
+        w.getOperations().add(jan10);
+        w.getOperations().add(feb);
+        w.getOperations().add(jan15);
+
+        assertEquals(List.of(jan10, jan15), between(w, 2026, 1));
+
+        jan15.setCreatedAt(LocalDateTime.of(2026, 2, 1, 0, 0));
+        assertEquals(List.of(jan10), between(w, 2026, 1));
+        assertEquals(List.of(jan15, feb), between(w, 2026, 2));
+
+        w.getOperations().remove(jan10);
+        assertEquals(List.of(), between(w, 2026, 1));
+    }
+
+    @Test
+    void packedWallet_behavesLikeHeapWallet() {
+        Wallet w = Wallet.packed();
+        Operation salary = at(new Operation(OperationType.INCOME, "Зарплата", 1000, "аванс"), 2026, 1, 10);
+        Operation custom = new Operation("op-1", OperationType.EXPENSE, "Еда", 300, null, null);
+        w.getOperations().add(salary);
+        w.getOperations().add(custom);
+        w.getOperations().add(at(new Operation(OperationType.EXPENSE, "Такси", 200, "ночь"), 2026, 1, 20));
+
+        assertEquals(1000.0, w.totalIncome());
+        assertEquals(500.0, w.totalExpense());
+
+        Operation first = w.getOperations().get(0);
+        assertEquals(salary.getId(), first.getId());
+        assertEquals("аванс", first.getNote());
+        assertEquals(salary.getCreatedAt(), first.getCreatedAt());
+        assertEquals("op-1", w.getOperations().get(1).getId());
+        assertNull(w.getOperations().get(1).getNote());
+        assertNull(w.getOperations().get(1).getCreatedAt());
+
+        assertEquals(2, between(w, 2026, 1).size());
+
+        w.getOperations().set(1, new Operation(OperationType.EXPENSE, "Еда", 50, ""));
+        assertEquals(50.0, w.expenseOf("Еда"));
+        w.getOperations().remove(0);
+        assertEquals(0.0, w.totalIncome());
+        assertEquals(2, w.getOperations().size());
+        assertEquals("ночь", w.getOperations().get(1).getNote());
+    }
+
+    private static Operation at(Operation o, int year, int month, int day) {
+        o.setCreatedAt(LocalDateTime.of(year, month, day, 12, 0));
+        return o;
+    }
+
+    private static List<Operation> between(Wallet w, int year, int month) {
+        LocalDateTime start = LocalDateTime.of(year, month, 1, 0, 0);
+        List<Operation> res = new ArrayList<>();
+        w.forEachBetween(start, start.plusMonths(1), res::add);
+        return res;
+    }
+
+    @Test
+    void budgets_fireOnlyOnThresholdCrossings() {
+        Wallet w = new Wallet();
+        w.getBudgetsByCategory().put("Еда", 1000.0);
+        List<BudgetEvent> events = new ArrayList<>();
+        w.budgets().addListener(events::add);
+
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 500, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 100, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 350, ""));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 10, ""));
+
+        assertEquals(List.of(80, 120), events.stream().map(BudgetEvent::thresholdPercent).toList());
+        assertEquals(-260.0, w.budgets().remaining("Еда"));
+
+        // снижение расходов пересчитывает порог молча, повторное пересечение снова даёт событие
+        w.getOperations().remove(3);
+        assertEquals(80, w.budgets().threshold("Еда"));
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 100, ""));
+        assertEquals(100, events.get(2).thresholdPercent());
+        assertTrue(events.get(2).exceeded());
+
+        // правка суммы на месте не даёт повторного события на том же пороге
+        w.getOperations().get(0).setAmount(505);
+        w.getOperations().set(1, new Operation(OperationType.EXPENSE, "Еда", 301, ""));
+        assertEquals(3, events.size());
+
+        w.getBudgetsByCategory().put("Еда", 2000.0);
+        assertEquals(0, w.budgets().threshold("Еда"));
+        assertEquals(3, events.size());
+    }
+
+    @Test
+    void periodicBudgets_sumCurrentPeriod_andRollOver() {
+        Wallet w = new Wallet();
+        w.getOperations().add(new Operation("a", OperationType.EXPENSE, "Еда", 300, LocalDateTime.of(2026, 1, 20, 12, 0), ""));
+        w.periodicBudgets().put("Еда", new PeriodicBudget(BudgetPeriod.MONTH, 1000.0, true, LocalDate.of(2026, 1, 1)));
+        w.getOperations().add(new Operation("b", OperationType.EXPENSE, "Еда", 400, LocalDateTime.of(2026, 2, 3, 12, 0), ""));
+        Operation late = new Operation("c", OperationType.EXPENSE, "Еда", 500, LocalDateTime.of(2026, 2, 10, 12, 0), "");
+        w.getOperations().add(late);
+        w.getOperations().add(new Operation("d", OperationType.INCOME, "Еда", 50, LocalDateTime.of(2026, 2, 11, 12, 0), ""));
+
+        LocalDate feb = LocalDate.of(2026, 2, 15);
+        assertEquals(300.0, w.periodicBudgets().spent("Еда", LocalDate.of(2026, 1, 1)));
+        assertEquals(900.0, w.periodicBudgets().spent("Еда", feb));
+        assertEquals(700.0, w.periodicBudgets().carried("Еда", feb));
+        assertEquals(800.0, w.periodicBudgets().remaining("Еда", feb));
+        assertEquals(0.0, w.periodicBudgets().carried("Еда", LocalDate.of(2026, 1, 5)));
+
+        late.setCreatedAt(LocalDateTime.of(2026, 1, 10, 12, 0));
+        assertEquals(400.0, w.periodicBudgets().spent("Еда", feb));
+        w.getOperations().remove(late);
+        assertEquals(300.0, w.periodicBudgets().spent("Еда", LocalDate.of(2026, 1, 31)));
+
+        assertEquals(LocalDate.of(2026, 2, 9), BudgetPeriod.WEEK.start(BudgetPeriod.WEEK.index(LocalDate.of(2026, 2, 15))));
+    }
+
+    @Test
+    void rollups_combineYearMonthAndDayBuckets() {
+        Wallet w = new Wallet();
+        w.getOperations().add(new Operation("a", OperationType.EXPENSE, "Еда", 100, LocalDateTime.of(2024, 12, 31, 23, 0), ""));
+        w.getOperations().add(new Operation("b", OperationType.EXPENSE, "Еда", 200, LocalDateTime.of(2025, 3, 1, 10, 0), ""));
+        w.getOperations().add(new Operation("c", OperationType.INCOME, "Зарплата", 1000, LocalDateTime.of(2025, 7, 15, 9, 0), ""));
+        w.getOperations().add(new Operation("d", OperationType.EXPENSE, "Такси", 50, LocalDateTime.of(2026, 1, 2, 8, 0), ""));
+
+        Map<OperationType, Double> all = totals(w, LocalDate.of(2024, 12, 31), LocalDate.of(2026, 1, 2));
+        assertEquals(350.0, all.get(OperationType.EXPENSE));
+        assertEquals(1000.0, all.get(OperationType.INCOME));
+        assertEquals(200.0, totals(w, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 6, 30)).get(OperationType.EXPENSE));
+
+        // после построения сводки следуют за правками операций
+        w.getOperations().get(1).setCreatedAt(LocalDateTime.of(2025, 7, 1, 10, 0));
+        w.getOperations().remove(0);
+        assertNull(totals(w, LocalDate.of(2024, 1, 1), LocalDate.of(2025, 6, 30)).get(OperationType.EXPENSE));
+        assertEquals(250.0, totals(w, LocalDate.of(2025, 7, 1), LocalDate.of(2026, 12, 31)).get(OperationType.EXPENSE));
+    }
+
+    @Test
+    void dictionary_internsCategories_andSumsByCategorySet() {
+        Wallet w = new Wallet();
+        Operation a = new Operation(OperationType.EXPENSE, new String("Еда"), 100, "");
+        Operation b = new Operation(OperationType.EXPENSE, new String("Еда"), 50, "");
+        w.getOperations().add(a);
+        w.getOperations().add(b);
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Такси", 30, ""));
+        w.getOperations().add(new Operation(OperationType.INCOME, "Еда", 7, ""));
+        assertSame(a.getCategory(), b.getCategory());
+
+        CategoryDictionary dict = w.dictionary();
+        assertEquals(180, Money.toMajor(w.sumMinor(OperationType.EXPENSE, dict.idsOf(List.of("Еда", "Такси", "Кино")))));
+        assertEquals(7, Money.toMajor(w.sumMinor(OperationType.INCOME, dict.idsOf(List.of("Еда", "Такси")))));
+
+        w.getOperations().remove(a);
+        b.setCategory("Такси");
+        assertEquals(0, w.sumMinor(OperationType.EXPENSE, dict.idsOf(List.of("Еда"))));
+        assertEquals(80, Money.toMajor(w.sumMinor(OperationType.EXPENSE, dict.idsOf(List.of("Такси")))));
+        assertFalse(w.expenseByCategory().containsKey("Еда"));
+    }
+
+    private static Map<OperationType, Double> totals(Wallet w, LocalDate from, LocalDate to) {
+        Map<OperationType, Double> res = new HashMap<>();
+        w.rollups().visit(from, to, (type, category, amount) -> res.merge(type, Money.toMajor(amount), Double::sum));
+        return res;
+    }
+}
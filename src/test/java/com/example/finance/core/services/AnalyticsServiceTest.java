@@ -0,0 +1,73 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.infra.InMemoryUserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalyticsServiceTest {
+
+    @Test
+    void analyze_mergesAllWalletsAcrossTasks() {
+        WalletService walletService = new WalletService();
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        Map<String, Wallet> stored = new ConcurrentHashMap<>();
+        WalletStorage storage = new WalletStorage() {
+            @Override
+            public Wallet loadWallet(String login) {
+                Wallet w = stored.get(login);
+                if (w == null) throw new RuntimeException("Не удалось прочитать кошелёк " + login);
+                return w;
+            }
+
+            @Override
+            public void saveWallet(String login, Wallet wallet) {
+                stored.put(login, wallet);
+            }
+        };
+
+        for (int i = 0; i < 50; i++) {
+            String login = "u" + i;
+            users.save(new User(login, "hash"));
+            Wallet w = new Wallet();
+            walletService.addCategory(w, "Зарплата");
+            walletService.addCategory(w, "Еда");
+            walletService.addIncome(w, "Зарплата", 1000, "");
+            walletService.addExpense(w, "Еда", i + 1, "");
+            if (i % 10 == 0) {
+                walletService.setBudget(w, "Еда", 5);
+            }
+            stored.put(login, w);
+        }
+        // вошедший пользователь: берётся кошелёк из памяти, а не из хранилища
+        User online = users.findByLogin("u1").orElseThrow();
+        Wallet live = new Wallet();
+        walletService.addCategory(live, "Такси");
+        walletService.addExpense(live, "Такси", 500, "");
+        online.setWallet(live);
+        // кошелёк, который не читается, считается отдельно и не роняет отчёт
+        users.save(new User("broken", "hash"));
+
+        AnalyticsService analytics = new AnalyticsService(users, storage, new LoginLocks(), new ForkJoinPool(4));
+        AnalyticsService.Report r = analytics.analyze(3);
+
+        assertEquals(51, r.users());
+        assertEquals(1, r.failed());
+        assertEquals(49 * 1000.0, r.totalIncome(), 1e-9);
+        assertEquals(500.0, r.expenseByCategory().get("Такси"), 1e-9);
+        assertEquals(50 * 51 / 2 - 2, r.expenseByCategory().get("Еда"), 1e-9);
+        assertEquals(List.of("u1", "u49", "u48"), r.topSpenders().stream().map(AnalyticsService.Spender::login).toList());
+        // бюджет 5 превышен у u10..u40, у u0 расход 1
+        assertEquals(4, r.budgetBreaches());
+        assertEquals(4, r.usersOverBudget());
+        assertTrue(analytics.buildReport(r).contains("Превышено бюджетов: 4 у 4 пользователей"));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.UserStorage;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.infra.ConcurrentUserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthServiceTest {
+
+    private ConcurrentUserRepository userRepo;
+    private FakeWalletStorage walletStorage;
+    private AuthService auth;
+    private final WalletService walletService = new WalletService();
+
+    @BeforeEach
+    void setUp() {
+        userRepo = new ConcurrentUserRepository();
+        walletStorage = new FakeWalletStorage();
+        auth = new AuthService(userRepo, new FakeUserStorage(), walletStorage);
+    }
+
+    @Test
+    void sessionsOfSameLogin_shareWallet_andLoadItOnce() {
+        auth.register("xana", "pass");
+
+        Session a = auth.openSession("xana", "pass");
+        Session b = auth.openSession("xana", "pass");
+        a.withWallet(w -> {
+            walletService.addCategory(w, "Зарплата");
+            return walletService.addIncome(w, "Зарплата", 100, "");
+        });
+
+        assertEquals(100.0, b.withWallet(Wallet::totalIncome));
+        assertEquals(1, walletStorage.loads.get());
+
+        auth.closeSession(a);
+        assertThrows(IllegalStateException.class, () -> a.withWallet(Wallet::totalIncome));
+        assertEquals(100.0, b.withWallet(Wallet::totalIncome));
+    }
+
+    @Test
+    void concurrentSessions_doNotLoseOperations() throws Exception {
+        auth.register("xana", "pass");
+        auth.register("den", "pass");
+        for (String login : List.of("xana", "den")) {
+            auth.openSession(login, "pass").withWallet(w -> {
+                walletService.addCategory(w, "Еда");
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String login = t % 2 == 0 ? "xana" : "den";
+                tasks.add(pool.submit(() -> {
+                    Session s = auth.openSession(login, "pass");
+                    for (int i = 0; i < 500; i++) {
+                        s.withWallet(w -> walletService.addExpense(w, "Еда", 1, ""));
+                    }
+                }));
+            }
+            for (Future<?> f : tasks) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(2000.0, auth.openSession("xana", "pass").withWallet(Wallet::totalExpense));
+        assertEquals(2000.0, auth.openSession("den", "pass").withWallet(Wallet::totalExpense));
+    }
+
+    @Test
+    void login_closesPreviousSession_savingAndReleasingItsWallet() {
+        auth.register("xana", "pass");
+        auth.register("den", "pass");
+
+        auth.login("xana", "pass");
+        Session first = auth.requireSession();
+        User xana = first.getUser();
+        first.withWallet(w -> {
+            walletService.addCategory(w, "Еда");
+            return null;
+        });
+
+        auth.login("den", "pass");
+        assertFalse(first.isOpen());
+        assertFalse(xana.isWalletLoaded());
+        assertTrue(walletStorage.map.get("xana").getCategories().contains("Еда"));
+        assertEquals("den", auth.requireUser().getLogin());
+
+        assertThrows(IllegalArgumentException.class, () -> auth.login("xana", "wrong"));
+        assertEquals("den", auth.requireUser().getLogin());
+    }
+
+    @Test
+    void closeSession_whileWithWalletWaitsForLock_doesNotTouchReleasedWallet() throws Exception {
+        LoginLocks locks = new LoginLocks();
+        auth = new AuthService(userRepo, new FakeUserStorage(), walletStorage, locks);
+        auth.register("xana", "pass");
+        Session s = auth.openSession("xana", "pass");
+        s.withWallet(w -> {
+            walletService.addCategory(w, "Еда");
+            return null;
+        });
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger applied = new AtomicInteger();
+            Future<?> write = locks.withLock("xana", () -> {
+                // запись уже прошла бы старую проверку открытости и ждёт блокировку логина
+                Future<?> f = pool.submit(() -> s.withWallet(w -> {
+                    applied.incrementAndGet();
+                    w.getCategories().clear();
+                    return null;
+                }));
+                while (!locks.lockFor("xana").hasQueuedThreads()) Thread.onSpinWait();
+                auth.closeSession(s);
+                return f;
+            });
+
+            Exception e = assertThrows(Exception.class, write::get);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals(0, applied.get());
+            assertTrue(walletStorage.map.get("xana").getCategories().contains("Еда"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentRegister_sameLogin_onlyOneSucceeds() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicInteger ok = new AtomicInteger();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(pool.submit(() -> {
+                    try {
+                        auth.register("xana", "pass");
+                        ok.incrementAndGet();
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }));
+            }
+            for (Future<?> f : tasks) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, ok.get());
+    }
+
+    @Test
+    void login_upgradesLegacyHash_andSavesUser() {
+        List<User> saved = new ArrayList<>();
+        UserStorage storage = new FakeUserStorage() {
+            @Override
+            public void saveUser(User user, Supplier<List<User>> all) {
+                saved.add(user);
+            }
+        };
+        Passwords passwords = new Passwords(Passwords.pbkdf2(1000), List.of(Passwords.SHA256), 1, 4, 0);
+        auth = new AuthService(userRepo, storage, walletStorage, new LoginLocks(), passwords);
+        userRepo.save(new User("xana", Passwords.sha256("pass")));
+
+        auth.openSession("xana", "pass");
+        String upgraded = userRepo.findByLogin("xana").orElseThrow().getPasswordHash();
+        assertTrue(upgraded.startsWith("pbkdf2-sha256$1000$"));
+        assertEquals(1, saved.size());
+
+        auth.openSession("xana", "pass");
+        assertEquals(upgraded, userRepo.findByLogin("xana").orElseThrow().getPasswordHash());
+        assertEquals(1, saved.size());
+        assertThrows(IllegalArgumentException.class, () -> auth.openSession("xana", "wrong"));
+    }
+
+    private static class FakeWalletStorage implements WalletStorage {
+        private final Map<String, Wallet> map = new ConcurrentHashMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public Wallet loadWallet(String login) {
+            loads.incrementAndGet();
+            return map.getOrDefault(login, new Wallet());
+        }
+
+        @Override
+        public void saveWallet(String login, Wallet wallet) {
+            map.put(login, wallet);
+        }
+    }
+
+    private static class FakeUserStorage implements UserStorage {
+        @Override
+        public List<User> loadAll() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void saveAll(List<User> users) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.finance.core.services;
+
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final WalletService walletService = new WalletService();
+
+    @Test
+    void csv_createsCategories_andReportsAlertsOnce() throws Exception {
+        Path csv = dir.resolve("statement.csv");
+        Files.writeString(csv, """
+                date,type,category,amount,note
+                2026-01-05,expense,Еда,300,"обед, кафе"
+                2026-01-06T09:30,income,Зарплата,5000,
+                2026-01-07,,Еда,-900,ужин
+                """);
+
+        Wallet w = new Wallet();
+        w.getCategories().add("Еда");
+        w.getBudgetsByCategory().put("Еда", 1000.0);
+
+        List<Operation> ops = new ImportService(walletService).parse(csv);
+        List<String> alerts = walletService.appendAll(w, ops);
+
+        assertEquals(3, w.getOperations().size());
+        assertEquals("обед, кафе", w.getOperations().get(0).getNote());
+        assertEquals(LocalDateTime.of(2026, 1, 6, 9, 30), w.getOperations().get(1).getCreatedAt());
+        assertEquals(OperationType.EXPENSE, w.getOperations().get(2).getType());
+        assertEquals(1200.0, w.totalExpense());
+        assertTrue(w.getCategories().contains("Зарплата"));
+        assertEquals(List.of("⚠ Превышен бюджет по категории 'Еда' на 200.0"), alerts);
+    }
+
+    @Test
+    void csv_quotedNewlines_andThousandsSeparators() throws Exception {
+        Path csv = dir.resolve("statement.csv");
+        Files.writeString(csv, "date,type,category,amount,note\n"
+                + "2026-01-05,income,Зарплата,\"1,234.56\",\"аванс\r\nи премия\"\n"
+                + "2026-01-06;expense;Еда;1.234,50;\n".replace(';', ',').replace("1.234,50", "\"1.234,50\"")
+                + "2026-01-07,expense,Еда,\"1 000\",\"обед \"\"бизнес\"\"\"\n");
+
+        List<Operation> ops = new ImportService(walletService).parse(csv);
+
+        assertEquals(3, ops.size());
+        assertEquals(123456, ops.get(0).getAmountMinor());
+        assertEquals("аванс\r\nи премия", ops.get(0).getNote());
+        assertEquals(123450, ops.get(1).getAmountMinor());
+        assertEquals(100000, ops.get(2).getAmountMinor());
+        assertEquals("обед \"бизнес\"", ops.get(2).getNote());
+        assertEquals(150, ImportService.parseAmount("1,5"));
+        assertEquals(123456700, ImportService.parseAmount("1,234,567"));
+    }
+
+    @Test
+    void bigCsv_isParsedInChunks_inFileOrder() throws Exception {
+        Path csv = dir.resolve("big.csv");
+        int rows = 60_000;
+        try (BufferedWriter out = Files.newBufferedWriter(csv)) {
+            for (int i = 0; i < rows; i++) {
+                out.write("2026-02-01;расход;Категория " + (i % 7) + ";1,5;строка " + i + " с длинным комментарием\n");
+            }
+        }
+        assertTrue(Files.size(csv) > 2 << 20);
+
+        List<Operation> ops = new ImportService(walletService, new ForkJoinPool(4)).parse(csv);
+
+        assertEquals(rows, ops.size());
+        for (int i = 0; i < rows; i += 997) assertEquals("строка " + i + " с длинным комментарием", ops.get(i).getNote());
+        assertEquals(1.5 * rows, ops.stream().mapToDouble(Operation::getAmount).sum(), 1e-6);
+    }
+
+    @Test
+    void badLine_reportsLineNumber_andImportsNothing() throws Exception {
+        Path csv = dir.resolve("bad.csv");
+        Files.writeString(csv, "2026-01-05,expense,Еда,300\n2026-01-06,expense,Еда,abc\n");
+
+        var e = assertThrows(IllegalArgumentException.class, () -> new ImportService(walletService).parse(csv));
+        assertTrue(e.getMessage().startsWith("Строка 2:"), e.getMessage());
+    }
+
+    @Test
+    void errors_countPhysicalLines_andNegativeIncomeIsRejected() throws Exception {
+        ImportService importer = new ImportService(walletService);
+        Path csv = dir.resolve("multiline.csv");
+        Files.writeString(csv, "2026-01-05,expense,Еда,300,\"обед\nв кафе\n(чек)\"\n2026-01-06,expense,Еда,abc\n");
+        var e = assertThrows(IllegalArgumentException.class, () -> importer.parse(csv));
+        assertTrue(e.getMessage().startsWith("Строка 4:"), e.getMessage());
+
+        Files.writeString(csv, "2026-01-05,expense,Еда,-300\n2026-01-06,income,Зарплата,-100\n");
+        e = assertThrows(IllegalArgumentException.class, () -> importer.parse(csv));
+        assertTrue(e.getMessage().startsWith("Строка 2: отрицательная сумма дохода"), e.getMessage());
+
+        Path ofx = dir.resolve("refund.ofx");
+        Files.writeString(ofx, "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20260105\n<TRNAMT>300.00\n</STMTTRN>\n");
+        e = assertThrows(IllegalArgumentException.class, () -> importer.parse(ofx));
+        assertTrue(e.getMessage().startsWith("Запись 1:"), e.getMessage());
+    }
+
+    @Test
+    void ofx_transactionsGoToImportCategory() throws Exception {
+        Path ofx = dir.resolve("statement.ofx");
+        Files.writeString(ofx, """
+                OFXHEADER:100
+                <OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>
+                <STMTTRN>
+                <TRNTYPE>DEBIT
+                <DTPOSTED>20260105120000.000[+3:MSK]
+                <TRNAMT>-300.00
+                <NAME>Кафе
+                <MEMO>обед
+                </STMTTRN>
+                <STMTTRN>
+                <TRNTYPE>CREDIT
+                <DTPOSTED>20260106
+                <TRNAMT>5000.00
+                <NAME>Работодатель
+                </STMTTRN>
+                </BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>
+                """);
+
+        List<Operation> ops = new ImportService(walletService).parse(ofx);
+
+        assertEquals(2, ops.size());
+        assertEquals(OperationType.EXPENSE, ops.get(0).getType());
+        assertEquals(300.0, ops.get(0).getAmount());
+        assertEquals("Кафе: обед", ops.get(0).getNote());
+        assertEquals(LocalDateTime.of(2026, 1, 5, 12, 0), ops.get(0).getCreatedAt());
+        assertEquals(ImportService.OFX_CATEGORY, ops.get(1).getCategory());
+    }
+}
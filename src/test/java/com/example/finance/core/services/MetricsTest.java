@@ -0,0 +1,44 @@
+package com.example.finance.core.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void histogram_givesPercentilesWithinBucketPrecision_andCountersSumAcrossThreads(@TempDir Path dir) throws Exception {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram h = metrics.timer("op");
+        for (long v = 1; v <= 100_000; v++) h.record(v * 1000);
+
+        Metrics.Snapshot s = metrics.histograms().get(0);
+        assertEquals(100_000, s.count());
+        assertEquals(100_000_000L, s.max());
+        assertEquals(50_000_000, s.p50(), 50_000_000 * 0.04);
+        assertEquals(99_000_000, s.p99(), 99_000_000 * 0.04);
+        assertEquals(99_900_000, s.p999(), 99_900_000 * 0.04);
+        assertEquals(50_000_500, s.mean(), 1);
+
+        for (long v = 0; v < 1_000_000; v += 997) {
+            assertTrue(Metrics.upperBound(Metrics.index(v)) >= v, "значение не выше границы своей корзины");
+        }
+
+        Metrics.Counter c = metrics.counter("events");
+        IntStream.range(0, 8).parallel().forEach(i -> {
+            for (int k = 0; k < 10_000; k++) c.increment();
+        });
+        assertEquals(80_000L, metrics.counters().get("events"));
+
+        Path file = dir.resolve("metrics.txt");
+        metrics.dump(file);
+        String report = Files.readString(file);
+        assertTrue(report.contains("op"));
+        assertTrue(report.contains("events"));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.finance.core.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordsTest {
+
+    @Test
+    void verify_acceptsLegacyAndOutdatedHashes_andAsksToRehashThem() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", Passwords.sha256("abc"));
+
+        Passwords passwords = new Passwords(Passwords.pbkdf2(2000), List.of(Passwords.SHA256), 2, 16, 16);
+        String hash = passwords.hash("secret");
+        assertTrue(hash.startsWith("pbkdf2-sha256$2000$"));
+        assertNotEquals(hash, passwords.hash("secret"), "соль у каждого хеша своя");
+
+        assertEquals(Passwords.Check.OK, passwords.verify("secret", hash));
+        assertEquals(Passwords.Check.OK, passwords.verify("secret", hash)); // из кэша проверок
+        assertEquals(Passwords.Check.MISMATCH, passwords.verify("wrong", hash));
+
+        assertEquals(Passwords.Check.OK_REHASH, passwords.verify("secret", Passwords.sha256("secret")));
+        assertEquals(Passwords.Check.MISMATCH, passwords.verify("wrong", Passwords.sha256("secret")));
+        assertEquals(Passwords.Check.OK_REHASH, passwords.verify("secret", Passwords.pbkdf2(1000).hash("secret")));
+        assertEquals(Passwords.Check.MISMATCH, passwords.verify("secret", "pbkdf2-sha256$2000$!!$??"));
+        assertEquals(Passwords.Check.MISMATCH, passwords.verify("secret", "plain"));
+    }
+}
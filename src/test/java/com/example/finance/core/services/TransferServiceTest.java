@@ -8,8 +8,13 @@ import com.example.finance.infra.InMemoryUserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -106,8 +111,125 @@ public class TransferServiceTest {
                 () -> transferService.transfer(from, "nope", 10, ""));
     }
 
+    @Test
+    void transfer_reusesLoadedRecipientWallet() {
+        User from = new User("xana", "hash");
+        User to = new User("den", "hash");
+        from.setWallet(new Wallet());
+        to.setWallet(new Wallet());
+        userRepo.save(from);
+        userRepo.save(to);
+
+        transferService.transfer(from, "den", 300, "");
+
+        assertEquals(300.0, to.getWallet().totalIncome());
+    }
+
+    @Test
+    void concurrentTransfers_inBothDirections_keepTotal() throws Exception {
+        User xana = new User("xana", "hash");
+        User den = new User("den", "hash");
+        xana.setWallet(new Wallet());
+        den.setWallet(new Wallet());
+        userRepo.save(xana);
+        userRepo.save(den);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                User from = t % 2 == 0 ? xana : den;
+                String to = t % 2 == 0 ? "den" : "xana";
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 250; i++) transferService.transfer(from, to, 1, "");
+                }));
+            }
+            for (Future<?> f : tasks) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(500.0, xana.getWallet().totalExpense());
+        assertEquals(500.0, xana.getWallet().totalIncome());
+        assertEquals(500.0, den.getWallet().totalExpense());
+        assertEquals(500.0, den.getWallet().totalIncome());
+    }
+
+    @Test
+    void transferBatch_loadsAndSavesEachWalletOnce() {
+        User from = new User("xana", "hash");
+        from.setWallet(new Wallet());
+        userRepo.save(from);
+        userRepo.save(new User("den", "hash"));
+        userRepo.save(new User("max", "hash"));
+
+        transferService.transferBatch(from, List.of(
+                TransferService.Leg.of("den", 100, "зарплата"),
+                TransferService.Leg.of("max", 200, ""),
+                TransferService.Leg.of("den", 50, "премия")));
+
+        assertEquals(350.0, from.getWallet().totalExpense());
+        assertEquals(150.0, walletStorage.loadWallet("den").totalIncome());
+        assertEquals(200.0, walletStorage.loadWallet("max").totalIncome());
+        assertEquals(Map.of("xana", 1, "den", 1, "max", 1), walletStorage.saves);
+    }
+
+    @Test
+    void transferBatch_invalidLeg_changesNothing() {
+        User from = new User("xana", "hash");
+        from.setWallet(new Wallet());
+        userRepo.save(from);
+        userRepo.save(new User("den", "hash"));
+
+        assertThrows(IllegalArgumentException.class, () -> transferService.transferBatch(from, List.of(
+                TransferService.Leg.of("den", 100, ""),
+                TransferService.Leg.of("nope", 10, ""))));
+
+        assertEquals(0, from.getWallet().getOperations().size());
+        assertTrue(walletStorage.saves.isEmpty());
+    }
+
+    @Test
+    void transfer_doesNotKeepOfflineRecipientWallet_andRollsBackWhenSaveFails() {
+        User from = new User("xana", "hash");
+        from.setWallet(new Wallet());
+        User den = new User("den", "hash");
+        userRepo.save(from);
+        userRepo.save(den);
+
+        transferService.transfer(from, "den", 100, "");
+        assertFalse(den.isWalletLoaded());
+        assertEquals(100.0, walletStorage.loadWallet("den").totalIncome());
+
+        walletStorage.failSaves = true;
+        assertThrows(RuntimeException.class, () -> transferService.transfer(from, "den", 40, ""));
+        assertEquals(1, from.getWallet().getOperations().size());
+        assertEquals(100.0, from.getWallet().totalExpense());
+        assertEquals(100.0, walletStorage.loadWallet("den").totalIncome());
+    }
+
+    @Test
+    void transfer_afterSenderLoggedOut_failsWithoutSaving() {
+        User from = new User("xana", "hash");
+        from.setWallet(new Wallet());
+        walletService.addCategory(from.getWallet(), "Еда");
+        walletStorage.saveWallet("xana", from.getWallet());
+        userRepo.save(from);
+        userRepo.save(new User("den", "hash"));
+        walletStorage.saves.clear();
+
+        from.releaseWallet();
+        assertThrows(IllegalStateException.class, () -> transferService.transfer(from, "den", 10, ""));
+
+        assertTrue(walletStorage.saves.isEmpty());
+        assertTrue(walletStorage.loadWallet("xana").getCategories().contains("Еда"));
+        assertEquals(0, walletStorage.loadWallet("den").getOperations().size());
+    }
+
     private static class FakeWalletStorage implements WalletStorage {
-        private final Map<String, Wallet> map = new HashMap<>();
+        private final Map<String, Wallet> map = new ConcurrentHashMap<>();
+        final Map<String, Integer> saves = new ConcurrentHashMap<>();
+        volatile boolean failSaves;
 
         @Override
         public Wallet loadWallet(String login) {
@@ -116,7 +238,9 @@ public class TransferServiceTest {
 
         @Override
         public void saveWallet(String login, Wallet wallet) {
+            if (failSaves) throw new RuntimeException("диск недоступен");
             map.put(login, wallet);
+            saves.merge(login, 1, Integer::sum);
         }
     }
 }
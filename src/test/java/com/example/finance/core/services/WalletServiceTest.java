@@ -6,9 +6,10 @@ import com.example.finance.core.model.Wallet;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.lang.reflect.Field;
+import java.io.StringWriter;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 
@@ -175,10 +176,59 @@ public class WalletServiceTest {
         assertFalse(reportJan.contains("Общий доход: 3000.0"));
     }
 
-    private static void setCreatedAt(Operation op, LocalDateTime dt) throws Exception {
-        Field f = op.getClass().getDeclaredField("createdAt");
-        f.setAccessible(true);
-        f.set(op, dt);
+    @Test
+    void seriesReport_clipsEdgeBucketsToRange() {
+        for (int i = 0; i < 5; i++) walletService.addIncome(w, "Зарплата", 1 << i, "");
+        setCreatedAt(w.getOperations().get(0), LocalDateTime.of(2026, 1, 14, 23, 59));
+        setCreatedAt(w.getOperations().get(1), LocalDateTime.of(2026, 1, 15, 0, 0));
+        setCreatedAt(w.getOperations().get(2), LocalDateTime.of(2026, 2, 20, 12, 0));
+        setCreatedAt(w.getOperations().get(3), LocalDateTime.of(2026, 3, 10, 23, 59));
+        setCreatedAt(w.getOperations().get(4), LocalDateTime.of(2026, 3, 11, 0, 0));
+
+        String months = walletService.buildSeriesReport(w, ChronoUnit.MONTHS, LocalDate.of(2026, 1, 15), LocalDate.of(2026, 3, 10));
+        assertTrue(months.contains("  2026-01: доход 2.0,"), months);
+        assertTrue(months.contains("  2026-02: доход 4.0,"), months);
+        assertTrue(months.contains("  2026-03: доход 8.0,"), months);
+
+        String years = walletService.buildSeriesReport(w, ChronoUnit.YEARS, LocalDate.of(2026, 1, 15), LocalDate.of(2026, 3, 10));
+        assertTrue(years.contains("  2026: доход 14.0,"), years);
+    }
+
+    @Test
+    void statsReport_writerMatchesStringAndSortsCategories() throws Exception {
+        walletService.setBudget(w, "Такси", 100);
+        walletService.addIncome(w, "Зарплата", 1000, "");
+        walletService.addExpense(w, "Такси", 150, "");
+        walletService.addExpense(w, "Еда", 40, "");
+
+        String report = walletService.buildStatsReport(w);
+        StringWriter out = new StringWriter();
+        walletService.writeStatsReport(w, out);
+
+        assertEquals(report, out.toString());
+        assertTrue(report.indexOf("  Еда: 40.0") < report.indexOf("  Такси: 150.0"));
+        assertTrue(report.contains("  Такси: 100.0, Оставшийся бюджет: -50.0"));
+        // экземпляр отчёта переиспользуется: следующий отчёт не тянет данные прошлого
+        assertFalse(walletService.buildStatsReport(new Wallet()).contains("Такси"));
+    }
+
+    @Test
+    void minorUnits_keepExactSums_andReportPrintsWithoutExponent() {
+        walletService.setBudgetMinor(w, "Такси", 1_000_000_000L);
+        walletService.addIncomeMinor(w, "Зарплата", 2_000_000_001L, "");
+        List<String> alerts = walletService.addExpenseMinor(w, "Такси", 1_500_000_000L, "");
+
+        assertEquals(2_000_000_001L, w.totalIncomeMinor());
+        assertEquals(List.of("⚠ Превышен бюджет по категории 'Такси' на 5000000.0"), alerts);
+        String report = walletService.buildStatsReport(w);
+        assertTrue(report.contains("Общий доход: 20000000.01"), report);
+        assertTrue(report.contains("  Такси: 10000000.0, Оставшийся бюджет: -5000000.0"), report);
+        assertThrows(IllegalArgumentException.class, () -> walletService.addIncomeMinor(w, "Зарплата", 0, ""));
+    }
+
+    // через сеттер: кошелёк переносит операцию в сводках и индексах по времени
+    private static void setCreatedAt(Operation op, LocalDateTime dt) {
+        op.setCreatedAt(dt);
     }
 }
 
@@ -0,0 +1,149 @@
+package com.example.finance.http;
+
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.AuthService;
+import com.example.finance.core.services.TransferService;
+import com.example.finance.core.services.WalletService;
+import com.example.finance.infra.ConcurrentUserRepository;
+import com.example.finance.infra.JsonUserStorage;
+import com.example.finance.infra.JsonWalletStorage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpApiServerTest {
+
+    @TempDir
+    Path dir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper om = new ObjectMapper();
+    private JsonWalletStorage walletStorage;
+    private HttpApiServer server;
+    private String base;
+
+    @BeforeEach
+    void start() throws Exception {
+        walletStorage = new JsonWalletStorage(dir);
+        ConcurrentUserRepository users = new ConcurrentUserRepository();
+        AuthService auth = new AuthService(users, new JsonUserStorage(dir.resolve("users.json")), walletStorage);
+        WalletService walletService = new WalletService();
+        server = new HttpApiServer(auth, walletService, new TransferService(users, walletStorage, walletService));
+        base = "http://localhost:" + server.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void operationsAndTransfer_overJson() throws Exception {
+        for (String login : new String[]{"xana", "bob"}) {
+            assertEquals(200, post("/api/register", null, "{\"login\":\"" + login + "\",\"password\":\"pass\"}").statusCode());
+        }
+        String token = om.readTree(post("/api/login", null, "{\"login\":\"xana\",\"password\":\"pass\"}").body()).get("token").asText();
+
+        assertEquals(401, post("/api/categories", "wrong", "{\"name\":\"Еда\"}").statusCode());
+        assertEquals(200, post("/api/categories", token, "{\"name\":\"Еда\"}").statusCode());
+        post("/api/categories", token, "{\"name\":\"Зарплата\"}");
+        post("/api/operations", token, "{\"type\":\"income\",\"category\":\"Зарплата\",\"amount\":1000}");
+        HttpResponse<String> bad = post("/api/operations", token, "{\"type\":\"expense\",\"category\":\"Такси\",\"amount\":10}");
+        assertEquals(400, bad.statusCode());
+        assertTrue(bad.body().contains("Такси"), bad.body());
+        assertEquals(200, post("/api/transfer", token, "{\"to\":\"bob\",\"amount\":300,\"note\":\"долг\"}").statusCode());
+
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(URI.create(base + "/api/stats"))
+                .header("Authorization", "Bearer " + token).GET().build(), HttpResponse.BodyHandlers.ofString());
+        JsonNode json = om.readTree(stats.body());
+        assertEquals(1000.0, json.get("totalIncome").asDouble());
+        assertEquals(300.0, json.get("totalExpense").asDouble());
+
+        assertEquals(200, post("/api/logout", token, "").statusCode());
+        assertEquals(401, post("/api/logout", token, "").statusCode());
+        Wallet bob = walletStorage.loadWallet("bob");
+        assertEquals(300.0, bob.totalIncome());
+    }
+
+    @Test
+    void loadGenerator_reportsLatencies() throws Exception {
+        LoadGenerator.Report report = new LoadGenerator(base).run(2, 4, Duration.ofMillis(300));
+
+        assertTrue(report.requests() > 0);
+        assertEquals(0, report.errors());
+        assertTrue(report.p50Micros() <= report.p99Micros());
+    }
+
+    @Test
+    void rejectsBadNoteAndHugeBody_andExpiresIdleSessions() throws Exception {
+        post("/api/register", null, "{\"login\":\"xana\",\"password\":\"pass\"}");
+        String token = om.readTree(post("/api/login", null, "{\"login\":\"xana\",\"password\":\"pass\"}").body()).get("token").asText();
+        post("/api/categories", token, "{\"name\":\"Еда\"}");
+
+        assertEquals(400, post("/api/operations", token, "{\"type\":\"income\",\"category\":\"Еда\",\"amount\":1,\"note\":5}").statusCode());
+        assertEquals(413, post("/api/categories", token, "{\"name\":\"" + "x".repeat(HttpApiServer.MAX_BODY_BYTES) + "\"}").statusCode());
+        server.close();
+
+        WalletService walletService = new WalletService();
+        ConcurrentUserRepository users = new ConcurrentUserRepository();
+        AuthService auth = new AuthService(users, new JsonUserStorage(dir.resolve("users.json")), walletStorage);
+        users.replaceAll(new JsonUserStorage(dir.resolve("users.json")).loadAll());
+        server = new HttpApiServer(auth, walletService, new TransferService(users, walletStorage, walletService),
+                Duration.ofMillis(100));
+        base = "http://localhost:" + server.start(0);
+        token = om.readTree(post("/api/login", null, "{\"login\":\"xana\",\"password\":\"pass\"}").body()).get("token").asText();
+        post("/api/categories", token, "{\"name\":\"Такси\"}");
+
+        Thread.sleep(500);
+        assertEquals(401, post("/api/categories", token, "{\"name\":\"Кино\"}").statusCode());
+        assertTrue(walletStorage.loadWallet("xana").getCategories().contains("Такси"));
+    }
+
+    @Test
+    void close_waitsForAcceptedRequests_beforeSavingSessions() throws Exception {
+        post("/api/register", null, "{\"login\":\"xana\",\"password\":\"pass\"}");
+        String token = om.readTree(post("/api/login", null, "{\"login\":\"xana\",\"password\":\"pass\"}").body()).get("token").asText();
+        post("/api/categories", token, "{\"name\":\"Зарплата\"}");
+
+        AtomicInteger acked = new AtomicInteger();
+        CountDownLatch warm = new CountDownLatch(20);
+        Thread writer = new Thread(() -> {
+            try {
+                while (post("/api/operations", token, "{\"type\":\"income\",\"category\":\"Зарплата\",\"amount\":1}").statusCode() == 200) {
+                    acked.incrementAndGet();
+                    warm.countDown();
+                }
+            } catch (Exception ignored) {
+                // сервер остановлен
+            }
+        });
+        writer.start();
+        assertTrue(warm.await(10, TimeUnit.SECONDS));
+        server.close();
+        writer.join();
+
+        // всё, что сервер подтвердил, попало в сохранённый кошелёк
+        assertTrue(walletStorage.loadWallet("xana").totalIncome() >= acked.get());
+    }
+
+    private HttpResponse<String> post(String path, String token, String json) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path)).POST(HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
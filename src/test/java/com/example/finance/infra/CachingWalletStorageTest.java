@@ -0,0 +1,107 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.ports.WalletStorage;
+import com.example.finance.core.services.LoginLocks;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingWalletStorageTest {
+
+    private final CountingStorage delegate = new CountingStorage();
+    private final LoginLocks locks = new LoginLocks();
+
+    @Test
+    void cachedLogin_isLoadedOnce() {
+        try (CachingWalletStorage cache = new CachingWalletStorage(delegate, locks::lockFor)) {
+            Wallet first = cache.loadWallet("xana");
+            assertSame(first, cache.loadWallet("xana"));
+            assertEquals(1, delegate.loads.get("xana"));
+        }
+    }
+
+    @Test
+    void save_isDeferredUntilFlush() {
+        try (CachingWalletStorage cache = new CachingWalletStorage(delegate, locks::lockFor, 10, 1000, 3_600_000, 100)) {
+            Wallet w = cache.loadWallet("xana");
+            w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 100, ""));
+            cache.saveWallet("xana", w);
+            assertNull(delegate.saves.get("xana"));
+
+            cache.flush();
+            assertEquals(1, delegate.saves.get("xana"));
+
+            cache.flush();
+            assertEquals(1, delegate.saves.get("xana"));
+        }
+    }
+
+    @Test
+    void evictedDirtyWallet_isSavedFirst() {
+        try (CachingWalletStorage cache = new CachingWalletStorage(delegate, locks::lockFor, 1, 1000, 3_600_000, 100)) {
+            Wallet w = cache.loadWallet("xana");
+            w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 100, ""));
+            cache.saveWallet("xana", w);
+
+            cache.loadWallet("den");
+            assertEquals(1, delegate.saves.get("xana"));
+
+            assertEquals(100.0, cache.loadWallet("xana").totalIncome());
+            assertEquals(2, delegate.loads.get("xana"));
+        }
+    }
+
+    @Test
+    void walletOfLoginLockedByCaller_isNotEvicted() {
+        try (CachingWalletStorage cache = new CachingWalletStorage(delegate, locks::lockFor, 1, 1000, 3_600_000, 100)) {
+            locks.withLock("xana", () -> {
+                Wallet w = cache.loadWallet("xana");
+                cache.loadWallet("den");
+                assertSame(w, cache.loadWallet("xana"));
+            });
+            assertEquals(1, delegate.loads.get("xana"));
+        }
+    }
+
+    @Test
+    void failedBackgroundFlush_keepsWalletDirty_andSurfacesOnFlush() throws Exception {
+        delegate.failSaves = true;
+        try (CachingWalletStorage cache = new CachingWalletStorage(delegate, locks::lockFor, 10, 1000, 20, 100)) {
+            Wallet w = cache.loadWallet("xana");
+            cache.saveWallet("xana", w);
+            Thread.sleep(200);
+
+            delegate.failSaves = false;
+            RuntimeException e = assertThrows(RuntimeException.class, cache::flush);
+            assertEquals("диск недоступен", e.getMessage());
+            assertSame(w, delegate.map.get("xana"), "кошелёк остался грязным и сохранён повторной попыткой");
+            cache.flush();
+        }
+    }
+
+    private static class CountingStorage implements WalletStorage {
+        final Map<String, Wallet> map = new HashMap<>();
+        final Map<String, Integer> loads = new HashMap<>();
+        final Map<String, Integer> saves = new HashMap<>();
+        volatile boolean failSaves;
+
+        @Override
+        public synchronized Wallet loadWallet(String login) {
+            loads.merge(login, 1, Integer::sum);
+            return map.getOrDefault(login, new Wallet());
+        }
+
+        @Override
+        public synchronized void saveWallet(String login, Wallet wallet) {
+            if (failSaves) throw new RuntimeException("диск недоступен");
+            saves.merge(login, 1, Integer::sum);
+            map.put(login, wallet);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.WalletService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarWalletStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip_keepsOperationsCategoriesAndBudgets() {
+        ColumnarWalletStorage storage = new ColumnarWalletStorage(dir);
+        Wallet w = new Wallet();
+        w.getCategories().add("Еда");
+        w.getCategories().add("Зарплата");
+        w.getBudgetsByCategory().put("Еда", 1000.0);
+        Operation income = new Operation(OperationType.INCOME, "Зарплата", 5000, "аванс");
+        income.setCreatedAt(LocalDateTime.of(2026, 1, 10, 12, 30, 15, 123_000_000));
+        w.getOperations().add(income);
+        w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, null));
+        storage.saveWallet("xana", w);
+
+        Wallet loaded = storage.loadWallet("xana");
+
+        assertEquals(2, loaded.getOperations().size());
+        Operation first = loaded.getOperations().get(0);
+        assertEquals(income.getId(), first.getId());
+        assertEquals(OperationType.INCOME, first.getType());
+        assertEquals("Зарплата", first.getCategory());
+        assertEquals("аванс", first.getNote());
+        assertEquals(income.getCreatedAt(), first.getCreatedAt());
+        assertNull(loaded.getOperations().get(1).getNote());
+
+        assertEquals(5000.0, loaded.totalIncome());
+        assertEquals(300.0, loaded.expenseOf("Еда"));
+        assertEquals(1000.0, loaded.getBudgetsByCategory().get("Еда"));
+        assertTrue(loaded.getCategories().contains("Зарплата"));
+    }
+
+    @Test
+    void mappedWallet_supportsServiceQueriesAppendsAndEdits() {
+        ColumnarWalletStorage storage = new ColumnarWalletStorage(dir);
+        WalletService service = new WalletService();
+        Wallet w = new Wallet();
+        service.addCategory(w, "Еда");
+        service.addCategory(w, "Такси");
+        service.addExpense(w, "Еда", 300, "");
+        service.addExpense(w, "Такси", 200, "");
+        storage.saveWallet("xana", w);
+
+        Wallet mapped = storage.loadWallet("xana");
+        assertEquals(500.0, service.sumByCategories(mapped, OperationType.EXPENSE, List.of("Еда", "Такси")));
+        LocalDate today = LocalDate.now();
+        assertTrue(service.buildStatsReport(mapped, today, today).contains("Общие расходы: 500.0"));
+
+        service.addExpense(mapped, "Еда", 100, "");
+        assertEquals(400.0, mapped.expenseOf("Еда"));
+
+        mapped.getOperations().remove(1);
+        assertEquals(2, mapped.getOperations().size());
+        assertEquals(400.0, mapped.totalExpense());
+
+        storage.saveWallet("xana", mapped);
+        Wallet reloaded = storage.loadWallet("xana");
+        assertEquals(400.0, reloaded.totalExpense());
+        assertEquals(0.0, reloaded.expenseOf("Такси"));
+    }
+}
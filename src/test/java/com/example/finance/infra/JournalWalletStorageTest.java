@@ -0,0 +1,184 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.PeriodicBudget;
+import com.example.finance.core.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalWalletStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void save_appendsOnlyDelta_andLoadReplaysJournal() throws Exception {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            w.getCategories().add("Еда");
+            w.getBudgetsByCategory().put("Еда", 1000.0);
+            w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, "обед"));
+            storage.saveWallet("xana", w);
+
+            long afterFirst = Files.size(dir.resolve("xana.wallet.journal"));
+            storage.saveWallet("xana", w);
+            assertEquals(afterFirst, Files.size(dir.resolve("xana.wallet.journal")));
+
+            w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 5000, ""));
+            w.getBudgetsByCategory().put("Еда", 1500.0);
+            w.periodicBudgets().put("Еда", new PeriodicBudget(BudgetPeriod.MONTH, 400.0, false, LocalDate.of(2026, 1, 1)));
+            storage.saveWallet("xana", w);
+        }
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet loaded = storage.loadWallet("xana");
+            assertEquals(2, loaded.getOperations().size());
+            assertEquals("обед", loaded.getOperations().get(0).getNote());
+            assertEquals(300.0, loaded.totalExpense());
+            assertEquals(5000.0, loaded.totalIncome());
+            assertTrue(loaded.getCategories().contains("Еда"));
+            assertEquals(1500.0, loaded.getBudgetsByCategory().get("Еда"));
+            assertEquals(new PeriodicBudget(BudgetPeriod.MONTH, 400.0, false, LocalDate.of(2026, 1, 1)),
+                    loaded.periodicBudgets().get("Еда"));
+        }
+    }
+
+    @Test
+    void compaction_writesSnapshot_andKeepsData() {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir, 1, 0, 3)) {
+            Wallet w = storage.loadWallet("den");
+            for (int i = 0; i < 10; i++) {
+                w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 100, "#" + i));
+                storage.saveWallet("den", w);
+            }
+        }
+        assertTrue(Files.exists(dir.resolve("den.wallet.snapshot")));
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet loaded = storage.loadWallet("den");
+            assertEquals(10, loaded.getOperations().size());
+            assertEquals("#9", loaded.getOperations().get(9).getNote());
+            assertEquals(1000.0, loaded.totalIncome());
+        }
+    }
+
+    @Test
+    void damagedSnapshot_failsLoadInsteadOfDroppingHistory() throws Exception {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir, 1, 0, 3)) {
+            Wallet w = storage.loadWallet("den");
+            for (int i = 0; i < 10; i++) {
+                w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 100, "#" + i));
+                storage.saveWallet("den", w);
+            }
+        }
+        Path snapshot = dir.resolve("den.wallet.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(snapshot, bytes);
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> storage.loadWallet("den"));
+            assertTrue(e.getMessage().contains("повреждён"), e.getMessage());
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(snapshot));
+    }
+
+    @Test
+    void editedHistory_isRewrittenAsSnapshot() {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            w.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, ""));
+            w.getOperations().add(new Operation(OperationType.EXPENSE, "Такси", 200, ""));
+            storage.saveWallet("xana", w);
+
+            w.getOperations().remove(0);
+            w.getOperations().get(0).setCreatedAt(LocalDateTime.of(2026, 1, 1, 10, 0));
+            storage.saveWallet("xana", w);
+        }
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet loaded = storage.loadWallet("xana");
+            assertEquals(1, loaded.getOperations().size());
+            assertEquals("Такси", loaded.getOperations().get(0).getCategory());
+            assertEquals(LocalDateTime.of(2026, 1, 1, 10, 0), loaded.getOperations().get(0).getCreatedAt());
+        }
+    }
+
+    @Test
+    void tornTail_isDiscarded() throws Exception {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 100, ""));
+            storage.saveWallet("xana", w);
+        }
+        // имитируем сбой посреди дописывания следующей записи
+        Files.write(dir.resolve("xana.wallet.journal"), new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            assertEquals(1, w.getOperations().size());
+            w.getOperations().add(new Operation(OperationType.INCOME, "Зарплата", 50, ""));
+            storage.saveWallet("xana", w);
+        }
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            assertEquals(150.0, storage.loadWallet("xana").totalIncome());
+        }
+    }
+
+    @Test
+    void legacyJsonWallet_isMigratedOnFirstSave() {
+        Wallet legacy = new Wallet();
+        legacy.getCategories().add("Еда");
+        legacy.getOperations().add(new Operation(OperationType.EXPENSE, "Еда", 300, ""));
+        new JsonWalletStorage(dir).saveWallet("xana", legacy);
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            assertEquals(300.0, w.totalExpense());
+            storage.saveWallet("xana", w);
+        }
+        assertTrue(Files.exists(dir.resolve("xana.wallet.journal")));
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet w = storage.loadWallet("xana");
+            assertEquals(1, w.getOperations().size());
+            assertTrue(w.getCategories().contains("Еда"));
+        }
+    }
+
+    @Test
+    void saveWallets_commitsAllWallets_andLeavesNoCommitFile() throws Exception {
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            Wallet xana = storage.loadWallet("xana");
+            Wallet den = storage.loadWallet("den");
+            xana.getOperations().add(new Operation(OperationType.EXPENSE, "Перевод", 100, ""));
+            den.getOperations().add(new Operation(OperationType.INCOME, "Перевод", 100, ""));
+            storage.saveWallets(Map.of("xana", xana, "den", den));
+
+            // правка истории уходит в пакет снимком
+            xana.getOperations().remove(0);
+            den.getOperations().add(new Operation(OperationType.INCOME, "Перевод", 50, ""));
+            storage.saveWallets(Map.of("xana", xana, "den", den));
+        }
+        try (var files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().contains(".commit")));
+        }
+
+        try (JournalWalletStorage storage = new JournalWalletStorage(dir)) {
+            assertEquals(0, storage.loadWallet("xana").getOperations().size());
+            assertEquals(150.0, storage.loadWallet("den").totalIncome());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.BudgetPeriod;
+import com.example.finance.core.model.Operation;
+import com.example.finance.core.model.OperationType;
+import com.example.finance.core.model.PeriodicBudget;
+import com.example.finance.core.model.Wallet;
+import com.example.finance.core.services.Metrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonWalletStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper om = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void readsFilesWrittenByObjectMapper() throws Exception {
+        Wallet w = sample();
+        om.writerWithDefaultPrettyPrinter().writeValue(dir.resolve("xana.wallet.json").toFile(), w);
+
+        Wallet loaded = new JsonWalletStorage(dir).loadWallet("xana");
+        assertSameWallet(w, loaded);
+    }
+
+    @Test
+    void compactOutput_isReadableByObjectMapper() throws Exception {
+        Wallet w = sample();
+        new JsonWalletStorage(dir, true).saveWallet("xana", w);
+
+        String text = Files.readString(dir.resolve("xana.wallet.json"));
+        assertFalse(text.contains("\n"));
+
+        Wallet loaded = om.readValue(text, Wallet.class);
+        assertSameWallet(w, loaded);
+    }
+
+    @Test
+    void brokenFile_failsInsteadOfLoadingEmptyWallet_andPackedLoadKeepsOperations() throws Exception {
+        JsonWalletStorage storage = new JsonWalletStorage(dir, false, true);
+        storage.saveWallet("xana", sample());
+        assertSameWallet(sample(), storage.loadWallet("xana"));
+
+        Path file = dir.resolve("xana.wallet.json");
+        String text = Files.readString(file);
+        Files.writeString(file, text.substring(0, text.length() / 2));
+        assertThrows(RuntimeException.class, () -> storage.loadWallet("xana"));
+    }
+
+    @Test
+    void meteredStorage_recordsWalletSizeOnDisk() throws Exception {
+        Metrics metrics = new Metrics();
+        MeteredWalletStorage storage = new MeteredWalletStorage(new JsonWalletStorage(dir), "wallet", metrics);
+        storage.saveWallet("xana", sample());
+        storage.loadWallet("xana");
+
+        Metrics.Snapshot bytes = metrics.histograms().stream().filter(s -> s.name().equals("wallet.bytes")).findFirst().orElseThrow();
+        assertEquals(2, bytes.count());
+        assertEquals(Files.size(dir.resolve("xana.wallet.json")), bytes.max());
+        assertEquals(2L, metrics.counters().get("wallet.loadedOperations"));
+    }
+
+    private static Wallet sample() {
+        Wallet w = new Wallet();
+        w.getCategories().add("Еда");
+        w.getBudgetsByCategory().put("Еда", 1000.0);
+        w.periodicBudgets().put("Еда", new PeriodicBudget(BudgetPeriod.WEEK, 200.0, true, LocalDate.of(2026, 1, 1)));
+        w.getOperations().add(new Operation("a", OperationType.EXPENSE, "Еда", 300, LocalDateTime.of(2026, 1, 5, 12, 0), "обед"));
+        w.getOperations().add(new Operation("b", OperationType.INCOME, "Зарплата", 5000, LocalDateTime.of(2026, 1, 6, 9, 30, 15, 500), null));
+        return w;
+    }
+
+    private static void assertSameWallet(Wallet expected, Wallet actual) {
+        assertEquals(expected.getCategories(), actual.getCategories());
+        assertEquals(expected.getBudgetsByCategory(), actual.getBudgetsByCategory());
+        assertEquals(expected.getPeriodicBudgets(), actual.getPeriodicBudgets());
+        assertEquals(expected.getOperations().size(), actual.getOperations().size());
+        for (int i = 0; i < expected.getOperations().size(); i++) {
+            Operation e = expected.getOperations().get(i), a = actual.getOperations().get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getCategory(), a.getCategory());
+            assertEquals(e.getAmount(), a.getAmount());
+            assertEquals(e.getCreatedAt(), a.getCreatedAt());
+            assertEquals(e.getNote(), a.getNote());
+        }
+        assertEquals(expected.totalExpense(), actual.totalExpense());
+    }
+}
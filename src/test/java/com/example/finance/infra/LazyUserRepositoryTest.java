@@ -0,0 +1,91 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import com.example.finance.core.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyUserRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsUsersOnDemand_andKeepsUsersWithOpenWalletsAcrossEviction() {
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir, 4, 1, null)) {
+            for (int i = 0; i < 10; i++) storage.saveUser(new User("user" + i, "h" + i), List::of);
+        }
+
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir, 4, 1, null)) {
+            LazyUserRepository repo = new LazyUserRepository(storage, 2);
+            assertEquals("h3", repo.findByLogin("user3").orElseThrow().getPasswordHash());
+            assertFalse(repo.exists("nobody"));
+
+            User withSession = repo.findByLogin("user1").orElseThrow();
+            withSession.setWallet(new Wallet());
+            User released = repo.findByLogin("user2").orElseThrow();
+            for (int i = 3; i < 10; i++) repo.findByLogin("user" + i);
+
+            assertSame(withSession, repo.findByLogin("user1").orElseThrow());
+            assertNotSame(released, repo.findByLogin("user2").orElseThrow());
+
+            // новый пользователь занят в репозитории ещё до записи в хранилище
+            User kate = new User("kate", "k");
+            assertTrue(repo.saveIfAbsent(kate));
+            assertFalse(repo.saveIfAbsent(new User("kate", "other")));
+            assertFalse(repo.saveIfAbsent(new User("user5", "other")));
+            for (int i = 0; i < 10; i++) repo.findByLogin("user" + i);
+            assertSame(kate, repo.findByLogin("kate").orElseThrow());
+
+            storage.saveUser(kate, List::of);
+            assertEquals(11, repo.findAll().size());
+            assertTrue(repo.findAll().contains(withSession));
+
+            // хеш заменён, но ещё не записан — объект не отпускается; после записи — отпускается
+            User upgraded = repo.findByLogin("user3").orElseThrow();
+            upgraded.setPasswordHash("new");
+            for (int i = 4; i < 10; i++) repo.findByLogin("user" + i);
+            assertSame(upgraded, repo.findByLogin("user3").orElseThrow());
+            storage.saveUser(upgraded, List::of);
+            assertTrue(upgraded.isStored());
+        }
+    }
+
+    @Test
+    void concurrentMisses_onSameLogin_shareOneUserObject() throws Exception {
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir, 4, 1, null)) {
+            for (int i = 0; i < 50; i++) storage.saveUser(new User("user" + i, "h" + i), List::of);
+        }
+
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir, 4, 1, null)) {
+            LazyUserRepository repo = new LazyUserRepository(storage, 100);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<List<User>>> tasks = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    tasks.add(pool.submit(() -> {
+                        List<User> seen = new ArrayList<>();
+                        for (int i = 0; i < 50; i++) seen.add(repo.findByLogin("user" + i).orElseThrow());
+                        return seen;
+                    }));
+                }
+                List<User> first = tasks.get(0).get();
+                for (Future<List<User>> f : tasks) {
+                    List<User> seen = f.get();
+                    for (int i = 0; i < 50; i++) assertSame(first.get(i), seen.get(i));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
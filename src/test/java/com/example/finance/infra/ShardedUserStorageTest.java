@@ -0,0 +1,93 @@
+package com.example.finance.infra;
+
+import com.example.finance.core.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedUserStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void saveUser_appendsOneRecord_andLastRecordWins() throws Exception {
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir.resolve("users"), 4, 1, null)) {
+            for (int i = 0; i < 100; i++) {
+                storage.saveUser(new User("user" + i, "h" + i), () -> fail("весь список не нужен"));
+            }
+            storage.saveUser(new User("user7", "new"), () -> fail("весь список не нужен"));
+        }
+
+        // оборванная запись в конце шарда отбрасывается, следующая дописывается после последней целой
+        Path shard = dir.resolve("users").resolve("users-" + Math.floorMod("user42".hashCode(), 4) + ".log");
+        Files.write(shard, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir.resolve("users"), 4, 1, null)) {
+            storage.saveUser(new User("user42", "changed"), List::of);
+        }
+
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir.resolve("users"), 4, 1, null)) {
+            Map<String, String> hashes = storage.loadAll().stream()
+                    .collect(Collectors.toMap(User::getLogin, User::getPasswordHash));
+            assertEquals(100, hashes.size());
+            assertEquals("new", hashes.get("user7"));
+            assertEquals("changed", hashes.get("user42"));
+            assertEquals("h99", hashes.get("user99"));
+        }
+    }
+
+    @Test
+    void loadAll_migratesLegacyJsonOnce() {
+        Path legacy = dir.resolve("users.json");
+        new JsonUserStorage(legacy).saveAll(List.of(new User("xana", "a"), new User("den", "b")));
+
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir.resolve("users"), legacy)) {
+            assertEquals(2, storage.loadAll().size());
+            storage.saveUser(new User("kate", "c"), List::of);
+        }
+        try (ShardedUserStorage storage = new ShardedUserStorage(dir.resolve("users"), legacy)) {
+            Map<String, String> hashes = storage.loadAll().stream()
+                    .collect(Collectors.toMap(User::getLogin, User::getPasswordHash));
+            assertEquals(Map.of("xana", "a", "den", "b", "kate", "c"), hashes);
+        }
+    }
+
+    @Test
+    void find_readsOneRecordThroughIndex_andSeesAppendsAfterIt() {
+        Path users = dir.resolve("users");
+        try (ShardedUserStorage storage = new ShardedUserStorage(users, 4, 1, null)) {
+            for (int i = 0; i < 3000; i++) storage.saveUser(new User("user" + i, "h" + i), List::of);
+            storage.saveUser(new User("user5", "new"), List::of);
+        }
+        assertTrue(Files.exists(users.resolve("users-0.idx")));
+
+        try (ShardedUserStorage storage = new ShardedUserStorage(users, 4, 1, null)) {
+            assertEquals("new", storage.find("user5").orElseThrow().getPasswordHash());
+            assertEquals("h2999", storage.find("user2999").orElseThrow().getPasswordHash());
+            assertTrue(storage.find("nobody").isEmpty());
+
+            // записи после индекса видны без его перестройки
+            storage.saveUser(new User("kate", "k"), List::of);
+            storage.saveUser(new User("user7", "changed"), List::of);
+            assertEquals("k", storage.find("kate").orElseThrow().getPasswordHash());
+            assertEquals("changed", storage.find("user7").orElseThrow().getPasswordHash());
+        }
+
+        // индекс, который не подходит к журналу, строится заново
+        try (ShardedUserStorage storage = new ShardedUserStorage(users, 4, 1, null)) {
+            storage.saveAll(List.of(new User("xana", "a")));
+        }
+        try (ShardedUserStorage storage = new ShardedUserStorage(users, 4, 1, null)) {
+            assertEquals("a", storage.find("xana").orElseThrow().getPasswordHash());
+            assertTrue(storage.find("user7").isEmpty());
+        }
+    }
+}